@@ -0,0 +1,168 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Reads records of a trace written by AccessTraceRecorder.
+ *
+ * @author iychoi
+ */
+public class AccessTraceReader implements Closeable {
+
+    private DataInputStream in;
+    private long timeMicros = 0;
+    
+    public AccessTraceReader(InputStream is) throws IOException {
+        if(is == null) {
+            throw new IllegalArgumentException("is is null");
+        }
+        
+        this.in = new DataInputStream(new BufferedInputStream(is));
+        
+        int magic = this.in.readInt();
+        if(magic != AccessTraceRecorder.MAGIC) {
+            throw new IOException("not an access trace");
+        }
+        
+        byte version = this.in.readByte();
+        if(version != AccessTraceRecorder.VERSION) {
+            throw new IOException("unsupported access trace version : " + version);
+        }
+    }
+    
+    /**
+     * Returns the next record, or null at the end of the trace.
+     */
+    public Record next() throws IOException {
+        int type = this.in.read();
+        if(type < 0) {
+            return null;
+        }
+        
+        try {
+            Record record = new Record();
+            record.type = (byte) type;
+            this.timeMicros += WritableUtils.readVLong(this.in);
+            record.timeMicros = this.timeMicros;
+            
+            switch (record.type) {
+                case AccessTraceRecorder.TYPE_OPEN:
+                    record.streamID = WritableUtils.readVInt(this.in);
+                    record.path = Text.readString(this.in);
+                    record.offset = WritableUtils.readVLong(this.in);
+                    break;
+                case AccessTraceRecorder.TYPE_CLOSE:
+                    record.streamID = WritableUtils.readVInt(this.in);
+                    break;
+                case AccessTraceRecorder.TYPE_SEEK:
+                    record.streamID = WritableUtils.readVInt(this.in);
+                    record.offset = WritableUtils.readVLong(this.in);
+                    break;
+                case AccessTraceRecorder.TYPE_READ:
+                    record.streamID = WritableUtils.readVInt(this.in);
+                    record.length = WritableUtils.readVInt(this.in);
+                    record.returned = WritableUtils.readVInt(this.in);
+                    record.durationMicros = WritableUtils.readVLong(this.in);
+                    break;
+                case AccessTraceRecorder.TYPE_PREAD:
+                    record.streamID = WritableUtils.readVInt(this.in);
+                    record.offset = WritableUtils.readVLong(this.in);
+                    record.length = WritableUtils.readVInt(this.in);
+                    record.returned = WritableUtils.readVInt(this.in);
+                    record.durationMicros = WritableUtils.readVLong(this.in);
+                    break;
+                case AccessTraceRecorder.TYPE_GET_FILE_STATUS:
+                    record.path = Text.readString(this.in);
+                    record.durationMicros = WritableUtils.readVLong(this.in);
+                    break;
+                case AccessTraceRecorder.TYPE_LIST_STATUS:
+                    record.path = Text.readString(this.in);
+                    record.returned = WritableUtils.readVInt(this.in);
+                    record.durationMicros = WritableUtils.readVLong(this.in);
+                    break;
+                default:
+                    throw new IOException("unknown access trace record type : " + type);
+            }
+            return record;
+        } catch (EOFException ex) {
+            // the recording process did not finish the last record
+            return null;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+    
+    /**
+     * A trace record. Fields not used by the type are zero or null.
+     * For an open, offset holds the file size. For a listing, returned holds
+     * the number of entries.
+     */
+    public static class Record {
+        
+        private byte type;
+        private long timeMicros;
+        private int streamID;
+        private String path;
+        private long offset;
+        private int length;
+        private int returned;
+        private long durationMicros;
+        
+        public byte getType() {
+            return this.type;
+        }
+        
+        public long getTimeMicros() {
+            return this.timeMicros;
+        }
+        
+        public int getStreamID() {
+            return this.streamID;
+        }
+        
+        public String getPath() {
+            return this.path;
+        }
+        
+        public long getOffset() {
+            return this.offset;
+        }
+        
+        public int getLength() {
+            return this.length;
+        }
+        
+        public int getReturned() {
+            return this.returned;
+        }
+        
+        public long getDurationMicros() {
+            return this.durationMicros;
+        }
+    }
+}
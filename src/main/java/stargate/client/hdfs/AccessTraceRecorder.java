@@ -0,0 +1,348 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * JVM-wide recorder of file system accesses into a compact binary trace.
+ *
+ * A trace starts with MAGIC and VERSION, followed by records of a type
+ * byte, the time since the previous record in microseconds and the fields
+ * of the type, all variable-length encoded. Consecutive single-byte reads
+ * of a stream are coalesced into one read record. Traces are replayed with
+ * StargateTraceReplayTool.
+ *
+ * @author iychoi
+ */
+public class AccessTraceRecorder {
+
+    private static final Log LOG = LogFactory.getLog(AccessTraceRecorder.class);
+    
+    public static final int MAGIC = 0x53475452; // "SGTR"
+    public static final byte VERSION = 1;
+    
+    public static final byte TYPE_OPEN = 1;
+    public static final byte TYPE_CLOSE = 2;
+    public static final byte TYPE_SEEK = 3;
+    public static final byte TYPE_READ = 4;
+    public static final byte TYPE_PREAD = 5;
+    public static final byte TYPE_GET_FILE_STATUS = 6;
+    public static final byte TYPE_LIST_STATUS = 7;
+    
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    
+    private static final AccessTraceRecorder INSTANCE = new AccessTraceRecorder();
+    
+    private volatile boolean recording = false;
+    private DataOutputStream out;
+    private File traceFile;
+    private long lastTimeMicros;
+    private boolean shutdownHookAdded = false;
+    private final AtomicInteger nextStreamID = new AtomicInteger(0);
+    
+    public static AccessTraceRecorder getInstance() {
+        return INSTANCE;
+    }
+    
+    AccessTraceRecorder() {
+    }
+    
+    /**
+     * Starts recording into a new trace file under traceDir. Does nothing if
+     * already recording.
+     */
+    public synchronized void start(String traceDir) throws IOException {
+        if(traceDir == null || traceDir.isEmpty()) {
+            throw new IllegalArgumentException("traceDir is null or empty");
+        }
+        
+        if(this.recording) {
+            return;
+        }
+        
+        File dir = new File(traceDir);
+        if(!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("cannot create a trace directory " + dir.getAbsolutePath());
+        }
+        
+        // name of the runtime is "pid@host"
+        String jvmName = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        File file = new File(dir, String.format("sgfs-access-%s-%d.trace", jvmName, System.currentTimeMillis()));
+        
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE));
+        try {
+            dos.writeInt(MAGIC);
+            dos.writeByte(VERSION);
+        } catch (IOException ex) {
+            dos.close();
+            throw ex;
+        }
+        
+        this.out = dos;
+        this.traceFile = file;
+        this.lastTimeMicros = System.nanoTime() / 1000;
+        this.recording = true;
+        
+        if(!this.shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread("sgfs-trace-shutdown") {
+                @Override
+                public void run() {
+                    stop();
+                }
+            });
+            this.shutdownHookAdded = true;
+        }
+        
+        LOG.info("recording accesses to " + file.getAbsolutePath());
+    }
+    
+    public synchronized void stop() {
+        if(!this.recording) {
+            return;
+        }
+        
+        this.recording = false;
+        try {
+            this.out.close();
+        } catch (IOException ex) {
+            LOG.warn("cannot close a trace file " + this.traceFile.getAbsolutePath(), ex);
+        }
+        this.out = null;
+    }
+    
+    public boolean isRecording() {
+        return this.recording;
+    }
+    
+    public synchronized File getTraceFile() {
+        return this.traceFile;
+    }
+    
+    private void writeRecordHeader(byte type) throws IOException {
+        long now = System.nanoTime() / 1000;
+        this.out.writeByte(type);
+        WritableUtils.writeVLong(this.out, now - this.lastTimeMicros);
+        this.lastTimeMicros = now;
+    }
+    
+    private void fail(IOException ex) {
+        // tracing must not break reads, stop recording instead
+        LOG.warn("cannot write a trace record, recording is stopped", ex);
+        stop();
+    }
+    
+    /**
+     * Records opening of a file. Returns null if not recording.
+     */
+    public StreamTrace recordOpen(String path, long size) {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        if(!this.recording) {
+            return null;
+        }
+        
+        int streamID = this.nextStreamID.getAndIncrement();
+        synchronized(this) {
+            if(!this.recording) {
+                return null;
+            }
+            
+            try {
+                writeRecordHeader(TYPE_OPEN);
+                WritableUtils.writeVInt(this.out, streamID);
+                Text.writeString(this.out, path);
+                WritableUtils.writeVLong(this.out, size);
+            } catch (IOException ex) {
+                fail(ex);
+                return null;
+            }
+        }
+        return new StreamTrace(streamID);
+    }
+    
+    public void recordGetFileStatus(String path, long durationNanos) {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        if(!this.recording) {
+            return;
+        }
+        
+        synchronized(this) {
+            if(!this.recording) {
+                return;
+            }
+            
+            try {
+                writeRecordHeader(TYPE_GET_FILE_STATUS);
+                Text.writeString(this.out, path);
+                WritableUtils.writeVLong(this.out, durationNanos / 1000);
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+    }
+    
+    public void recordListStatus(String path, int entries, long durationNanos) {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        if(!this.recording) {
+            return;
+        }
+        
+        synchronized(this) {
+            if(!this.recording) {
+                return;
+            }
+            
+            try {
+                writeRecordHeader(TYPE_LIST_STATUS);
+                Text.writeString(this.out, path);
+                WritableUtils.writeVInt(this.out, entries);
+                WritableUtils.writeVLong(this.out, durationNanos / 1000);
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+    }
+    
+    private synchronized void recordStreamOp(byte type, int streamID, long offset, int requested, int returned, long durationNanos) {
+        if(!this.recording) {
+            return;
+        }
+        
+        try {
+            writeRecordHeader(type);
+            WritableUtils.writeVInt(this.out, streamID);
+            switch (type) {
+                case TYPE_SEEK:
+                    WritableUtils.writeVLong(this.out, offset);
+                    break;
+                case TYPE_READ:
+                    WritableUtils.writeVInt(this.out, requested);
+                    WritableUtils.writeVInt(this.out, returned);
+                    WritableUtils.writeVLong(this.out, durationNanos / 1000);
+                    break;
+                case TYPE_PREAD:
+                    WritableUtils.writeVLong(this.out, offset);
+                    WritableUtils.writeVInt(this.out, requested);
+                    WritableUtils.writeVInt(this.out, returned);
+                    WritableUtils.writeVLong(this.out, durationNanos / 1000);
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+    
+    /**
+     * Records accesses of an open stream. Not thread-safe, like the stream.
+     */
+    public class StreamTrace {
+        
+        private int streamID;
+        private int pendingBytes = 0;
+        private int pendingReturned = 0;
+        private long pendingNanos = 0;
+        
+        StreamTrace(int streamID) {
+            this.streamID = streamID;
+        }
+        
+        public int getStreamID() {
+            return this.streamID;
+        }
+        
+        private void flushPending() {
+            if(this.pendingBytes > 0) {
+                recordStreamOp(TYPE_READ, this.streamID, 0, this.pendingBytes, this.pendingReturned, this.pendingNanos);
+                this.pendingBytes = 0;
+                this.pendingReturned = 0;
+                this.pendingNanos = 0;
+            }
+        }
+        
+        public void readByte(boolean eof, long durationNanos) {
+            if(!recording) {
+                return;
+            }
+            
+            this.pendingBytes++;
+            if(!eof) {
+                this.pendingReturned++;
+            }
+            this.pendingNanos += durationNanos;
+            
+            if(eof || this.pendingBytes == Integer.MAX_VALUE) {
+                flushPending();
+            }
+        }
+        
+        public void read(int requested, int returned, long durationNanos) {
+            if(!recording) {
+                return;
+            }
+            
+            flushPending();
+            recordStreamOp(TYPE_READ, this.streamID, 0, requested, returned, durationNanos);
+        }
+        
+        public void pread(long offset, int requested, int returned, long durationNanos) {
+            if(!recording) {
+                return;
+            }
+            
+            flushPending();
+            recordStreamOp(TYPE_PREAD, this.streamID, offset, requested, returned, durationNanos);
+        }
+        
+        public void seek(long offset) {
+            if(!recording) {
+                return;
+            }
+            
+            flushPending();
+            recordStreamOp(TYPE_SEEK, this.streamID, offset, 0, 0, 0);
+        }
+        
+        public void close() {
+            if(!recording) {
+                return;
+            }
+            
+            flushPending();
+            recordStreamOp(TYPE_CLOSE, this.streamID, 0, 0, 0, 0);
+        }
+    }
+}
@@ -23,7 +23,9 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.hadoop.fs.Seekable;
 import stargate.commons.recipe.Recipe;
+import stargate.drivers.userinterface.http.CompactRecipe;
 import stargate.drivers.userinterface.http.HTTPChunkInputStream;
+import stargate.drivers.userinterface.http.RecipeSource;
 
 /**
  *
@@ -33,10 +35,55 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
 
     private static final Log LOG = LogFactory.getLog(FSChunkInputStream.class);
     
+    private AccessTraceRecorder.StreamTrace trace;
+    private StargateAccessHistory accessHistory;
+    private String accessHistoryPath;
+    
     public FSChunkInputStream(Map<String, HTTPUserInterfaceClient> clients, Recipe recipe) {
         super(clients, recipe);
     }
     
+    public FSChunkInputStream(Map<String, HTTPUserInterfaceClient> clients, CompactRecipe recipe) {
+        super(clients, recipe);
+    }
+    
+    public FSChunkInputStream(Map<String, HTTPUserInterfaceClient> clients, RecipeSource recipeSource, int bufferSize) {
+        super(clients, recipeSource, bufferSize);
+    }
+    
+    void setTrace(AccessTraceRecorder.StreamTrace trace) {
+        this.trace = trace;
+    }
+    
+    void setAccessHistory(StargateAccessHistory accessHistory, String path) {
+        this.accessHistory = accessHistory;
+        this.accessHistoryPath = path;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        if(this.trace == null) {
+            return super.read();
+        }
+        
+        long start = System.nanoTime();
+        int ch = super.read();
+        this.trace.readByte(ch < 0, System.nanoTime() - start);
+        return ch;
+    }
+    
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        if(this.trace == null) {
+            return super.read(bytes, off, len);
+        }
+        
+        long start = System.nanoTime();
+        int read = super.read(bytes, off, len);
+        this.trace.read(len, read, System.nanoTime() - start);
+        return read;
+    }
+    
     @Override
     public synchronized void seek(long offset) throws IOException {
         if(offset < 0) {
@@ -44,6 +91,10 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
         }
         
         super.seek(offset);
+        
+        if(this.trace != null) {
+            this.trace.seek(offset);
+        }
     }
     
     @Override
@@ -52,8 +103,8 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
     }
 
     @Override
-    public boolean seekToNewSource(long l) throws IOException {
-        return false;
+    public boolean seekToNewSource(long targetPos) throws IOException {
+        return super.seekToNewSource(targetPos);
     }
 
     @Override
@@ -78,18 +129,15 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
             throw new IllegalArgumentException("length of buf is smaller than len");
         }
         
-        super.seek(offset);
-        if(super.getPos() != offset) {
-            throw new IOException("Cannot find position : " + offset);
+        // positional read does not move the stream position
+        if(this.trace == null) {
+            return super.readAt(offset, buf, bufOffset, Math.min(buf.length - bufOffset, len));
         }
         
-        int available = super.available();
-        
-        if(available > 0) {
-            return super.read(buf, bufOffset, Math.min(len, available));
-        } else {
-            return super.read(buf, bufOffset, len);
-        }
+        long start = System.nanoTime();
+        int read = super.readAt(offset, buf, bufOffset, Math.min(buf.length - bufOffset, len));
+        this.trace.pread(offset, len, read, System.nanoTime() - start);
+        return read;
     }
 
     @Override
@@ -114,16 +162,14 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
             throw new IllegalArgumentException("length of buf is smaller than len");
         }
         
-        super.seek(offset);
-        if(super.getPos() != offset) {
-            throw new IOException("Cannot find position : " + offset);
-        }
-        
+        long start = this.trace == null ? 0 : System.nanoTime();
         int read = 0;
+        long pos = offset;
         int bo = bufOffset;
         int remaining = Math.min(buf.length - bufOffset, len);
         
-        while((read = super.read(buf, bo, remaining)) >= 0) {
+        while((read = super.readAt(pos, buf, bo, remaining)) >= 0) {
+            pos += read;
             bo += read;
             remaining -= read;
             
@@ -131,6 +177,10 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
                 break;
             }
         }
+        
+        if(this.trace != null) {
+            this.trace.pread(offset, len, (int) (pos - offset), System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -143,16 +193,14 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
             throw new IllegalArgumentException("buf is null");
         }
         
-        super.seek(offset);
-        if(super.getPos() != offset) {
-            throw new IOException("Cannot find position : " + offset);
-        }
-        
+        long start = this.trace == null ? 0 : System.nanoTime();
         int read = 0;
+        long pos = offset;
         int bo = 0;
         int remaining = buf.length;
         
-        while((read = super.read(buf, bo, remaining)) >= 0) {
+        while((read = super.readAt(pos, buf, bo, remaining)) >= 0) {
+            pos += read;
             bo += read;
             remaining -= read;
             
@@ -160,5 +208,24 @@ public class FSChunkInputStream extends HTTPChunkInputStream implements Seekable
                 break;
             }
         }
+        
+        if(this.trace != null) {
+            this.trace.pread(offset, buf.length, (int) (pos - offset), System.nanoTime() - start);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if(this.trace != null) {
+            this.trace.close();
+            this.trace = null;
+        }
+        
+        if(this.accessHistory != null) {
+            this.accessHistory.addAccesses(this.accessHistoryPath, getAccessedRanges());
+            this.accessHistory = null;
+        }
+        
+        super.close();
     }
 }
@@ -0,0 +1,334 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+import stargate.commons.utils.JsonSerializer;
+
+/**
+ * On-disk history of offset ranges read from files of a Stargate service.
+ * Chunks in the ranges are prefetched when a file is opened again.
+ *
+ * Ranges are kept instead of chunk hashes, so the history still points at
+ * the right chunks after a file is rewritten. Accesses of the latest run
+ * replace those of earlier runs.
+ *
+ * @author iychoi
+ */
+public class StargateAccessHistory {
+
+    private static final String HISTORY_FILE_PREFIX = "sgfs-history-";
+    private static final String HISTORY_FILE_SUFFIX = ".json";
+    private static final String ENCODING = "UTF-8";
+    private static final int MAX_RANGES_PER_FILE = 1024;
+    
+    private String serviceURI;
+    // sgfs path (e.g., /cluster/path) to accesses of the file
+    private Map<String, FileAccess> files = new HashMap<String, FileAccess>();
+    
+    public static File getHistoryFile(String historyDir, URI serviceURI) {
+        if(historyDir == null || historyDir.isEmpty()) {
+            throw new IllegalArgumentException("historyDir is null or empty");
+        }
+        
+        if(serviceURI == null) {
+            throw new IllegalArgumentException("serviceURI is null");
+        }
+        
+        String name = String.format("%s%s_%d%s", HISTORY_FILE_PREFIX, serviceURI.getHost(), serviceURI.getPort(), HISTORY_FILE_SUFFIX);
+        return new File(historyDir, name);
+    }
+    
+    /**
+     * Returns the history in the file, or null if the file does not exist.
+     */
+    public static StargateAccessHistory load(File file) throws IOException {
+        if(file == null) {
+            throw new IllegalArgumentException("file is null");
+        }
+        
+        if(!file.isFile()) {
+            return null;
+        }
+        
+        Reader reader = new InputStreamReader(new FileInputStream(file), ENCODING);
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read = reader.read(buffer);
+            while(read >= 0) {
+                sb.append(buffer, 0, read);
+                read = reader.read(buffer);
+            }
+            
+            return (StargateAccessHistory) JsonSerializer.fromJson(sb.toString(), StargateAccessHistory.class);
+        } finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Writes the history to a temporary file and renames it, so readers
+     * never see a partially written history.
+     */
+    public synchronized void save(File file) throws IOException {
+        if(file == null) {
+            throw new IllegalArgumentException("file is null");
+        }
+        
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("cannot create a history directory : " + dir.getPath());
+        }
+        
+        String json = JsonSerializer.toJson(this);
+        
+        File tempFile = File.createTempFile(HISTORY_FILE_PREFIX, ".tmp", dir);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), ENCODING);
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+        
+        if(!tempFile.renameTo(file)) {
+            // rename does not replace an existing file on some platforms
+            file.delete();
+            if(!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("cannot write a history : " + file.getPath());
+            }
+        }
+    }
+    
+    StargateAccessHistory() {
+    }
+    
+    public StargateAccessHistory(URI serviceURI) {
+        if(serviceURI == null) {
+            throw new IllegalArgumentException("serviceURI is null");
+        }
+        
+        this.serviceURI = serviceURI.toString();
+    }
+    
+    @JsonProperty("service_uri")
+    public String getServiceURI() {
+        return this.serviceURI;
+    }
+    
+    @JsonProperty("service_uri")
+    void setServiceURI(String serviceURI) {
+        this.serviceURI = serviceURI;
+    }
+    
+    @JsonProperty("files")
+    public synchronized Map<String, FileAccess> getFiles() {
+        return new HashMap<String, FileAccess>(this.files);
+    }
+    
+    @JsonProperty("files")
+    synchronized void setFiles(Map<String, FileAccess> files) {
+        this.files.clear();
+        if(files != null) {
+            this.files.putAll(files);
+        }
+    }
+    
+    @JsonIgnore
+    public synchronized FileAccess getFileAccess(String path) {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        return this.files.get(path);
+    }
+    
+    /**
+     * Adds ranges (start to end offsets) read from the file. Ranges of the
+     * file recorded in earlier runs are replaced.
+     */
+    @JsonIgnore
+    public synchronized void addAccesses(String path, Map<Long, Long> ranges) {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        if(ranges == null) {
+            throw new IllegalArgumentException("ranges is null");
+        }
+        
+        if(ranges.isEmpty()) {
+            return;
+        }
+        
+        FileAccess access = this.files.get(path);
+        if(access == null || !access.isUpdated()) {
+            access = new FileAccess();
+            this.files.put(path, access);
+        }
+        access.addRanges(ranges);
+    }
+    
+    /**
+     * Returns files accessed since the history was loaded.
+     */
+    @JsonIgnore
+    public synchronized Map<String, FileAccess> getUpdatedFiles() {
+        Map<String, FileAccess> updated = new HashMap<String, FileAccess>();
+        for(Map.Entry<String, FileAccess> entry : this.files.entrySet()) {
+            if(entry.getValue().isUpdated()) {
+                updated.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return updated;
+    }
+    
+    @JsonIgnore
+    public synchronized void putFiles(Map<String, FileAccess> files) {
+        if(files == null) {
+            throw new IllegalArgumentException("files is null");
+        }
+        
+        this.files.putAll(files);
+    }
+    
+    /**
+     * Drops least recently accessed files beyond maxFiles.
+     */
+    @JsonIgnore
+    public synchronized void trim(int maxFiles) {
+        if(this.files.size() <= maxFiles) {
+            return;
+        }
+        
+        List<Map.Entry<String, FileAccess>> entries = new ArrayList<Map.Entry<String, FileAccess>>(this.files.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, FileAccess>>() {
+            @Override
+            public int compare(Map.Entry<String, FileAccess> e1, Map.Entry<String, FileAccess> e2) {
+                long t1 = e1.getValue().getTimestamp();
+                long t2 = e2.getValue().getTimestamp();
+                return t1 > t2 ? -1 : (t1 < t2 ? 1 : 0);
+            }
+        });
+        
+        for(int i = Math.max(maxFiles, 0); i < entries.size(); i++) {
+            this.files.remove(entries.get(i).getKey());
+        }
+    }
+    
+    public static class FileAccess {
+        
+        private long timestamp;
+        // sorted, non-overlapping start and end offsets
+        private long[] ranges = new long[0];
+        private boolean updated = false;
+        
+        public FileAccess() {
+        }
+        
+        @JsonProperty("timestamp")
+        public synchronized long getTimestamp() {
+            return this.timestamp;
+        }
+        
+        @JsonProperty("timestamp")
+        synchronized void setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+        
+        /**
+         * Returns start and end offsets of ranges, in pairs.
+         */
+        @JsonProperty("ranges")
+        public synchronized long[] getRanges() {
+            return this.ranges;
+        }
+        
+        @JsonProperty("ranges")
+        synchronized void setRanges(long[] ranges) {
+            if(ranges == null || ranges.length % 2 != 0) {
+                this.ranges = new long[0];
+            } else {
+                this.ranges = ranges;
+            }
+        }
+        
+        @JsonIgnore
+        synchronized boolean isUpdated() {
+            return this.updated;
+        }
+        
+        synchronized void addRanges(Map<Long, Long> newRanges) {
+            TreeMap<Long, Long> all = new TreeMap<Long, Long>(newRanges);
+            for(int i = 0; i + 1 < this.ranges.length; i += 2) {
+                Long end = all.get(this.ranges[i]);
+                if(end == null || end < this.ranges[i + 1]) {
+                    all.put(this.ranges[i], this.ranges[i + 1]);
+                }
+            }
+            
+            List<Long> merged = new ArrayList<Long>();
+            long start = -1;
+            long end = -1;
+            for(Map.Entry<Long, Long> entry : all.entrySet()) {
+                if(start >= 0 && entry.getKey() <= end) {
+                    end = Math.max(end, entry.getValue());
+                    continue;
+                }
+                
+                if(start >= 0) {
+                    merged.add(start);
+                    merged.add(end);
+                }
+                start = entry.getKey();
+                end = entry.getValue();
+            }
+            
+            if(start >= 0) {
+                merged.add(start);
+                merged.add(end);
+            }
+            
+            int length = Math.min(merged.size(), MAX_RANGES_PER_FILE * 2);
+            long[] mergedRanges = new long[length];
+            for(int i = 0; i < length; i++) {
+                mergedRanges[i] = merged.get(i);
+            }
+            
+            this.ranges = mergedRanges;
+            this.timestamp = System.currentTimeMillis();
+            this.updated = true;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import stargate.drivers.userinterface.http.ChunkTransferCompression;
+
+/**
+ * Benchmarks compressed chunk transfers against a local stand-in server.
+ *
+ * The stand-in server listens on the loopback interface and answers chunk
+ * requests the way a Stargate service answers compressed chunk requests:
+ * a codec header followed by the chunk data compressed on the fly. Its
+ * output can be limited to a bandwidth to emulate a LAN or WAN link. The
+ * client side decodes responses with ChunkTransferCompression, as
+ * HTTPUserInterfaceClient does, and effective throughput (uncompressed
+ * bytes per second) is reported per codec with the gain over "none".
+ *
+ * Chunk data is read from a file (e.g., a FASTA file) or generated as
+ * FASTA-like text.
+ *
+ * @author iychoi
+ */
+public class StargateCompressionBenchmarkTool extends Configured implements Tool {
+
+    private static final String DEFAULT_CODECS = "none,lz4,snappy,deflate,gzip,zstd";
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final String CHUNK_PATH = "/chunk/";
+    
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int iterations = DEFAULT_ITERATIONS;
+    // bytes per second, 0 for unlimited
+    private long bandwidth = 0;
+    private String inputFile;
+    
+    public StargateCompressionBenchmarkTool() {
+    }
+    
+    public void setChunkSize(int chunkSize) {
+        if(chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize is not positive");
+        }
+        
+        this.chunkSize = chunkSize;
+    }
+    
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+    
+    public void setIterations(int iterations) {
+        if(iterations <= 0) {
+            throw new IllegalArgumentException("iterations is not positive");
+        }
+        
+        this.iterations = iterations;
+    }
+    
+    public int getIterations() {
+        return this.iterations;
+    }
+    
+    /**
+     * Limits the output of the stand-in server in bytes per second.
+     * 0 means unlimited.
+     */
+    public void setBandwidth(long bandwidth) {
+        if(bandwidth < 0) {
+            throw new IllegalArgumentException("bandwidth is negative");
+        }
+        
+        this.bandwidth = bandwidth;
+    }
+    
+    public long getBandwidth() {
+        return this.bandwidth;
+    }
+    
+    public void setInputFile(String inputFile) {
+        this.inputFile = inputFile;
+    }
+    
+    public String getInputFile() {
+        return this.inputFile;
+    }
+    
+    private byte[] loadChunkData() throws IOException {
+        byte[] data = new byte[this.chunkSize];
+        if(this.inputFile == null) {
+            generateSequenceText(data);
+            return data;
+        }
+        
+        InputStream is = new FileInputStream(this.inputFile);
+        try {
+            int total = 0;
+            while(total < data.length) {
+                int read = is.read(data, total, data.length - total);
+                if(read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            
+            if(total < data.length) {
+                return Arrays.copyOf(data, total);
+            }
+            return data;
+        } finally {
+            is.close();
+        }
+    }
+    
+    private static void generateSequenceText(byte[] data) {
+        byte[] bases = {'A', 'C', 'G', 'T'};
+        Random random = new Random(0);
+        int record = 0;
+        int pos = 0;
+        while(pos < data.length) {
+            byte[] header = String.format(">sequence_%d\n", record++).getBytes();
+            for(int i = 0; i < header.length && pos < data.length; i++) {
+                data[pos++] = header[i];
+            }
+            
+            for(int line = 0; line < 20 && pos < data.length; line++) {
+                for(int i = 0; i < 60 && pos < data.length; i++) {
+                    data[pos++] = bases[random.nextInt(bases.length)];
+                }
+                
+                if(pos < data.length) {
+                    data[pos++] = '\n';
+                }
+            }
+        }
+    }
+    
+    public BenchmarkReport benchmark(String[] codecNames) throws IOException {
+        if(codecNames == null || codecNames.length == 0) {
+            throw new IllegalArgumentException("codecNames is null or empty");
+        }
+        
+        final byte[] data = loadChunkData();
+        final ChunkTransferCompression compression = new ChunkTransferCompression(ChunkTransferCompression.CODEC_NONE, ChunkTransferCompression.CODEC_NONE, null, 1);
+        final long serverBandwidth = this.bandwidth;
+        
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        server.createContext(CHUNK_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String codecName = exchange.getRequestURI().getPath().substring(CHUNK_PATH.length());
+                try {
+                    serveChunk(exchange, compression, codecName, data, serverBandwidth);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        
+        BenchmarkReport report = new BenchmarkReport(data.length, this.bandwidth);
+        try {
+            String baseURL = "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + CHUNK_PATH;
+            byte[] buffer = new byte[64 * 1024];
+            for(String name : codecNames) {
+                String codecName = name.trim().toLowerCase();
+                if(codecName.isEmpty()) {
+                    continue;
+                }
+                
+                if(!codecName.equals(ChunkTransferCompression.CODEC_NONE) && compression.getAvailableCodec(codecName) == null) {
+                    report.addUnavailable(codecName);
+                    continue;
+                }
+                
+                // warm up the connection and the codec
+                fetchChunk(compression, baseURL + codecName, buffer);
+                
+                long wireBytes = 0;
+                long elapsed = 0;
+                for(int i = 0; i < this.iterations; i++) {
+                    long start = System.nanoTime();
+                    long[] result = fetchChunk(compression, baseURL + codecName, buffer);
+                    elapsed += System.nanoTime() - start;
+                    
+                    if(result[0] != data.length) {
+                        throw new IOException(String.format("%s returned %d bytes, expected %d bytes", codecName, result[0], data.length));
+                    }
+                    wireBytes += result[1];
+                }
+                report.addResult(codecName, (long) data.length * this.iterations, wireBytes, elapsed);
+            }
+        } finally {
+            server.stop(0);
+        }
+        return report;
+    }
+    
+    private static void serveChunk(HttpExchange exchange, ChunkTransferCompression compression, String codecName, byte[] data, long bandwidth) throws IOException {
+        CompressionCodec codec = null;
+        if(!codecName.equals(ChunkTransferCompression.CODEC_NONE)) {
+            codec = compression.getAvailableCodec(codecName);
+            if(codec == null) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                return;
+            }
+        }
+        
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        OutputStream os = exchange.getResponseBody();
+        if(bandwidth > 0) {
+            os = new PacedOutputStream(os, bandwidth);
+        }
+        
+        os.write((codecName + "\n").getBytes());
+        if(codec == null) {
+            os.write(data);
+        } else {
+            Compressor compressor = CodecPool.getCompressor(codec);
+            try {
+                CompressionOutputStream cos = codec.createOutputStream(os, compressor);
+                cos.write(data);
+                cos.finish();
+            } finally {
+                CodecPool.returnCompressor(compressor);
+            }
+        }
+        os.close();
+    }
+    
+    /**
+     * Returns uncompressed bytes read and bytes on the wire.
+     */
+    private static long[] fetchChunk(ChunkTransferCompression compression, String url, byte[] buffer) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        CountingInputStream wireIS = new CountingInputStream(connection.getInputStream());
+        InputStream is = compression.decode(null, wireIS);
+        long total = 0;
+        try {
+            int read;
+            while((read = is.read(buffer)) >= 0) {
+                total += read;
+            }
+        } finally {
+            IOUtils.closeStream(is);
+        }
+        return new long[] {total, wireIS.getCount()};
+    }
+    
+    @Override
+    public int run(String[] args) throws Exception {
+        String codecs = DEFAULT_CODECS;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("-size") && i + 1 < args.length) {
+                    setChunkSize(Integer.parseInt(args[++i]));
+                } else if(args[i].equals("-iterations") && i + 1 < args.length) {
+                    setIterations(Integer.parseInt(args[++i]));
+                } else if(args[i].equals("-bandwidth") && i + 1 < args.length) {
+                    setBandwidth(Long.parseLong(args[++i]));
+                } else if(args[i].equals("-input") && i + 1 < args.length) {
+                    setInputFile(args[++i]);
+                } else if(args[i].equals("-codecs") && i + 1 < args.length) {
+                    codecs = args[++i];
+                } else {
+                    throw new IllegalArgumentException("unknown argument : " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: StargateCompressionBenchmarkTool [-size <chunk bytes>] [-iterations <n>] [-bandwidth <bytes/sec>] [-input <file>] [-codecs <codec,...>]");
+            ToolRunner.printGenericCommandUsage(System.err);
+            return 1;
+        }
+        
+        BenchmarkReport report = benchmark(codecs.split(","));
+        report.print(System.out);
+        return 0;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new Configuration(), new StargateCompressionBenchmarkTool(), args);
+        System.exit(exitCode);
+    }
+    
+    public static class BenchmarkReport {
+        
+        private long chunkSize;
+        private long bandwidth;
+        private List<String> codecs = new ArrayList<String>();
+        private List<long[]> results = new ArrayList<long[]>();
+        private List<String> unavailableCodecs = new ArrayList<String>();
+        
+        BenchmarkReport(long chunkSize, long bandwidth) {
+            this.chunkSize = chunkSize;
+            this.bandwidth = bandwidth;
+        }
+        
+        void addResult(String codecName, long bytes, long wireBytes, long elapsedNanos) {
+            this.codecs.add(codecName);
+            this.results.add(new long[] {bytes, wireBytes, elapsedNanos});
+        }
+        
+        void addUnavailable(String codecName) {
+            this.unavailableCodecs.add(codecName);
+        }
+        
+        /**
+         * Returns uncompressed bytes per second of the codec, or 0 if it was
+         * not measured.
+         */
+        public double getThroughput(String codecName) {
+            int index = this.codecs.indexOf(codecName);
+            if(index < 0) {
+                return 0;
+            }
+            
+            long[] result = this.results.get(index);
+            if(result[2] <= 0) {
+                return 0;
+            }
+            return result[0] * 1000000000.0 / result[2];
+        }
+        
+        public void print(PrintStream out) {
+            String link = this.bandwidth > 0 ? String.format("%.2f MB/s", this.bandwidth / (1024.0 * 1024)) : "unlimited";
+            out.println(String.format("chunk size : %d bytes, link : %s", this.chunkSize, link));
+            out.println(String.format("%-10s %10s %16s %10s", "codec", "ratio", "effective(MB/s)", "gain"));
+            
+            double baseline = getThroughput(ChunkTransferCompression.CODEC_NONE);
+            for(int i = 0; i < this.codecs.size(); i++) {
+                String codecName = this.codecs.get(i);
+                long[] result = this.results.get(i);
+                double ratio = result[1] > 0 ? ((double) result[0]) / result[1] : 0;
+                double throughput = getThroughput(codecName);
+                String gain = baseline > 0 ? String.format("%.2fx", throughput / baseline) : "-";
+                out.println(String.format("%-10s %10.2f %16.2f %10s", codecName, ratio, throughput / (1024 * 1024), gain));
+            }
+            
+            for(String codecName : this.unavailableCodecs) {
+                out.println(String.format("%-10s %10s", codecName, "n/a"));
+            }
+        }
+    }
+    
+    private static class CountingInputStream extends FilterInputStream {
+        
+        private long count;
+        
+        CountingInputStream(InputStream is) {
+            super(is);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int ch = super.read();
+            if(ch >= 0) {
+                this.count++;
+            }
+            return ch;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if(read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+        
+        long getCount() {
+            return this.count;
+        }
+    }
+    
+    /**
+     * Paces writes to a bandwidth, emulating a slower link.
+     */
+    private static class PacedOutputStream extends FilterOutputStream {
+        
+        private static final int SLICE_SIZE = 16 * 1024;
+        
+        private long bandwidth;
+        private long startTime;
+        private long written;
+        
+        PacedOutputStream(OutputStream os, long bandwidth) {
+            super(os);
+            
+            this.bandwidth = bandwidth;
+            this.startTime = System.nanoTime();
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            pace(1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while(len > 0) {
+                int slice = Math.min(len, SLICE_SIZE);
+                this.out.write(b, off, slice);
+                pace(slice);
+                off += slice;
+                len -= slice;
+            }
+        }
+        
+        private void pace(int bytes) throws IOException {
+            this.written += bytes;
+            long dueNanos = this.written * 1000000000L / this.bandwidth;
+            long waitMillis = (dueNanos - (System.nanoTime() - this.startTime)) / 1000000;
+            if(waitMillis > 0) {
+                try {
+                    Thread.sleep(waitMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while pacing");
+                }
+            }
+        }
+    }
+}
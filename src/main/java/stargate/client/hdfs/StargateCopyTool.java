@@ -0,0 +1,620 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import stargate.commons.dataobject.DataObjectMetadata;
+import stargate.commons.dataobject.DataObjectURI;
+import stargate.commons.userinterface.DataChunkSourceType;
+import stargate.commons.userinterface.DataChunkStatus;
+import stargate.drivers.userinterface.http.BandwidthShaper;
+import stargate.drivers.userinterface.http.CompactRecipe;
+import stargate.drivers.userinterface.http.HTTPUserInterfaceClient;
+
+/**
+ * Bulk copy from sgfs to a local file system or HDFS.
+ *
+ * For local destinations, work is planned at chunk granularity across all
+ * files. Chunks are fetched concurrently, spread over their replica nodes,
+ * and written at their offsets. Chunks cached on this node are transferred
+ * from the cache file with FileChannel. Completed chunks are recorded in a
+ * marker file next to the destination, so an interrupted copy resumes
+ * where it stopped.
+ *
+ * Other destinations cannot be written at random offsets, so files are
+ * copied concurrently through a temporary file and renamed when complete.
+ *
+ * Usage: StargateCopyTool [-threads N] src dst
+ *
+ * @author iychoi
+ */
+public class StargateCopyTool extends Configured implements Tool {
+
+    private static final Log LOG = LogFactory.getLog(StargateCopyTool.class);
+    
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_MAX_OPEN_FILES = 64;
+    
+    private static final String MARKER_SUFFIX = ".sgfs-copy";
+    private static final String TEMP_SUFFIX = "._COPYING_";
+    private static final String ENCODING = "UTF-8";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // chunks forced to disk at once before they are recorded in the marker
+    private static final int MARKER_BATCH_CHUNKS = 16;
+    
+    private int threads = DEFAULT_THREADS;
+    private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+    
+    private StargateFileSystem filesystem;
+    private Map<String, HTTPUserInterfaceClient> clients = new HashMap<String, HTTPUserInterfaceClient>();
+    private ExecutorService executor;
+    private Semaphore openFiles;
+    // bandwidth stream class of chunk transfers, from the configuration of the copy
+    private String streamClass;
+    private List<IOException> failures = new ArrayList<IOException>();
+    
+    public StargateCopyTool() {
+    }
+    
+    public StargateCopyTool(Configuration conf) {
+        super(conf);
+    }
+    
+    public void setThreads(int threads) {
+        if(threads <= 0) {
+            throw new IllegalArgumentException("threads is not positive");
+        }
+        
+        this.threads = threads;
+    }
+    
+    public int getThreads() {
+        return this.threads;
+    }
+    
+    public void setMaxOpenFiles(int maxOpenFiles) {
+        if(maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("maxOpenFiles is not positive");
+        }
+        
+        this.maxOpenFiles = maxOpenFiles;
+    }
+    
+    public int getMaxOpenFiles() {
+        return this.maxOpenFiles;
+    }
+    
+    /**
+     * Copies the file or directory. If dst is an existing directory, src is
+     * copied into it.
+     */
+    public synchronized void copy(Path src, Path dst) throws IOException {
+        if(src == null) {
+            throw new IllegalArgumentException("src is null");
+        }
+        
+        if(dst == null) {
+            throw new IllegalArgumentException("dst is null");
+        }
+        
+        Configuration conf = getConf();
+        if(conf == null) {
+            conf = new Configuration();
+        }
+        
+        FileSystem srcFS = src.getFileSystem(conf);
+        if(!(srcFS instanceof StargateHDFS)) {
+            throw new IOException("source is not in a Stargate file system : " + src.toString());
+        }
+        
+        StargateHDFS sgfs = (StargateHDFS) srcFS;
+        FileSystem dstFS = dst.getFileSystem(conf);
+        
+        FileStatus srcStatus = sgfs.getFileStatus(src);
+        if(dstFS.exists(dst) && dstFS.getFileStatus(dst).isDirectory()) {
+            dst = new Path(dst, src.getName());
+        }
+        
+        List<FileStatus> srcFiles = new ArrayList<FileStatus>();
+        List<Path> dstFiles = new ArrayList<Path>();
+        plan(sgfs, srcStatus, dstFS, dst, srcFiles, dstFiles);
+        
+        LOG.info(String.format("copying %d files from %s to %s", srcFiles.size(), src.toString(), dst.toString()));
+        
+        this.filesystem = sgfs.getStargateFileSystem();
+        this.streamClass = conf.get(StargateFileSystemConfig.BANDWIDTH_STREAM_CLASS_FIELD_NAME, StargateFileSystemConfig.DEFAULT_BANDWIDTH_STREAM_CLASS);
+        this.executor = Executors.newFixedThreadPool(this.threads);
+        this.openFiles = new Semaphore(this.maxOpenFiles);
+        this.failures.clear();
+        
+        try {
+            for(int i = 0; i < srcFiles.size(); i++) {
+                FileStatus srcFile = srcFiles.get(i);
+                Path dstFile = dstFiles.get(i);
+                
+                try {
+                    File localFile = getLocalFile(dstFS, dstFile);
+                    if(localFile != null) {
+                        copyToLocal(sgfs, srcFile, dstFS, dstFile, localFile);
+                    } else {
+                        copyToFileSystem(sgfs, srcFile, dstFS, dstFile);
+                    }
+                } catch (IOException ex) {
+                    LOG.error("cannot copy " + srcFile.getPath().toString(), ex);
+                    addFailure(ex);
+                }
+            }
+            
+            this.executor.shutdown();
+            while(!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.debug("waiting for copy to complete");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("copy interrupted, run again to resume", ex);
+        } finally {
+            this.executor.shutdownNow();
+            
+            for(HTTPUserInterfaceClient client : this.clients.values()) {
+                if(!this.filesystem.isSharedClient(client)) {
+                    client.disconnect();
+                }
+            }
+            this.clients.clear();
+        }
+        
+        synchronized(this.failures) {
+            if(!this.failures.isEmpty()) {
+                IOException ex = new IOException(String.format("failed to copy %d files, run again to resume", this.failures.size()), this.failures.get(0));
+                this.failures.clear();
+                throw ex;
+            }
+        }
+    }
+    
+    private void plan(StargateHDFS sgfs, FileStatus srcStatus, FileSystem dstFS, Path dst, List<FileStatus> srcFiles, List<Path> dstFiles) throws IOException {
+        if(srcStatus.isDirectory()) {
+            dstFS.mkdirs(dst);
+            
+            FileStatus[] entries = sgfs.listStatus(srcStatus.getPath());
+            for(FileStatus entry : entries) {
+                plan(sgfs, entry, dstFS, new Path(dst, entry.getPath().getName()), srcFiles, dstFiles);
+            }
+        } else {
+            srcFiles.add(srcStatus);
+            dstFiles.add(dst);
+        }
+    }
+    
+    private File getLocalFile(FileSystem fs, Path path) {
+        if(fs instanceof LocalFileSystem) {
+            return ((LocalFileSystem) fs).pathToFile(path);
+        } else if(fs instanceof RawLocalFileSystem) {
+            return ((RawLocalFileSystem) fs).pathToFile(path);
+        }
+        return null;
+    }
+    
+    private boolean isCopied(FileStatus srcFile, FileSystem dstFS, Path dstFile) throws IOException {
+        if(!dstFS.exists(dstFile)) {
+            return false;
+        }
+        
+        FileStatus dstStatus = dstFS.getFileStatus(dstFile);
+        return dstStatus.isFile() && dstStatus.getLen() == srcFile.getLen() && dstStatus.getModificationTime() == srcFile.getModificationTime();
+    }
+    
+    private void addFailure(IOException ex) {
+        synchronized(this.failures) {
+            this.failures.add(ex);
+        }
+    }
+    
+    private void acquireOpenFile() throws InterruptedException {
+        this.openFiles.acquire();
+    }
+    
+    private void copyToFileSystem(final StargateHDFS sgfs, final FileStatus srcFile, final FileSystem dstFS, final Path dstFile) throws IOException, InterruptedException {
+        if(isCopied(srcFile, dstFS, dstFile)) {
+            LOG.debug("skipping a file already copied : " + dstFile.toString());
+            return;
+        }
+        
+        acquireOpenFile();
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Path tempFile = new Path(dstFile.getParent(), dstFile.getName() + TEMP_SUFFIX);
+                    FSDataInputStream is = sgfs.open(srcFile.getPath(), COPY_BUFFER_SIZE);
+                    try {
+                        OutputStream os = dstFS.create(tempFile, true);
+                        IOUtils.copyBytes(is, os, COPY_BUFFER_SIZE, true);
+                    } finally {
+                        IOUtils.closeStream(is);
+                    }
+                    
+                    if(dstFS.exists(dstFile)) {
+                        dstFS.delete(dstFile, false);
+                    }
+                    
+                    if(!dstFS.rename(tempFile, dstFile)) {
+                        throw new IOException("cannot rename " + tempFile.toString() + " to " + dstFile.toString());
+                    }
+                    dstFS.setTimes(dstFile, srcFile.getModificationTime(), -1);
+                } catch (IOException ex) {
+                    LOG.error("cannot copy " + srcFile.getPath().toString(), ex);
+                    addFailure(ex);
+                } finally {
+                    openFiles.release();
+                }
+            }
+        });
+    }
+    
+    private void copyToLocal(StargateHDFS sgfs, FileStatus srcFile, FileSystem dstFS, Path dstFile, File localFile) throws IOException, InterruptedException {
+        File markerFile = new File(localFile.getPath() + MARKER_SUFFIX);
+        if(!markerFile.exists() && isCopied(srcFile, dstFS, dstFile)) {
+            LOG.debug("skipping a file already copied : " + dstFile.toString());
+            return;
+        }
+        
+        URI srcURI = sgfs.makeAbsoluteURI(srcFile.getPath());
+        CompactRecipe recipe = this.filesystem.getRecipe(srcURI);
+        
+        acquireOpenFile();
+        LocalFileCopy fileCopy;
+        try {
+            fileCopy = new LocalFileCopy(recipe, dstFS, dstFile, localFile, markerFile, srcFile.getModificationTime());
+        } catch (IOException ex) {
+            this.openFiles.release();
+            throw ex;
+        }
+        
+        List<Integer> chunks = fileCopy.getRemainingChunks();
+        if(chunks.isEmpty()) {
+            fileCopy.complete();
+            return;
+        }
+        
+        for(final Integer chunkIndex : chunks) {
+            final LocalFileCopy copy = fileCopy;
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        copyChunk(copy, chunkIndex);
+                        copy.chunkDone(chunkIndex, null);
+                    } catch (IOException ex) {
+                        copy.chunkDone(chunkIndex, ex);
+                    } catch (RuntimeException ex) {
+                        copy.chunkDone(chunkIndex, new IOException(ex));
+                    }
+                }
+            });
+        }
+    }
+    
+    private HTTPUserInterfaceClient getClient(String nodeName) throws IOException {
+        synchronized(this.clients) {
+            HTTPUserInterfaceClient client = this.clients.get(nodeName);
+            if(client == null) {
+                client = this.filesystem.getNodeClient(nodeName);
+                this.clients.put(nodeName, client);
+            }
+            
+            if(!client.isConnected()) {
+                client.connect();
+            }
+            return client;
+        }
+    }
+    
+    private void copyChunk(LocalFileCopy fileCopy, int chunkIndex) throws IOException {
+        List<String> nodeNames = fileCopy.recipe.getChunkNodeNames(chunkIndex);
+        if(nodeNames.isEmpty()) {
+            throw new IOException("Cannot find responsible remote nodes");
+        }
+        
+        // spread neighbouring chunks over replicas, fail over to the others
+        int start = chunkIndex % nodeNames.size();
+        IOException lastException = null;
+        for(int i = 0; i < nodeNames.size(); i++) {
+            String nodeName = nodeNames.get((start + i) % nodeNames.size());
+            try {
+                HTTPUserInterfaceClient client = getClient(nodeName);
+                transferChunk(client, fileCopy, chunkIndex);
+                return;
+            } catch (IOException ex) {
+                LOG.warn(String.format("cannot copy chunk %d from %s", chunkIndex, nodeName), ex);
+                lastException = ex;
+            }
+        }
+        
+        throw lastException;
+    }
+    
+    private void transferChunk(HTTPUserInterfaceClient client, LocalFileCopy fileCopy, int chunkIndex) throws IOException {
+        CompactRecipe recipe = fileCopy.recipe;
+        DataObjectURI uri = recipe.getMetadata().getURI();
+        String hash = recipe.getChunkHash(chunkIndex);
+        long chunkOffset = recipe.getChunkOffset(chunkIndex);
+        int chunkLength = recipe.getChunkLength(chunkIndex);
+        
+        DataChunkStatus status = client.requestDataChunk(uri, hash);
+        if(status.getSource() == DataChunkSourceType.DATA_CHUNK_SOURCE_REMOTE_CLUSTER && client.canDirectAccessCacheFile(status)) {
+            // cached on this node, let the kernel copy
+            FileInputStream cacheIS = new FileInputStream(status.getLocalCachePath());
+            try {
+                FileChannel cacheChannel = cacheIS.getChannel();
+                long transferred = 0;
+                while(transferred < chunkLength) {
+                    long n = fileCopy.channel.transferFrom(cacheChannel, chunkOffset + transferred, chunkLength - transferred);
+                    if(n <= 0) {
+                        throw new IOException("Unexpected end of cache file : " + status.getLocalCachePathString());
+                    }
+                    transferred += n;
+                }
+            } finally {
+                cacheIS.close();
+            }
+            return;
+        }
+        
+        BandwidthShaper shaper = BandwidthShaper.getInstance();
+        BandwidthShaper.StreamState shaperState = shaper.newStream(this.streamClass);
+        boolean remote = status.getSource() == DataChunkSourceType.DATA_CHUNK_SOURCE_REMOTE_CLUSTER;
+        
+        InputStream is = client.getDataChunk(uri, hash, status);
+        try {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long position = chunkOffset;
+            long end = chunkOffset + chunkLength;
+            int read = 0;
+            while(position < end && (read = is.read(buffer, 0, (int) Math.min(buffer.length, end - position))) >= 0) {
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, read);
+                while(bb.hasRemaining()) {
+                    position += fileCopy.channel.write(bb, position);
+                }
+                shaper.acquire(shaperState, uri.getClusterName(), remote, read);
+            }
+            
+            if(position != end) {
+                throw new IOException(String.format("Unexpected end of chunk %s, expected %d bytes but read %d bytes", hash, chunkLength, position - chunkOffset));
+            }
+        } finally {
+            is.close();
+        }
+    }
+    
+    private class LocalFileCopy {
+        
+        private CompactRecipe recipe;
+        private FileSystem dstFS;
+        private Path dstFile;
+        private File markerFile;
+        private long modificationTime;
+        private RandomAccessFile file;
+        private FileChannel channel;
+        private Writer markerWriter;
+        private BitSet copiedChunks = new BitSet();
+        // copied, but not yet forced to disk and recorded
+        private List<Integer> pendingChunks = new ArrayList<Integer>();
+        private int remainingChunks;
+        private IOException failure;
+        
+        LocalFileCopy(CompactRecipe recipe, FileSystem dstFS, Path dstFile, File localFile, File markerFile, long modificationTime) throws IOException {
+            this.recipe = recipe;
+            this.dstFS = dstFS;
+            this.dstFile = dstFile;
+            this.markerFile = markerFile;
+            this.modificationTime = modificationTime;
+            
+            String key = makeResumeKey(recipe.getMetadata());
+            boolean resume = loadMarker(key);
+            
+            File parent = localFile.getAbsoluteFile().getParentFile();
+            if(parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+                throw new IOException("cannot create a directory : " + parent.getPath());
+            }
+            
+            this.file = new RandomAccessFile(localFile, "rw");
+            this.file.setLength(recipe.getSize());
+            this.channel = this.file.getChannel();
+            
+            this.markerWriter = new OutputStreamWriter(new FileOutputStream(markerFile, resume), ENCODING);
+            if(!resume) {
+                this.markerWriter.write(key + "\n");
+                this.markerWriter.flush();
+            } else {
+                LOG.info(String.format("resuming %s, %d chunks already copied", dstFile.toString(), this.copiedChunks.cardinality()));
+            }
+        }
+        
+        private String makeResumeKey(DataObjectMetadata metadata) {
+            DataObjectURI uri = metadata.getURI();
+            return String.format("%s/%s@%d:%d", uri.getClusterName(), uri.getPath(), metadata.getLastModifiedTime(), metadata.getSize());
+        }
+        
+        private boolean loadMarker(String key) throws IOException {
+            if(!this.markerFile.exists()) {
+                return false;
+            }
+            
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.markerFile), ENCODING));
+            try {
+                String line = reader.readLine();
+                if(line == null || !line.equals(key)) {
+                    // source has changed, start over
+                    return false;
+                }
+                
+                while((line = reader.readLine()) != null) {
+                    try {
+                        this.copiedChunks.set(Integer.parseInt(line.trim()));
+                    } catch (NumberFormatException ex) {
+                        // partially written line
+                    }
+                }
+                return true;
+            } finally {
+                reader.close();
+            }
+        }
+        
+        List<Integer> getRemainingChunks() {
+            List<Integer> chunks = new ArrayList<Integer>();
+            int chunkCount = this.recipe.getChunkCount();
+            for(int i = 0; i < chunkCount; i++) {
+                if(!this.copiedChunks.get(i)) {
+                    chunks.add(i);
+                }
+            }
+            
+            synchronized(this) {
+                this.remainingChunks = chunks.size();
+            }
+            return chunks;
+        }
+        
+        void chunkDone(int chunkIndex, IOException ex) {
+            boolean last;
+            synchronized(this) {
+                if(ex == null) {
+                    this.pendingChunks.add(chunkIndex);
+                    if(this.pendingChunks.size() >= MARKER_BATCH_CHUNKS) {
+                        try {
+                            recordPendingChunks();
+                        } catch (IOException wex) {
+                            ex = wex;
+                        }
+                    }
+                }
+                
+                if(ex != null && this.failure == null) {
+                    this.failure = ex;
+                }
+                
+                this.remainingChunks--;
+                last = (this.remainingChunks == 0);
+            }
+            
+            if(last) {
+                complete();
+            }
+        }
+        
+        /**
+         * Forces copied data to disk, then records the chunks in the marker,
+         * so the marker never lists chunks that a crash could lose.
+         */
+        private synchronized void recordPendingChunks() throws IOException {
+            this.channel.force(false);
+            
+            for(int chunkIndex : this.pendingChunks) {
+                this.markerWriter.write(chunkIndex + "\n");
+            }
+            this.markerWriter.flush();
+            this.pendingChunks.clear();
+        }
+        
+        void complete() {
+            try {
+                try {
+                    recordPendingChunks();
+                } finally {
+                    this.file.close();
+                    this.markerWriter.close();
+                }
+                
+                if(this.failure != null) {
+                    throw this.failure;
+                }
+                
+                this.markerFile.delete();
+                this.dstFS.setTimes(this.dstFile, this.modificationTime, -1);
+            } catch (IOException ex) {
+                LOG.error("cannot copy to " + this.dstFile.toString(), ex);
+                addFailure(ex);
+            } finally {
+                openFiles.release();
+            }
+        }
+    }
+    
+    @Override
+    public int run(String[] args) throws Exception {
+        List<String> paths = new ArrayList<String>();
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-threads") && i + 1 < args.length) {
+                setThreads(Integer.parseInt(args[++i]));
+            } else if(args[i].equals("-maxOpenFiles") && i + 1 < args.length) {
+                setMaxOpenFiles(Integer.parseInt(args[++i]));
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        
+        if(paths.size() != 2) {
+            System.err.println("Usage: StargateCopyTool [-threads N] [-maxOpenFiles N] <src sgfs path> <dst path>");
+            ToolRunner.printGenericCommandUsage(System.err);
+            return 1;
+        }
+        
+        copy(new Path(paths.get(0)), new Path(paths.get(1)));
+        return 0;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new Configuration(), new StargateCopyTool(), args);
+        System.exit(exitCode);
+    }
+}
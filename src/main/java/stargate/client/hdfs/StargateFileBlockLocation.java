@@ -29,11 +29,21 @@ import stargate.commons.utils.StringUtils;
  */
 public class StargateFileBlockLocation {
     
+    private static final String[] EMPTY_STRING_ARRAY = new String[0];
+    
     private List<String> names = new ArrayList<String>();
     private List<String> hosts = new ArrayList<String>();
+    private List<String> topologyPaths = new ArrayList<String>();
+    private List<String> cachedHosts = new ArrayList<String>();
     private long offset;
     private long length;
     
+    // memoized for BlockLocation
+    private String[] nameArray;
+    private String[] hostArray;
+    private String[] topologyPathArray;
+    private String[] cachedHostArray;
+    
     StargateFileBlockLocation() {
     }
     
@@ -57,6 +67,7 @@ public class StargateFileBlockLocation {
                 && host != null && !host.isEmpty()) {
                 this.names.add(entry.getName());
                 this.hosts.add(entry.getHost());
+                this.topologyPaths.add(entry.getTopologyPath());
             }
         }
         
@@ -110,11 +121,23 @@ public class StargateFileBlockLocation {
         }
         
         this.names.add(name);
+        this.nameArray = null;
+        this.topologyPathArray = null;
     }
     
     @JsonIgnore
     public void clearNames() {
         this.names.clear();
+        this.nameArray = null;
+        this.topologyPathArray = null;
+    }
+    
+    @JsonIgnore
+    public synchronized String[] getNameArray() {
+        if(this.nameArray == null) {
+            this.nameArray = this.names.toArray(EMPTY_STRING_ARRAY);
+        }
+        return this.nameArray;
     }
     
     @JsonProperty("hosts")
@@ -140,11 +163,116 @@ public class StargateFileBlockLocation {
         }
         
         this.hosts.add(host);
+        this.hostArray = null;
     }
     
     @JsonIgnore
     public void clearHosts() {
         this.hosts.clear();
+        this.hostArray = null;
+    }
+    
+    @JsonIgnore
+    public synchronized String[] getHostArray() {
+        if(this.hostArray == null) {
+            this.hostArray = this.hosts.toArray(EMPTY_STRING_ARRAY);
+        }
+        return this.hostArray;
+    }
+    
+    @JsonProperty("topology_paths")
+    public Collection<String> getTopologyPaths() {
+        return Collections.unmodifiableCollection(this.topologyPaths);
+    }
+
+    @JsonProperty("topology_paths")
+    public void addTopologyPaths(Collection<String> topologyPaths) {
+        if(topologyPaths == null) {
+            throw new IllegalArgumentException("topologyPaths is null");
+        }
+        
+        for(String topologyPath : topologyPaths) {
+            addTopologyPath(topologyPath);
+        }
+    }
+    
+    @JsonIgnore
+    public void addTopologyPath(String topologyPath) {
+        if(topologyPath == null || topologyPath.isEmpty()) {
+            throw new IllegalArgumentException("topologyPath is null or empty");
+        }
+        
+        this.topologyPaths.add(topologyPath);
+        this.topologyPathArray = null;
+    }
+    
+    @JsonIgnore
+    public void clearTopologyPaths() {
+        this.topologyPaths.clear();
+        this.topologyPathArray = null;
+    }
+    
+    @JsonIgnore
+    public synchronized String[] getTopologyPathArray() {
+        if(this.topologyPathArray == null) {
+            if(this.topologyPaths.size() == this.names.size()) {
+                this.topologyPathArray = this.topologyPaths.toArray(EMPTY_STRING_ARRAY);
+            } else {
+                // not given, place all under default rack
+                String[] paths = new String[this.names.size()];
+                int i = 0;
+                for(String name : this.names) {
+                    paths[i] = StargateFileBlockLocationEntry.DEFAULT_RACK + "/" + name;
+                    i++;
+                }
+                this.topologyPathArray = paths;
+            }
+        }
+        return this.topologyPathArray;
+    }
+
+    @JsonProperty("cached_hosts")
+    public Collection<String> getCachedHosts() {
+        return Collections.unmodifiableCollection(this.cachedHosts);
+    }
+
+    @JsonProperty("cached_hosts")
+    public void addCachedHosts(Collection<String> cachedHosts) {
+        if(cachedHosts == null) {
+            throw new IllegalArgumentException("cachedHosts is null");
+        }
+        
+        for(String cachedHost : cachedHosts) {
+            addCachedHost(cachedHost);
+        }
+    }
+    
+    /**
+     * Adds a host that has the block in its cache. The host should also be
+     * one of the hosts.
+     */
+    @JsonIgnore
+    public void addCachedHost(String cachedHost) {
+        if(cachedHost == null || cachedHost.isEmpty()) {
+            throw new IllegalArgumentException("cachedHost is null or empty");
+        }
+        
+        this.cachedHosts.add(cachedHost);
+        this.cachedHostArray = null;
+    }
+    
+    @JsonIgnore
+    public void clearCachedHosts() {
+        this.cachedHosts.clear();
+        this.cachedHostArray = null;
+    }
+    
+    @JsonIgnore
+    public synchronized String[] getCachedHostArray() {
+        if(this.cachedHostArray == null) {
+            this.cachedHostArray = this.cachedHosts.toArray(EMPTY_STRING_ARRAY);
+        }
+        return this.cachedHostArray;
     }
 
     @JsonProperty("offset")
@@ -180,7 +308,8 @@ public class StargateFileBlockLocation {
     public String toString() {
         String names = StringUtils.getCommaSeparatedString(this.names);
         String hosts = StringUtils.getCommaSeparatedString(this.hosts);
+        String cachedHosts = StringUtils.getCommaSeparatedString(this.cachedHosts);
         
-        return String.format("FileBlockLocation: off(%d), len(%d), names(%s), hosts(%s)", this.offset, this.length, names, hosts);
+        return String.format("FileBlockLocation: off(%d), len(%d), names(%s), hosts(%s), cachedHosts(%s)", this.offset, this.length, names, hosts, cachedHosts);
     }
 }
@@ -23,8 +23,11 @@ import org.codehaus.jackson.annotate.JsonProperty;
  */
 public class StargateFileBlockLocationEntry {
     
+    public static final String DEFAULT_RACK = "/default-rack";
+    
     private String name;
     private String host;
+    private String topologyPath;
     
     StargateFileBlockLocationEntry() {
     }
@@ -40,6 +43,32 @@ public class StargateFileBlockLocationEntry {
         
         this.name = name;
         this.host = host;
+        this.topologyPath = makeTopologyPath(DEFAULT_RACK, name);
+    }
+    
+    public StargateFileBlockLocationEntry(String name, String host, String rack) {
+        if(name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name is null or empty");
+        }
+        
+        if(host == null || host.isEmpty()) {
+            throw new IllegalArgumentException("host is null or empty");
+        }
+        
+        if(rack == null || rack.isEmpty()) {
+            throw new IllegalArgumentException("rack is null or empty");
+        }
+        
+        this.name = name;
+        this.host = host;
+        this.topologyPath = makeTopologyPath(rack, name);
+    }
+    
+    private static String makeTopologyPath(String rack, String name) {
+        if(rack.endsWith("/")) {
+            return rack + name;
+        }
+        return rack + "/" + name;
     }
     
     @JsonProperty("name")
@@ -54,6 +83,7 @@ public class StargateFileBlockLocationEntry {
         }
         
         this.name = name;
+        this.topologyPath = makeTopologyPath(DEFAULT_RACK, name);
     }
     
     @JsonProperty("host")
@@ -69,4 +99,18 @@ public class StargateFileBlockLocationEntry {
         
         this.host = host;
     }
+    
+    @JsonProperty("topology_path")
+    public String getTopologyPath() {
+        return this.topologyPath;
+    }
+    
+    @JsonProperty("topology_path")
+    public void setTopologyPath(String topologyPath) {
+        if(topologyPath == null || topologyPath.isEmpty()) {
+            throw new IllegalArgumentException("topologyPath is null or empty");
+        }
+        
+        this.topologyPath = topologyPath;
+    }
 }
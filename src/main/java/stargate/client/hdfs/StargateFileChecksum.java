@@ -0,0 +1,134 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.io.Text;
+import stargate.drivers.userinterface.http.CompactRecipe;
+
+/**
+ * File checksum derived from chunk hashes of a recipe.
+ *
+ * The checksum is an MD5 over the chunk lengths and hashes in file order,
+ * so it is computed without reading file data. Two files have the same
+ * checksum only if the recipes use the same hash algorithm and chunk size.
+ *
+ * @author iychoi
+ */
+public class StargateFileChecksum extends FileChecksum {
+
+    private static final String ALGORITHM_PREFIX = "SGFS-MD5-";
+    private static final String DIGEST_ALGORITHM = "MD5";
+    
+    private String algorithmName;
+    private byte[] digest;
+    
+    public static StargateFileChecksum create(CompactRecipe recipe) throws IOException {
+        if(recipe == null) {
+            throw new IllegalArgumentException("recipe is null");
+        }
+        
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        
+        int chunkCount = recipe.getChunkCount();
+        byte[] lengthBytes = new byte[4];
+        try {
+            for(int i = 0; i < chunkCount; i++) {
+                int length = recipe.getChunkLength(i);
+                lengthBytes[0] = (byte) (length >>> 24);
+                lengthBytes[1] = (byte) (length >>> 16);
+                lengthBytes[2] = (byte) (length >>> 8);
+                lengthBytes[3] = (byte) length;
+                md.update(lengthBytes);
+                md.update(recipe.getChunkHash(i).toLowerCase().getBytes("UTF-8"));
+            }
+        } catch (UnsupportedEncodingException ex) {
+            throw new IOException(ex);
+        }
+        
+        String algorithmName = String.format("%s%s-%d", ALGORITHM_PREFIX, recipe.getHashAlgorithm().toUpperCase(), recipe.getChunkSize());
+        return new StargateFileChecksum(algorithmName, md.digest());
+    }
+    
+    StargateFileChecksum() {
+    }
+    
+    public StargateFileChecksum(String algorithmName, byte[] digest) {
+        if(algorithmName == null || algorithmName.isEmpty()) {
+            throw new IllegalArgumentException("algorithmName is null or empty");
+        }
+        
+        if(digest == null) {
+            throw new IllegalArgumentException("digest is null");
+        }
+        
+        this.algorithmName = algorithmName;
+        this.digest = digest;
+    }
+    
+    @Override
+    public String getAlgorithmName() {
+        return this.algorithmName;
+    }
+    
+    @Override
+    public int getLength() {
+        return this.digest.length;
+    }
+    
+    @Override
+    public byte[] getBytes() {
+        return Arrays.copyOf(this.digest, this.digest.length);
+    }
+    
+    @Override
+    public void write(DataOutput out) throws IOException {
+        Text.writeString(out, this.algorithmName);
+        out.writeInt(this.digest.length);
+        out.write(this.digest);
+    }
+    
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.algorithmName = Text.readString(in);
+        int length = in.readInt();
+        this.digest = new byte[length];
+        in.readFully(this.digest);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.algorithmName);
+        sb.append(":");
+        for(byte b : this.digest) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+}
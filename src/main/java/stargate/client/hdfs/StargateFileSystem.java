@@ -15,31 +15,46 @@
 */
 package stargate.client.hdfs;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import stargate.drivers.userinterface.http.BandwidthShaper;
+import stargate.drivers.userinterface.http.CompactRecipe;
+import stargate.drivers.userinterface.http.HTTPChunkInputStream;
 import stargate.drivers.userinterface.http.HTTPUserInterfaceClient;
+import stargate.drivers.userinterface.http.RecipeSource;
+import stargate.drivers.userinterface.http.SegmentedRecipe;
+import stargate.drivers.userinterface.http.UserInterfaceClientExecutor;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.collections4.map.PassiveExpiringMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.GlobFilter;
+import org.apache.hadoop.fs.Path;
 import stargate.commons.cluster.Cluster;
 import stargate.commons.cluster.Node;
 import stargate.commons.dataobject.DataObjectMetadata;
 import stargate.commons.dataobject.DataObjectURI;
-import stargate.commons.recipe.Recipe;
-import stargate.commons.recipe.RecipeChunk;
 import stargate.commons.service.FSServiceInfo;
+import stargate.commons.userinterface.DataChunkStatus;
 import stargate.commons.userinterface.UserInterfaceInitialDataPack;
 import stargate.commons.userinterface.UserInterfaceServiceInfo;
 import stargate.commons.utils.IPUtils;
@@ -53,23 +68,51 @@ public class StargateFileSystem {
     
     private static final Log LOG = LogFactory.getLog(StargateFileSystem.class);
     
+    // max outstanding listings of a content summary
+    private static final int CONTENT_SUMMARY_BATCH_SIZE = 256;
+    // chunks of remote files whose cache nodes are remembered for block locations
+    private static final int MAX_CHUNK_CACHE_NODES = 65536;
+    
     private StargateFileSystemConfig config;
     private URI serviceURI;
     
     private HTTPUserInterfaceClient userInterfaceClient;
-    private Cluster localCluster;
-    private FSServiceInfo fsServiceInfo;
+    private StargateServiceEndpoints serviceEndpoints;
+    private volatile Cluster localCluster;
+    private volatile FSServiceInfo fsServiceInfo;
+    private StargateRackResolver rackResolver;
     
     private Pattern DFSIPPattern;
     private Pattern DFSIPAntiPattern;
     private Pattern DFSHostnamePattern;
     
-    private Map<DataObjectURI, Recipe> recipeCache = new PassiveExpiringMap<DataObjectURI, Recipe>(5, TimeUnit.MINUTES);
-    private Map<DataObjectURI, Collection<DataObjectMetadata>> dataObjectMetadataListCache = new PassiveExpiringMap<DataObjectURI, Collection<DataObjectMetadata>>(5, TimeUnit.MINUTES);
-    private DataObjectMetadata rootDataObjectMetadataCache;
+    private Map<DataObjectURI, CompactRecipe> recipeCache = Collections.synchronizedMap(new PassiveExpiringMap<DataObjectURI, CompactRecipe>(5, TimeUnit.MINUTES));
+    private Map<DataObjectURI, SegmentedRecipe> segmentedRecipeCache = Collections.synchronizedMap(new PassiveExpiringMap<DataObjectURI, SegmentedRecipe>(5, TimeUnit.MINUTES));
+    private Map<DataObjectURI, Collection<DataObjectMetadata>> dataObjectMetadataListCache = Collections.synchronizedMap(new PassiveExpiringMap<DataObjectURI, Collection<DataObjectMetadata>>(5, TimeUnit.MINUTES));
+    private Map<DataObjectURI, ContentSummary> contentSummaryCache = Collections.synchronizedMap(new PassiveExpiringMap<DataObjectURI, ContentSummary>(5, TimeUnit.MINUTES));
+    private Map<DataObjectURI, StargateFileBlockLocation[]> fileBlockLocationsCache = Collections.synchronizedMap(new PassiveExpiringMap<DataObjectURI, StargateFileBlockLocation[]>(5, TimeUnit.MINUTES));
+    private volatile DataObjectMetadata rootDataObjectMetadataCache;
     private Map<String, StargateFileBlockLocationEntry> fileBlockLocationEntryCache = new Hashtable<String, StargateFileBlockLocationEntry>();
+    // chunk hash to the local node caching the chunk, as reported to streams
+    private Map<String, String> chunkCacheNodeNameCache = Collections.synchronizedMap(new ChunkCacheNodeNameMap(MAX_CHUNK_CACHE_NODES));
+    
+    private UserInterfaceInitialDataPack initialDataPack;
+    private File snapshotFile;
+    // recently used listings to be written to the snapshot
+    private Map<String, DataObjectMetadata[]> snapshotListings;
+    
+    private File accessHistoryFile;
+    private StargateAccessHistory accessHistory;
+    // files prefetched from the history, once per file system
+    private Set<String> prefetchedPaths = Collections.synchronizedSet(new HashSet<String>());
+    // nodes of the local cluster running on this host, found on first use
+    private volatile Collection<String> colocatedNodeNames;
     
     public StargateFileSystem(URI uri, StargateFileSystemConfig config) throws IOException {
+        this(uri, config, null);
+    }
+    
+    public StargateFileSystem(URI uri, StargateFileSystemConfig config, StargateRackResolver rackResolver) throws IOException {
         if(uri == null) {
             throw new IllegalArgumentException("uri is null");
         }
@@ -78,6 +121,9 @@ public class StargateFileSystem {
             throw new IllegalArgumentException("config is null");
         }
         
+        // rackResolver can be null
+        this.rackResolver = rackResolver;
+        
         String serviceURI = getStargateHost(uri, config);
         
         try {
@@ -87,7 +133,7 @@ public class StargateFileSystem {
         }
     }
     
-    private String getStargateHost(URI uri, StargateFileSystemConfig config) {
+    static String getStargateHost(URI uri, StargateFileSystemConfig config) {
         if(uri == null) {
             throw new IllegalArgumentException("uri is null");
         }
@@ -120,18 +166,42 @@ public class StargateFileSystem {
         
         LOG.info("connecting to Stargate : " + serviceURI.toASCIIString());
         
+        // transports, caches, limits and the tracer are shared in the JVM
+        StargateJVMSettings.apply(this.config);
+        
         this.userInterfaceClient = new HTTPUserInterfaceClient(serviceURI, null, null);
         this.userInterfaceClient.connect();
+        
+        this.serviceEndpoints = new StargateServiceEndpoints(this.userInterfaceClient, this.config.getServiceEndpointFailureThreshold(), this.config.getServiceEndpointRetryInterval());
+        addConfiguredServiceEndpoints();
 
-        UserInterfaceInitialDataPack initialDataPack = this.userInterfaceClient.getInitialDataPack();
-        if(!initialDataPack.getLive()) {
-            throw new IOException("cannot connect to Stargate : " + serviceURI.toASCIIString());
+        StargateMetadataSnapshot snapshot = null;
+        if(this.config.getSnapshotDir() != null && !this.config.getSnapshotDir().isEmpty()) {
+            this.snapshotFile = StargateMetadataSnapshot.getSnapshotFile(this.config.getSnapshotDir(), serviceURI);
+            this.snapshotListings = Collections.synchronizedMap(new SnapshotListingMap(this.config.getSnapshotListingsMax()));
+            snapshot = loadSnapshot(serviceURI);
         }
         
-        this.localCluster = initialDataPack.getLocalCluster();
-        this.fsServiceInfo = initialDataPack.getFSServiceInfo();
+        if(snapshot != null) {
+            LOG.info("using a metadata snapshot : " + this.snapshotFile.getPath());
+            applyInitialDataPack(snapshot.getInitialDataPack());
+            applySnapshotListings(snapshot);
+        } else {
+            UserInterfaceInitialDataPack initialDataPack = fetchInitialDataPack();
+            if(!initialDataPack.getLive()) {
+                throw new IOException("cannot connect to Stargate : " + serviceURI.toASCIIString());
+            }
+            
+            applyInitialDataPack(initialDataPack);
+        }
         
-        this.rootDataObjectMetadataCache = initialDataPack.getRootDataObjectMetadata();
+        if(this.config.isServiceEndpointsDiscoveryEnabled()) {
+            addDiscoveredServiceEndpoints();
+        }
+        
+        if(this.config.isMetadataRoutingLocal()) {
+            setLocalServiceEndpoint();
+        }
         
         //if(!this.userInterfaceClient.isLive()) {
         //    throw new IOException("cannot connect to Stargate : " + serviceURI.toASCIIString());
@@ -146,6 +216,408 @@ public class StargateFileSystem {
             this.DFSIPAntiPattern = Pattern.compile(this.config.getDFSIPAntiPattern());
         }
         this.DFSHostnamePattern = Pattern.compile(this.config.getDFSHostnamePattern());
+        
+        String accessTraceDir = this.config.getAccessTraceDir();
+        if(accessTraceDir != null && !accessTraceDir.isEmpty()) {
+            try {
+                AccessTraceRecorder.getInstance().start(accessTraceDir);
+            } catch (IOException ex) {
+                LOG.warn("cannot start recording accesses", ex);
+            }
+        }
+        
+        if(this.config.getAccessHistoryDir() != null && !this.config.getAccessHistoryDir().isEmpty()) {
+            this.accessHistoryFile = StargateAccessHistory.getHistoryFile(this.config.getAccessHistoryDir(), serviceURI);
+            this.accessHistory = loadAccessHistory(serviceURI);
+        }
+        
+        if(snapshot != null) {
+            startSnapshotRevalidation(snapshot);
+        } else if(this.snapshotFile != null) {
+            saveSnapshot();
+        }
+    }
+    
+    private void addConfiguredServiceEndpoints() throws IOException {
+        // host1:port1,host2
+        String endpoints = this.config.getServiceEndpoints();
+        if(endpoints == null || endpoints.trim().isEmpty()) {
+            return;
+        }
+        
+        for(String endpoint : endpoints.split(",")) {
+            String hostPort = endpoint.trim();
+            if(hostPort.isEmpty()) {
+                continue;
+            }
+            
+            try {
+                URI endpointURI = new URI("http://" + hostPort);
+                int port = endpointURI.getPort();
+                if(port <= 0) {
+                    port = this.config.getStargateServicePort();
+                }
+                
+                this.serviceEndpoints.addEndpoint(new URI(String.format("http://%s:%d", endpointURI.getHost(), port)));
+            } catch (URISyntaxException ex) {
+                throw new IllegalArgumentException("malformed service endpoint : " + hostPort, ex);
+            }
+        }
+    }
+    
+    private void addDiscoveredServiceEndpoints() throws IOException {
+        for(Node node : this.localCluster.getNodes()) {
+            UserInterfaceServiceInfo userInterfaceServiceInfo = node.getUserInterfaceServiceInfo();
+            if(userInterfaceServiceInfo != null && userInterfaceServiceInfo.getServiceURI() != null) {
+                this.serviceEndpoints.addEndpoint(userInterfaceServiceInfo.getServiceURI());
+            }
+        }
+        
+        LOG.info("service endpoints : " + this.serviceEndpoints.getEndpointURIs().toString());
+    }
+    
+    private void setLocalServiceEndpoint() {
+        // find the Stargate service running on this host
+        for(Node node : this.localCluster.getNodes()) {
+            UserInterfaceServiceInfo userInterfaceServiceInfo = node.getUserInterfaceServiceInfo();
+            if(userInterfaceServiceInfo == null || userInterfaceServiceInfo.getServiceURI() == null) {
+                continue;
+            }
+            
+            URI nodeServiceURI = userInterfaceServiceInfo.getServiceURI();
+            try {
+                if(IPUtils.isLocalIPAddress(nodeServiceURI.getHost())) {
+                    this.serviceEndpoints.setPreferredEndpoint(nodeServiceURI);
+                    return;
+                }
+            } catch (IOException ex) {
+                LOG.debug("cannot check locality of " + nodeServiceURI.toString(), ex);
+            }
+        }
+        
+        LOG.info("no co-located Stargate service is found, using " + this.serviceURI.toASCIIString());
+    }
+    
+    private UserInterfaceInitialDataPack fetchInitialDataPack() throws IOException {
+        return this.serviceEndpoints.execute(new StargateServiceEndpoints.EndpointCall<UserInterfaceInitialDataPack>() {
+            @Override
+            public UserInterfaceInitialDataPack call(HTTPUserInterfaceClient client) throws IOException {
+                return client.getInitialDataPack();
+            }
+        });
+    }
+    
+    private DataObjectMetadata fetchDataObjectMetadata(final DataObjectURI path) throws IOException {
+        return this.serviceEndpoints.execute(new StargateServiceEndpoints.EndpointCall<DataObjectMetadata>() {
+            @Override
+            public DataObjectMetadata call(HTTPUserInterfaceClient client) throws IOException {
+                return client.getDataObjectMetadata(path);
+            }
+        });
+    }
+    
+    private Collection<DataObjectMetadata> fetchDataObjectMetadataList(final DataObjectURI path) throws IOException {
+        return this.serviceEndpoints.execute(new StargateServiceEndpoints.EndpointCall<Collection<DataObjectMetadata>>() {
+            @Override
+            public Collection<DataObjectMetadata> call(HTTPUserInterfaceClient client) throws IOException {
+                return client.listDataObjectMetadataStreaming(path);
+            }
+        });
+    }
+    
+    private CompactRecipe fetchRecipe(final DataObjectURI path) throws IOException {
+        final boolean localClusterPath = isLocalClusterPath(path);
+        return this.serviceEndpoints.execute(new StargateServiceEndpoints.EndpointCall<CompactRecipe>() {
+            @Override
+            public CompactRecipe call(HTTPUserInterfaceClient client) throws IOException {
+                if(localClusterPath) {
+                    return client.getCompactRecipe(path);
+                } else {
+                    return client.getRemoteCompactRecipeWithTransferSchedule(path);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Fetches the recipe without scheduling transfers of chunks of remote
+     * files, for callers only looking at hashes.
+     */
+    private CompactRecipe fetchRecipeWithoutTransfer(final DataObjectURI path) throws IOException {
+        return this.serviceEndpoints.execute(new StargateServiceEndpoints.EndpointCall<CompactRecipe>() {
+            @Override
+            public CompactRecipe call(HTTPUserInterfaceClient client) throws IOException {
+                return client.getCompactRecipe(path);
+            }
+        });
+    }
+    
+    private CompactRecipe fetchRecipeSegment(final DataObjectURI path, final long offset, final long length) throws IOException {
+        final boolean localClusterPath = isLocalClusterPath(path);
+        return this.serviceEndpoints.execute(new StargateServiceEndpoints.EndpointCall<CompactRecipe>() {
+            @Override
+            public CompactRecipe call(HTTPUserInterfaceClient client) throws IOException {
+                if(localClusterPath) {
+                    return client.getCompactRecipeSegment(path, offset, length);
+                } else {
+                    return client.getRemoteCompactRecipeSegmentWithTransferSchedule(path, offset, length);
+                }
+            }
+        });
+    }
+    
+    private synchronized void applyInitialDataPack(UserInterfaceInitialDataPack initialDataPack) {
+        this.initialDataPack = initialDataPack;
+        this.localCluster = initialDataPack.getLocalCluster();
+        this.colocatedNodeNames = null;
+        this.fsServiceInfo = initialDataPack.getFSServiceInfo();
+        
+        this.rootDataObjectMetadataCache = initialDataPack.getRootDataObjectMetadata();
+    }
+    
+    private StargateMetadataSnapshot loadSnapshot(URI serviceURI) {
+        try {
+            StargateMetadataSnapshot snapshot = StargateMetadataSnapshot.load(this.snapshotFile);
+            if(snapshot == null) {
+                return null;
+            }
+            
+            if(!serviceURI.toString().equals(snapshot.getServiceURI())) {
+                return null;
+            }
+            
+            if(snapshot.isExpired(this.config.getSnapshotMaxAge())) {
+                LOG.info("metadata snapshot is expired : " + this.snapshotFile.getPath());
+                return null;
+            }
+            
+            UserInterfaceInitialDataPack initialDataPack = snapshot.getInitialDataPack();
+            if(initialDataPack == null || !initialDataPack.getLive() || initialDataPack.getLocalCluster() == null || initialDataPack.getFSServiceInfo() == null) {
+                return null;
+            }
+            return snapshot;
+        } catch (Exception ex) {
+            LOG.warn("cannot load a metadata snapshot : " + this.snapshotFile.getPath(), ex);
+            return null;
+        }
+    }
+    
+    private synchronized void applySnapshotListings(StargateMetadataSnapshot snapshot) {
+        for(Map.Entry<String, DataObjectMetadata[]> entry : snapshot.getListings().entrySet()) {
+            DataObjectURI path = makeDataObjectURI(entry.getKey());
+            if(path != null && entry.getValue() != null) {
+                this.dataObjectMetadataListCache.put(path, Arrays.asList(entry.getValue()));
+                this.snapshotListings.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    private void startSnapshotRevalidation(final StargateMetadataSnapshot snapshot) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                revalidateSnapshot(snapshot);
+            }
+        }, "sgfs-snapshot-revalidation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void revalidateSnapshot(StargateMetadataSnapshot snapshot) {
+        try {
+            UserInterfaceInitialDataPack initialDataPack = fetchInitialDataPack();
+            if(!initialDataPack.getLive()) {
+                LOG.warn("cannot revalidate a metadata snapshot, Stargate is not live : " + this.serviceURI.toASCIIString());
+                return;
+            }
+            
+            synchronized(this) {
+                applyInitialDataPack(initialDataPack);
+                this.fileBlockLocationsCache.clear();
+                this.fileBlockLocationEntryCache.clear();
+            }
+            
+            for(String key : snapshot.getListings().keySet()) {
+                if(!this.userInterfaceClient.isConnected()) {
+                    // closed while revalidating
+                    return;
+                }
+                
+                DataObjectURI path = makeDataObjectURI(key);
+                if(path == null) {
+                    continue;
+                }
+                
+                Collection<DataObjectMetadata> metadataList = null;
+                try {
+                    metadataList = fetchDataObjectMetadataList(path);
+                } catch (IOException ex) {
+                    LOG.debug("cannot revalidate a listing of " + key, ex);
+                }
+                
+                synchronized(this) {
+                    if(metadataList == null) {
+                        this.dataObjectMetadataListCache.remove(path);
+                        this.snapshotListings.remove(key);
+                    } else {
+                        this.dataObjectMetadataListCache.put(path, metadataList);
+                        this.snapshotListings.put(key, metadataList.toArray(new DataObjectMetadata[0]));
+                    }
+                }
+            }
+            
+            saveSnapshot();
+        } catch (Exception ex) {
+            LOG.warn("cannot revalidate a metadata snapshot", ex);
+        }
+    }
+    
+    private void saveSnapshot() {
+        if(this.snapshotFile == null) {
+            return;
+        }
+        
+        StargateMetadataSnapshot snapshot;
+        synchronized(this) {
+            if(this.initialDataPack == null) {
+                return;
+            }
+            
+            snapshot = new StargateMetadataSnapshot(this.serviceURI, this.initialDataPack);
+            synchronized(this.snapshotListings) {
+                for(Map.Entry<String, DataObjectMetadata[]> entry : this.snapshotListings.entrySet()) {
+                    snapshot.addListing(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        
+        try {
+            snapshot.save(this.snapshotFile);
+        } catch (IOException ex) {
+            LOG.warn("cannot save a metadata snapshot : " + this.snapshotFile.getPath(), ex);
+        }
+    }
+    
+    private StargateAccessHistory loadAccessHistory(URI serviceURI) {
+        try {
+            StargateAccessHistory history = StargateAccessHistory.load(this.accessHistoryFile);
+            if(history != null && serviceURI.toString().equals(history.getServiceURI())) {
+                return history;
+            }
+        } catch (IOException ex) {
+            LOG.warn("cannot load an access history : " + this.accessHistoryFile.getPath(), ex);
+        }
+        return new StargateAccessHistory(serviceURI);
+    }
+    
+    private void saveAccessHistory() {
+        if(this.accessHistoryFile == null) {
+            return;
+        }
+        
+        Map<String, StargateAccessHistory.FileAccess> updatedFiles = this.accessHistory.getUpdatedFiles();
+        if(updatedFiles.isEmpty()) {
+            return;
+        }
+        
+        // other processes may have saved their accesses since we loaded
+        StargateAccessHistory history = loadAccessHistory(this.serviceURI);
+        history.putFiles(updatedFiles);
+        history.trim(this.config.getAccessHistoryMaxFiles());
+        
+        try {
+            history.save(this.accessHistoryFile);
+        } catch (IOException ex) {
+            LOG.warn("cannot save an access history : " + this.accessHistoryFile.getPath(), ex);
+        }
+    }
+    
+    /**
+     * Asks the service to ready chunks read from the file in earlier runs,
+     * i.e., remote chunks are transferred to the local cluster and local
+     * chunks are cached. Runs in the background, once per file.
+     */
+    private void prefetchFromHistory(final DataObjectURI path, final RecipeSource recipeSource) {
+        final int maxChunks = this.config.getAccessHistoryPrefetchMaxChunks();
+        if(maxChunks <= 0) {
+            return;
+        }
+        
+        String key = makeSnapshotKey(path);
+        StargateAccessHistory.FileAccess access = this.accessHistory.getFileAccess(key);
+        if(access == null || !this.prefetchedPaths.add(key)) {
+            return;
+        }
+        
+        final long[] ranges = access.getRanges();
+        final boolean localClusterPath = isLocalClusterPath(path);
+        UserInterfaceClientExecutor.getInstance().submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                try {
+                    return prefetchRanges(path, recipeSource, ranges, localClusterPath, maxChunks);
+                } catch (IOException ex) {
+                    LOG.debug("cannot prefetch chunks of " + path.toString(), ex);
+                    return 0;
+                }
+            }
+        });
+    }
+    
+    private int prefetchRanges(DataObjectURI path, RecipeSource recipeSource, long[] ranges, boolean localClusterPath, int maxChunks) throws IOException {
+        long size = recipeSource.getSize();
+        Set<String> hashes = new HashSet<String>();
+        
+        for(int i = 0; i + 1 < ranges.length && hashes.size() < maxChunks; i += 2) {
+            long offset = ranges[i];
+            long end = Math.min(ranges[i + 1], size);
+            while(offset < end && hashes.size() < maxChunks) {
+                CompactRecipe recipe = recipeSource.getRecipe(offset);
+                int chunkIndex = recipe.getChunkIndex(offset);
+                if(chunkIndex < 0) {
+                    break;
+                }
+                
+                String hash = recipe.getChunkHash(chunkIndex);
+                if(hashes.add(hash)) {
+                    // not waited for, readers wait for chunks not ready yet
+                    if(localClusterPath) {
+                        this.userInterfaceClient.requestDataChunkAsync(path, hash);
+                    } else {
+                        this.userInterfaceClient.schedulePrefetchAsync(path, hash);
+                    }
+                }
+                offset = recipe.getChunkOffset(chunkIndex) + recipe.getChunkLength(chunkIndex);
+            }
+        }
+        
+        if(LOG.isDebugEnabled()) {
+            LOG.debug(String.format("prefetching %d chunks of %s from the access history", hashes.size(), path.toString()));
+        }
+        return hashes.size();
+    }
+    
+    private String makeSnapshotKey(DataObjectURI uri) {
+        String clusterName = uri.getClusterName();
+        String p = uri.getPath();
+        
+        if(clusterName == null || clusterName.isEmpty()) {
+            return "/";
+        }
+        
+        if(p == null || p.isEmpty() || p.equals("/")) {
+            return "/" + clusterName;
+        }
+        return "/" + clusterName + p;
+    }
+    
+    private DataObjectURI makeDataObjectURI(String snapshotKey) {
+        try {
+            return makeDataObjectURI(new URI(null, null, snapshotKey, null));
+        } catch (URISyntaxException ex) {
+            LOG.debug("malformed snapshot key : " + snapshotKey, ex);
+            return null;
+        }
     }
     
     private String getClusterName(URI uri) {
@@ -227,11 +699,28 @@ public class StargateFileSystem {
         }
     }
     
-    public synchronized Collection<StargateFileStatus> listStatus(URI uri) throws IOException {
+    public Collection<StargateFileStatus> listStatus(URI uri) throws IOException {
         if(uri == null) {
             throw new IllegalArgumentException("uri is null");
         }
         
+        AccessTraceRecorder recorder = AccessTraceRecorder.getInstance();
+        if(!recorder.isRecording()) {
+            return listStatusInternal(uri);
+        }
+        
+        long start = System.nanoTime();
+        int entries = -1;
+        try {
+            Collection<StargateFileStatus> statusList = listStatusInternal(uri);
+            entries = statusList.size();
+            return statusList;
+        } finally {
+            recorder.recordListStatus(uri.getPath(), entries, System.nanoTime() - start);
+        }
+    }
+    
+    private Collection<StargateFileStatus> listStatusInternal(URI uri) throws IOException {
         DataObjectURI path = makeDataObjectURI(uri);
         List<StargateFileStatus> stargateStatusList = new ArrayList<StargateFileStatus>();
         
@@ -239,13 +728,17 @@ public class StargateFileSystem {
 
         if(cachedMetadataList == null) {
             try {
-                Collection<DataObjectMetadata> metadataList = this.userInterfaceClient.listDataObjectMetadata(path);
+                Collection<DataObjectMetadata> metadataList = fetchDataObjectMetadataList(path);
                 if(metadataList == null) {
                     throw new IOException(String.format("cannot retrive a metadata list for %s", path.toString()));
                 }
 
                 this.dataObjectMetadataListCache.put(path, metadataList);
                 cachedMetadataList = metadataList;
+                
+                if(this.snapshotListings != null) {
+                    this.snapshotListings.put(makeSnapshotKey(path), metadataList.toArray(new DataObjectMetadata[0]));
+                }
             } catch (FileNotFoundException ex) {
                 throw ex;
             } catch (Exception ex) {
@@ -259,59 +752,347 @@ public class StargateFileSystem {
         return stargateStatusList;
     }
 
-    public synchronized FSChunkInputStream open(URI uri, int bufferSize) throws IOException {
+    private static boolean hasGlob(String component) {
+        for(int i = 0; i < component.length(); i++) {
+            char ch = component.charAt(i);
+            if(ch == '*' || ch == '?' || ch == '[' || ch == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isSupportedGlob(String pattern) {
+        if(pattern.indexOf('\\') >= 0) {
+            // escapes
+            return false;
+        }
+        
+        int depth = 0;
+        for(int i = 0; i < pattern.length(); i++) {
+            char ch = pattern.charAt(i);
+            if(ch == '{') {
+                depth++;
+            } else if(ch == '}') {
+                depth--;
+            } else if(ch == '/' && depth > 0) {
+                // alternatives spanning path components
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+    
+    private static String getLastComponent(URI uri) {
+        String p = uri.getPath();
+        if(p.endsWith("/") && p.length() > 1) {
+            p = p.substring(0, p.length() - 1);
+        }
+        return p.substring(p.lastIndexOf('/') + 1);
+    }
+    
+    /**
+     * Expands a glob pattern (an absolute path) under baseURI.
+     * Components before the first glob are not listed, and directories
+     * matching a glob component are listed in parallel. Returns null if the
+     * pattern needs the generic globber (escapes, alternatives with '/').
+     */
+    public Collection<StargateFileStatus> globStatus(URI baseURI, String pattern) throws IOException {
+        if(baseURI == null) {
+            throw new IllegalArgumentException("baseURI is null");
+        }
+        
+        if(pattern == null || !pattern.startsWith("/")) {
+            throw new IllegalArgumentException("pattern is not an absolute path");
+        }
+        
+        if(!isSupportedGlob(pattern)) {
+            return null;
+        }
+        
+        if(this.config.isGlobPushdownEnabled()) {
+            Collection<StargateFileStatus> pushedDown = globStatusPushdown(baseURI, pattern);
+            if(pushedDown != null) {
+                return pushedDown;
+            }
+        }
+        
+        List<String> components = new ArrayList<String>();
+        for(String component : pattern.split("/")) {
+            if(!component.isEmpty()) {
+                components.add(component);
+            }
+        }
+        
+        // literal prefix is taken as is
+        StringBuilder prefix = new StringBuilder();
+        int idx = 0;
+        while(idx < components.size() && !hasGlob(components.get(idx))) {
+            prefix.append("/").append(components.get(idx));
+            idx++;
+        }
+        
+        List<URI> candidates = new ArrayList<URI>();
+        candidates.add(makeGlobURI(baseURI, (prefix.length() == 0) ? "/" : prefix.toString()));
+        List<StargateFileStatus> matches = new ArrayList<StargateFileStatus>();
+        
+        UserInterfaceClientExecutor executor = UserInterfaceClientExecutor.getInstance();
+        while(idx < components.size() && !candidates.isEmpty()) {
+            String component = components.get(idx);
+            boolean last = (idx == components.size() - 1);
+            
+            if(!last && !hasGlob(component)) {
+                // existence is checked by listing at the next glob component
+                List<URI> nextCandidates = new ArrayList<URI>();
+                for(URI candidate : candidates) {
+                    nextCandidates.add(makeGlobURI(baseURI, concatGlobPath(candidate.getPath(), component)));
+                }
+                candidates = nextCandidates;
+                idx++;
+                continue;
+            }
+            
+            GlobFilter filter = null;
+            if(hasGlob(component)) {
+                filter = new GlobFilter(component);
+            }
+            
+            List<Future<Collection<StargateFileStatus>>> futures = new ArrayList<Future<Collection<StargateFileStatus>>>();
+            for(final URI candidate : candidates) {
+                futures.add(executor.submit(new Callable<Collection<StargateFileStatus>>() {
+                    @Override
+                    public Collection<StargateFileStatus> call() throws Exception {
+                        try {
+                            return listStatus(candidate);
+                        } catch (FileNotFoundException ex) {
+                            return null;
+                        }
+                    }
+                }));
+            }
+            
+            List<URI> nextCandidates = new ArrayList<URI>();
+            try {
+                for(Future<Collection<StargateFileStatus>> future : futures) {
+                    Collection<StargateFileStatus> statusList = UserInterfaceClientExecutor.get(future);
+                    if(statusList == null) {
+                        continue;
+                    }
+                    
+                    for(StargateFileStatus status : statusList) {
+                        String name = getLastComponent(status.getPath());
+                        boolean matched = (filter == null) ? name.equals(component) : filter.accept(new Path(name));
+                        if(!matched) {
+                            continue;
+                        }
+                        
+                        if(last) {
+                            matches.add(status);
+                        } else if(status.getMetadata().isDirectory()) {
+                            nextCandidates.add(status.getPath());
+                        }
+                    }
+                }
+            } finally {
+                for(Future<Collection<StargateFileStatus>> future : futures) {
+                    future.cancel(true);
+                }
+            }
+            
+            candidates = nextCandidates;
+            idx++;
+        }
+        
+        return matches;
+    }
+    
+    private URI makeGlobURI(URI baseURI, String path) throws IOException {
+        try {
+            return new URI(baseURI.getScheme(), baseURI.getAuthority(), path, null, null);
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+    }
+    
+    private String concatGlobPath(String parent, String child) {
+        if(parent.endsWith("/")) {
+            return parent + child;
+        }
+        return parent + "/" + child;
+    }
+    
+    private Collection<StargateFileStatus> globStatusPushdown(URI baseURI, String pattern) throws IOException {
+        DataObjectURI patternPath = makeDataObjectURI(makeGlobURI(baseURI, pattern));
+        if(patternPath.getClusterName() == null || patternPath.getClusterName().isEmpty() || hasGlob(patternPath.getClusterName())) {
+            // expanding clusters is done at the client
+            return null;
+        }
+        
+        Collection<DataObjectMetadata> metadataList;
+        try {
+            metadataList = this.userInterfaceClient.globDataObjectMetadata(patternPath);
+        } catch (FileNotFoundException ex) {
+            // the client side expansion tells what is missing
+            return null;
+        }
+        
+        if(metadataList == null) {
+            // not supported by the service
+            return null;
+        }
+        
+        List<StargateFileStatus> statusList = new ArrayList<StargateFileStatus>();
+        for(DataObjectMetadata metadata : metadataList) {
+            statusList.add(makeStargateFileStatus(metadata, baseURI));
+        }
+        return statusList;
+    }
+    
+    public FSChunkInputStream open(URI uri, int bufferSize) throws IOException {
         if(uri == null) {
             throw new IllegalArgumentException("uri is null");
         }
         
         DataObjectURI path = makeDataObjectURI(uri);
-        Recipe recipe;
-        if(path.getClusterName().equals(this.localCluster.getName())) {
-            // local
-            recipe = this.userInterfaceClient.getRecipe(path);
-        } else {
-            // remote
-            recipe = this.userInterfaceClient.getRemoteRecipeWithTransferSchedule(path);
-        }
+        // shared across streams of the same file
+        RecipeSource recipeSource = getRecipeSource(uri);
         
-        if(recipe != null) {
+        if(recipeSource != null) {
             Map<String, HTTPUserInterfaceClient> clients = new HashMap<String, HTTPUserInterfaceClient>();
-                        
-            Collection<String> recipeNodeNames = recipe.getNodeNames();
+            
+            Collection<String> recipeNodeNames;
+            HTTPChunkInputStream.ClientResolver clientResolver = null;
+            if(recipeSource instanceof CompactRecipe) {
+                recipeNodeNames = ((CompactRecipe) recipeSource).getNodeNames();
+            } else {
+                // nodes of segments are not known yet, the stream asks for
+                // clients of nodes as segments name them
+                recipeNodeNames = getColocatedNodeNames();
+                clientResolver = new HTTPChunkInputStream.ClientResolver() {
+                    @Override
+                    public HTTPUserInterfaceClient resolve(String nodeName) throws IOException {
+                        if(localCluster.getNode(nodeName) == null) {
+                            return null;
+                        }
+                        return getNodeClient(nodeName);
+                    }
+                };
+            }
+            
             for(String recipeNodeName : recipeNodeNames) {
-                Node node = this.localCluster.getNode(recipeNodeName);
-                if(node == null) {
-                    throw new IOException(String.format("cannot find a node - %s, in the cluster (%s)", recipeNodeName, StringUtils.getCommaSeparatedString(this.localCluster.getNodeNames())));
-                }
-                
-                UserInterfaceServiceInfo userInterfaceServiceInfo = node.getUserInterfaceServiceInfo();
-                URI nodeServiceURI = userInterfaceServiceInfo.getServiceURI();
-                if(this.userInterfaceClient.getServiceURI().equals(nodeServiceURI)) {
-                    clients.put(recipeNodeName, this.userInterfaceClient);
-                } else {
-                    HTTPUserInterfaceClient newClient = new HTTPUserInterfaceClient(nodeServiceURI, null, null);
-                    clients.put(recipeNodeName, newClient);
-                }
+                clients.put(recipeNodeName, getNodeClient(recipeNodeName));
             }
 
             //return new FSChunkPartInputStream(clients, recipe, this.fsServiceInfo.getPartSize());
-            return new FSChunkInputStream(clients, recipe);
+            FSChunkInputStream is = new FSChunkInputStream(clients, recipeSource, bufferSize);
+            if(clientResolver != null) {
+                is.setClientResolver(clientResolver);
+            }
+            is.setStreamClass(this.config.getBandwidthStreamClass());
+            if(this.config.isBlockLocationCachedHosts() && !isLocalClusterPath(path)) {
+                is.setChunkStatusListener(new HTTPChunkInputStream.ChunkStatusListener() {
+                    @Override
+                    public void chunkStatusReceived(String hash, DataChunkStatus status) {
+                        if(status.getLocalCachePath() != null && status.getCacheNodeName() != null
+                                && localCluster.getNode(status.getCacheNodeName()) != null) {
+                            chunkCacheNodeNameCache.put(hash, status.getCacheNodeName());
+                        }
+                    }
+                });
+            }
+            if(this.accessHistory != null) {
+                prefetchFromHistory(path, recipeSource);
+                is.setAccessHistory(this.accessHistory, makeSnapshotKey(path));
+            }
+            
+            AccessTraceRecorder recorder = AccessTraceRecorder.getInstance();
+            if(recorder.isRecording()) {
+                is.setTrace(recorder.recordOpen(uri.getPath(), recipeSource.getSize()));
+            }
+            return is;
         } else {
             throw new IOException("unable to retrieve a recipe of " + path.getPath());
         }
     }
 
-    public synchronized StargateFileStatus getFileStatus(URI uri) throws IOException {
+    /**
+     * Returns nodes running on this host, so streams resolving clients
+     * lazily still prefer local nodes.
+     */
+    private Collection<String> getColocatedNodeNames() {
+        Collection<String> nodeNames = this.colocatedNodeNames;
+        if(nodeNames != null) {
+            return nodeNames;
+        }
+        
+        nodeNames = new ArrayList<String>();
+        for(Node node : this.localCluster.getNodes()) {
+            UserInterfaceServiceInfo userInterfaceServiceInfo = node.getUserInterfaceServiceInfo();
+            if(userInterfaceServiceInfo == null || userInterfaceServiceInfo.getServiceURI() == null) {
+                continue;
+            }
+            
+            URI nodeServiceURI = userInterfaceServiceInfo.getServiceURI();
+            try {
+                if(IPUtils.isLocalIPAddress(nodeServiceURI.getHost())) {
+                    nodeNames.add(node.getName());
+                }
+            } catch (IOException ex) {
+                LOG.debug("cannot check locality of " + nodeServiceURI.toString(), ex);
+            }
+        }
+        
+        this.colocatedNodeNames = nodeNames;
+        return nodeNames;
+    }
+    
+    /**
+     * Returns a client for the node. The client of this file system is
+     * returned if the node runs the service we talk to.
+     */
+    HTTPUserInterfaceClient getNodeClient(String nodeName) throws IOException {
+        Node node = this.localCluster.getNode(nodeName);
+        if(node == null) {
+            throw new IOException(String.format("cannot find a node - %s, in the cluster (%s)", nodeName, StringUtils.getCommaSeparatedString(this.localCluster.getNodeNames())));
+        }
+        
+        UserInterfaceServiceInfo userInterfaceServiceInfo = node.getUserInterfaceServiceInfo();
+        URI nodeServiceURI = userInterfaceServiceInfo.getServiceURI();
+        if(this.userInterfaceClient.getServiceURI().equals(nodeServiceURI)) {
+            return this.userInterfaceClient;
+        }
+        return new HTTPUserInterfaceClient(nodeServiceURI, null, null);
+    }
+    
+    boolean isSharedClient(HTTPUserInterfaceClient client) {
+        return client == this.userInterfaceClient;
+    }
+    
+    public StargateFileStatus getFileStatus(URI uri) throws IOException {
         if(uri == null) {
             throw new IllegalArgumentException("uri is null");
         }
         
+        AccessTraceRecorder recorder = AccessTraceRecorder.getInstance();
+        if(!recorder.isRecording()) {
+            return getFileStatusInternal(uri);
+        }
+        
+        long start = System.nanoTime();
+        try {
+            return getFileStatusInternal(uri);
+        } finally {
+            recorder.recordGetFileStatus(uri.getPath(), System.nanoTime() - start);
+        }
+    }
+    
+    private StargateFileStatus getFileStatusInternal(URI uri) throws IOException {
         DataObjectURI path = makeDataObjectURI(uri);
         
         if(path.isRoot()) {
             if(this.rootDataObjectMetadataCache == null) {
                 try {
-                    DataObjectMetadata metadata = this.userInterfaceClient.getDataObjectMetadata(path);
+                    DataObjectMetadata metadata = fetchDataObjectMetadata(path);
                     if(metadata == null) {
                         throw new IOException(String.format("cannot retrive a metadata for %s", path.toString()));
                     }
@@ -336,7 +1117,7 @@ public class StargateFileSystem {
 
             if(cachedMetadataList == null) {
                 try {
-                    Collection<DataObjectMetadata> metadataList = this.userInterfaceClient.listDataObjectMetadata(parentPath);
+                    Collection<DataObjectMetadata> metadataList = fetchDataObjectMetadataList(parentPath);
                     if(metadataList == null) {
                         throw new IOException(String.format("cannot retrive a metadata list for %s", parentPath.toString()));
                     }
@@ -367,30 +1148,188 @@ public class StargateFileSystem {
         }
     }
     
-    private Recipe getRecipe(URI uri) throws IOException, FileNotFoundException {
+    /**
+     * Aggregates sizes of the subtree. Directories of the same depth are
+     * listed in parallel on the client executor. Listings are not cached,
+     * only the summaries are. Subdirectories removed during the walk are
+     * skipped.
+     */
+    public ContentSummary getContentSummary(URI uri) throws IOException {
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        DataObjectURI path = makeDataObjectURI(uri);
+        ContentSummary cachedSummary = this.contentSummaryCache.get(path);
+        if(cachedSummary != null) {
+            return cachedSummary;
+        }
+        
+        DataObjectMetadata metadata = getFileStatus(uri).getMetadata();
+        if(!metadata.isDirectory()) {
+            return new ContentSummary(metadata.getSize(), 1, 0);
+        }
+        
+        long length = 0;
+        long fileCount = 0;
+        long directoryCount = 1;
+        
+        UserInterfaceClientExecutor executor = UserInterfaceClientExecutor.getInstance();
+        List<DataObjectURI> level = new ArrayList<DataObjectURI>();
+        level.add(path);
+        
+        while(!level.isEmpty()) {
+            List<DataObjectURI> nextLevel = new ArrayList<DataObjectURI>();
+            
+            for(int batchStart = 0; batchStart < level.size(); batchStart += CONTENT_SUMMARY_BATCH_SIZE) {
+                int batchEnd = Math.min(level.size(), batchStart + CONTENT_SUMMARY_BATCH_SIZE);
+                List<Future<Collection<DataObjectMetadata>>> futures = new ArrayList<Future<Collection<DataObjectMetadata>>>(batchEnd - batchStart);
+                for(int i = batchStart; i < batchEnd; i++) {
+                    final DataObjectURI dir = level.get(i);
+                    futures.add(executor.submit(new Callable<Collection<DataObjectMetadata>>() {
+                        @Override
+                        public Collection<DataObjectMetadata> call() throws Exception {
+                            return fetchDataObjectMetadataList(dir);
+                        }
+                    }));
+                }
+                
+                try {
+                    for(int i = 0; i < futures.size(); i++) {
+                        Collection<DataObjectMetadata> metadataList;
+                        try {
+                            metadataList = UserInterfaceClientExecutor.get(futures.get(i));
+                        } catch (FileNotFoundException ex) {
+                            DataObjectURI dir = level.get(batchStart + i);
+                            if(dir == path) {
+                                throw ex;
+                            }
+                            
+                            // removed after its parent was listed
+                            LOG.debug("directory vanished during content summary : " + dir.toString());
+                            directoryCount--;
+                            continue;
+                        }
+                        
+                        if(metadataList == null) {
+                            continue;
+                        }
+                        
+                        for(DataObjectMetadata entry : metadataList) {
+                            if(entry.isDirectory()) {
+                                ContentSummary entrySummary = this.contentSummaryCache.get(entry.getURI());
+                                if(entrySummary != null) {
+                                    length += entrySummary.getLength();
+                                    fileCount += entrySummary.getFileCount();
+                                    directoryCount += entrySummary.getDirectoryCount();
+                                } else {
+                                    directoryCount++;
+                                    nextLevel.add(entry.getURI());
+                                }
+                            } else {
+                                length += entry.getSize();
+                                fileCount++;
+                            }
+                        }
+                    }
+                } finally {
+                    for(Future<Collection<DataObjectMetadata>> future : futures) {
+                        future.cancel(true);
+                    }
+                }
+            }
+            
+            level = nextLevel;
+        }
+        
+        ContentSummary summary = new ContentSummary(length, fileCount, directoryCount);
+        this.contentSummaryCache.put(path, summary);
+        return summary;
+    }
+    
+    /**
+     * Returns a checksum computed from chunk hashes of the recipe, or null
+     * for directories.
+     */
+    public StargateFileChecksum getFileChecksum(URI uri) throws IOException {
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        DataObjectMetadata metadata = getFileStatus(uri).getMetadata();
+        if(metadata.isDirectory()) {
+            return null;
+        }
+        
+        // a recipe of a file being read already has the hashes
+        DataObjectURI path = makeDataObjectURI(uri);
+        CompactRecipe recipe = this.recipeCache.get(path);
+        if(recipe == null) {
+            recipe = fetchRecipeWithoutTransfer(path);
+            if(recipe == null) {
+                throw new IOException(String.format("cannot retrive a recipe for %s", path.toString()));
+            }
+        }
+        return StargateFileChecksum.create(recipe);
+    }
+    
+    /**
+     * Returns the recipe of the file for reading. Large files are served by
+     * recipe segments fetched as readers reach them, if enabled.
+     */
+    private RecipeSource getRecipeSource(final URI uri) throws IOException {
+        final DataObjectURI path = makeDataObjectURI(uri);
+        
+        // a whole recipe we already have is the cheapest
+        CompactRecipe cachedRecipe = this.recipeCache.get(path);
+        if(cachedRecipe != null || !this.config.isRecipeSegmentEnabled()) {
+            return getRecipe(uri);
+        }
+        
+        DataObjectMetadata metadata = getFileStatus(uri).getMetadata();
+        if(metadata.getSize() <= this.config.getRecipeSegmentSize()) {
+            return getRecipe(uri);
+        }
+        
+        SegmentedRecipe segmentedRecipe = this.segmentedRecipeCache.get(path);
+        if(segmentedRecipe != null && segmentedRecipe.getMetadata().getLastModifiedTime() == metadata.getLastModifiedTime()) {
+            return segmentedRecipe;
+        }
+        
+        segmentedRecipe = new SegmentedRecipe(metadata, this.config.getRecipeSegmentSize(), this.config.getRecipeSegmentCacheMax(), new SegmentedRecipe.SegmentLoader() {
+            @Override
+            public CompactRecipe load(long offset, long length) throws IOException {
+                CompactRecipe segment = fetchRecipeSegment(path, offset, length);
+                if(segment == null) {
+                    // service does not provide recipe segments
+                    return getRecipe(uri);
+                }
+                return segment;
+            }
+        });
+        this.segmentedRecipeCache.put(path, segmentedRecipe);
+        return segmentedRecipe;
+    }
+    
+    CompactRecipe getRecipe(URI uri) throws IOException, FileNotFoundException {
         if(uri == null) {
             throw new IllegalArgumentException("uri is null");
         }
         
         DataObjectURI path = makeDataObjectURI(uri);
-        Recipe cachedRecipe = this.recipeCache.get(path);
+        CompactRecipe cachedRecipe = this.recipeCache.get(path);
 
         if(cachedRecipe == null) {
             try {
-                Recipe recipe = null;
+                CompactRecipe compactRecipe = fetchRecipe(path);
 
-                if(isLocalClusterPath(path)) {
-                    recipe = this.userInterfaceClient.getRecipe(path);
-                } else {
-                    recipe = this.userInterfaceClient.getRemoteRecipeWithTransferSchedule(path);
-                }
-
-                if(recipe == null) {
+                if(compactRecipe == null) {
                     throw new IOException(String.format("cannot retrive a recipe for %s", path.toString()));
                 }
-                this.recipeCache.put(path, recipe);
+                
+                this.recipeCache.put(path, compactRecipe);
 
-                cachedRecipe = recipe;
+                cachedRecipe = compactRecipe;
             } catch (FileNotFoundException ex) {
                 throw ex;
             } catch (Exception ex) {
@@ -484,7 +1423,12 @@ public class StargateFileSystem {
 
             String name = String.format("%s:%d", selectedIP, port);
 
-            cachedEntry = new StargateFileBlockLocationEntry(name, selectedHostname);
+            if(this.rackResolver != null) {
+                String rack = this.rackResolver.resolve(nodeName, selectedIP, selectedHostname);
+                cachedEntry = new StargateFileBlockLocationEntry(name, selectedHostname, rack);
+            } else {
+                cachedEntry = new StargateFileBlockLocationEntry(name, selectedHostname);
+            }
             
             // cache
             this.fileBlockLocationEntryCache.put(nodeName, cachedEntry);
@@ -493,7 +1437,7 @@ public class StargateFileSystem {
         return cachedEntry;
     }
     
-    public synchronized Collection<StargateFileBlockLocation> getFileBlockLocations(URI uri, long start, long len) throws IOException {
+    public Collection<StargateFileBlockLocation> getFileBlockLocations(URI uri, long start, long len) throws IOException {
         //> Path : hdfs://node0.hadoop.cs.arizona.edu:9000/data/TOV/Station109_DCM.fa
         //>> Offset: 0
         //>> Length: 67108864
@@ -513,31 +1457,35 @@ public class StargateFileSystem {
         }
         
         try {
-            Recipe recipe = getRecipe(uri);
-            List<StargateFileBlockLocation> blockLocations = new ArrayList<StargateFileBlockLocation>();
+            StargateFileBlockLocation[] fileBlockLocations = getAllFileBlockLocations(uri);
+            if(fileBlockLocations.length == 0 || len == 0) {
+                return Collections.emptyList();
+            }
             
-            long offset = start;
-            while(offset < start + len) {
-                RecipeChunk chunk = recipe.getChunk(offset);
-                
-                Collection<Integer> nodeIDs = chunk.getNodeIDs();
-                Collection<String> nodeNames = recipe.getNodeNames(nodeIDs);
-                
-                List<StargateFileBlockLocationEntry> blockLocationEntries = new ArrayList<StargateFileBlockLocationEntry>();
-                
-                for(String nodeName : nodeNames) {
-                    StargateFileBlockLocationEntry blockLocationEntry = getBlockLocationEntry(nodeName);
-                    blockLocationEntries.add(blockLocationEntry);
+            // find the first block containing start
+            int low = 0;
+            int high = fileBlockLocations.length - 1;
+            while(low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if(fileBlockLocations[mid].getOffset() <= start) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
                 }
-                
-                int effectiveChunkSize = recipe.getEffectiveChunkSize(chunk);
-                StargateFileBlockLocation blockLocation = new StargateFileBlockLocation(blockLocationEntries, offset, effectiveChunkSize);
-                blockLocations.add(blockLocation);
-                
-                offset += effectiveChunkSize;
             }
             
-            return Collections.unmodifiableCollection(blockLocations);
+            int first = low;
+            if(start >= fileBlockLocations[first].getOffset() + fileBlockLocations[first].getLength()) {
+                first++;
+            }
+            
+            int last = first;
+            long end = start + len;
+            while(last < fileBlockLocations.length && fileBlockLocations[last].getOffset() < end) {
+                last++;
+            }
+            
+            return Collections.unmodifiableList(Arrays.asList(fileBlockLocations).subList(first, last));
         } catch (FileNotFoundException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -545,15 +1493,166 @@ public class StargateFileSystem {
         }
     }
     
-    public synchronized long getBlockSize() {
+    private StargateFileBlockLocation[] getAllFileBlockLocations(URI uri) throws IOException {
+        DataObjectURI path = makeDataObjectURI(uri);
+        StargateFileBlockLocation[] cachedFileBlockLocations = this.fileBlockLocationsCache.get(path);
+        
+        if(cachedFileBlockLocations == null) {
+            CompactRecipe recipe = getRecipe(uri);
+            String[] cacheNodeNames = null;
+            if(this.config.isBlockLocationCachedHosts() && !isLocalClusterPath(path)) {
+                cacheNodeNames = getCacheNodeNames(recipe);
+            }
+            cachedFileBlockLocations = makeFileBlockLocations(recipe, cacheNodeNames);
+            this.fileBlockLocationsCache.put(path, cachedFileBlockLocations);
+        }
+        
+        return cachedFileBlockLocations;
+    }
+    
+    /**
+     * Returns names of nodes known to cache chunks of a remote file, null
+     * for chunks not known. Only statuses that streams already received
+     * are used, no requests are made.
+     */
+    private String[] getCacheNodeNames(CompactRecipe recipe) {
+        int chunkCount = recipe.getChunkCount();
+        String[] cacheNodeNames = new String[chunkCount];
+        for(int i = 0; i < chunkCount; i++) {
+            cacheNodeNames[i] = this.chunkCacheNodeNameCache.get(recipe.getChunkHash(i));
+        }
+        return cacheNodeNames;
+    }
+    
+    private static boolean isSameCacheNode(String[] cacheNodeNames, int chunkIndex1, int chunkIndex2) {
+        if(cacheNodeNames == null) {
+            return true;
+        }
+        
+        String nodeName1 = cacheNodeNames[chunkIndex1];
+        String nodeName2 = cacheNodeNames[chunkIndex2];
+        if(nodeName1 == null) {
+            return nodeName2 == null;
+        }
+        return nodeName1.equals(nodeName2);
+    }
+    
+    private StargateFileBlockLocation[] makeFileBlockLocations(CompactRecipe recipe, String[] cacheNodeNames) {
+        long coalesceSize = this.config.getBlockLocationCoalesceSize();
+        List<StargateFileBlockLocation> blockLocations = new ArrayList<StargateFileBlockLocation>();
+        
+        int chunkCount = recipe.getChunkCount();
+        int chunkIndex = 0;
+        while(chunkIndex < chunkCount) {
+            long blockOffset = recipe.getChunkOffset(chunkIndex);
+            long blockLength = recipe.getChunkLength(chunkIndex);
+            
+            // coalesce following chunks stored in the same set of nodes
+            int nextIndex = chunkIndex + 1;
+            if(coalesceSize > 0) {
+                while(nextIndex < chunkCount
+                        && recipe.getChunkOffset(nextIndex) == blockOffset + blockLength
+                        && blockLength + recipe.getChunkLength(nextIndex) <= coalesceSize
+                        && recipe.hasSameChunkNodes(chunkIndex, nextIndex)
+                        && isSameCacheNode(cacheNodeNames, chunkIndex, nextIndex)) {
+                    blockLength += recipe.getChunkLength(nextIndex);
+                    nextIndex++;
+                }
+            }
+            
+            List<StargateFileBlockLocationEntry> blockLocationEntries = new ArrayList<StargateFileBlockLocationEntry>();
+            List<String> chunkNodeNames = recipe.getChunkNodeNames(chunkIndex);
+            for(String nodeName : chunkNodeNames) {
+                StargateFileBlockLocationEntry blockLocationEntry = getBlockLocationEntry(nodeName);
+                blockLocationEntries.add(blockLocationEntry);
+            }
+            
+            String cacheNodeName = cacheNodeNames == null ? null : cacheNodeNames[chunkIndex];
+            StargateFileBlockLocationEntry cacheEntry = null;
+            if(cacheNodeName != null) {
+                cacheEntry = getBlockLocationEntry(cacheNodeName);
+                if(!chunkNodeNames.contains(cacheNodeName)) {
+                    // cached hosts must be a subset of hosts
+                    blockLocationEntries.add(0, cacheEntry);
+                }
+            }
+            
+            StargateFileBlockLocation blockLocation = new StargateFileBlockLocation(blockLocationEntries, blockOffset, blockLength);
+            if(cacheNodeNames != null) {
+                // nodes of a remote file's recipe are the nodes its chunks are
+                // transferred to, so they have or will have the chunks cached
+                for(StargateFileBlockLocationEntry entry : blockLocationEntries) {
+                    String host = entry.getHost();
+                    if(host != null && !host.isEmpty() && !blockLocation.getCachedHosts().contains(host)) {
+                        blockLocation.addCachedHost(host);
+                    }
+                }
+            }
+            blockLocations.add(blockLocation);
+            
+            chunkIndex = nextIndex;
+        }
+        
+        return blockLocations.toArray(new StargateFileBlockLocation[0]);
+    }
+    
+    public long getBlockSize() {
         return this.fsServiceInfo.getChunkSize();
     }
     
     public synchronized void close() {
-        this.userInterfaceClient.disconnect();
+        saveSnapshot();
+        saveAccessHistory();
+        
+        BandwidthShaper shaper = BandwidthShaper.getInstance();
+        if(shaper.isEnabled() && LOG.isDebugEnabled()) {
+            LOG.debug("bandwidth limits : " + shaper.toString());
+        }
+        
+        this.serviceEndpoints.close();
         
         this.recipeCache.clear();
+        this.segmentedRecipeCache.clear();
         this.dataObjectMetadataListCache.clear();
+        this.contentSummaryCache.clear();
+        this.fileBlockLocationsCache.clear();
         this.fileBlockLocationEntryCache.clear();
+        this.chunkCacheNodeNameCache.clear();
+    }
+    
+    private static class ChunkCacheNodeNameMap extends LinkedHashMap<String, String> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int maxEntries;
+        
+        ChunkCacheNodeNameMap(int maxEntries) {
+            super(16, 0.75f, true);
+            
+            this.maxEntries = maxEntries;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > this.maxEntries;
+        }
+    }
+    
+    private static class SnapshotListingMap extends LinkedHashMap<String, DataObjectMetadata[]> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int maxListings;
+        
+        SnapshotListingMap(int maxListings) {
+            super(16, 0.75f, true);
+            
+            this.maxListings = maxListings;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DataObjectMetadata[]> eldest) {
+            return size() > this.maxListings;
+        }
     }
 }
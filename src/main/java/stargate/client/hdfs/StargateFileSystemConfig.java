@@ -40,11 +40,180 @@ public class StargateFileSystemConfig extends AbstractImmutableConfig {
     public static final String DFS_IP_ANTIPATTERN_FIELD_NAME = "fs.sgfs.dfs.ip.antipattern";
     public static final String DEFAULT_DFS_IP_ANTIPATTERN = "";
     
+    public static final String TRACE_ENABLED_FIELD_NAME = "fs.sgfs.trace.enabled";
+    public static final boolean DEFAULT_TRACE_ENABLED = false;
+    public static final String TRACE_SAMPLE_INTERVAL_FIELD_NAME = "fs.sgfs.trace.sample.interval";
+    public static final int DEFAULT_TRACE_SAMPLE_INTERVAL = 1;
+    public static final String TRACE_SAMPLE_INTERVALS_FIELD_NAME = "fs.sgfs.trace.sample.intervals";
+    public static final String DEFAULT_TRACE_SAMPLE_INTERVALS = "";
+    public static final String TRACE_BUFFER_SIZE_FIELD_NAME = "fs.sgfs.trace.buffer.size";
+    public static final int DEFAULT_TRACE_BUFFER_SIZE = 1024;
+    
+    public static final String BLOCK_LOCATION_COALESCE_SIZE_FIELD_NAME = "fs.sgfs.blocklocation.coalesce.size";
+    public static final long DEFAULT_BLOCK_LOCATION_COALESCE_SIZE = 0;
+    
+    public static final String TOPOLOGY_RACK_MAP_FIELD_NAME = "fs.sgfs.topology.rack.map";
+    public static final String DEFAULT_TOPOLOGY_RACK_MAP = "";
+    
+    public static final String TOPOLOGY_MAPPING_ENABLED_FIELD_NAME = "fs.sgfs.topology.mapping.enabled";
+    public static final boolean DEFAULT_TOPOLOGY_MAPPING_ENABLED = true;
+    
+    public static final String TRANSFER_COMPRESSION_CODEC_LOCAL_FIELD_NAME = "fs.sgfs.transfer.compression.codec.local";
+    public static final String DEFAULT_TRANSFER_COMPRESSION_CODEC_LOCAL = "none";
+    
+    public static final String TRANSFER_COMPRESSION_CODEC_REMOTE_FIELD_NAME = "fs.sgfs.transfer.compression.codec.remote";
+    public static final String DEFAULT_TRANSFER_COMPRESSION_CODEC_REMOTE = "none";
+    
+    public static final String TRANSFER_COMPRESSION_CODEC_CLUSTERS_FIELD_NAME = "fs.sgfs.transfer.compression.codec.clusters";
+    public static final String DEFAULT_TRANSFER_COMPRESSION_CODEC_CLUSTERS = "";
+    
+    public static final String TRANSFER_COMPRESSION_ADAPTIVE_BANDWIDTH_FIELD_NAME = "fs.sgfs.transfer.compression.adaptive.bandwidth";
+    public static final long DEFAULT_TRANSFER_COMPRESSION_ADAPTIVE_BANDWIDTH = 104857600;
+    
+    public static final String METADATA_BINARY_ENABLED_FIELD_NAME = "fs.sgfs.metadata.binary.enabled";
+    public static final boolean DEFAULT_METADATA_BINARY_ENABLED = false;
+    
+    public static final String TRANSPORT_TYPE_FIELD_NAME = "fs.sgfs.transport.type";
+    public static final String DEFAULT_TRANSPORT_TYPE = "dedicated";
+    
+    public static final String TRANSPORT_SHARED_CONNECTIONS_FIELD_NAME = "fs.sgfs.transport.shared.connections";
+    public static final int DEFAULT_TRANSPORT_SHARED_CONNECTIONS = 4;
+    
+    public static final String TRANSPORT_SHARED_REQUEST_CONNECTIONS_FIELD_NAME = "fs.sgfs.transport.shared.request.connections";
+    public static final int DEFAULT_TRANSPORT_SHARED_REQUEST_CONNECTIONS = 2;
+    
+    public static final String TRANSPORT_SHARED_WAIT_TIMEOUT_FIELD_NAME = "fs.sgfs.transport.shared.wait.timeout";
+    public static final long DEFAULT_TRANSPORT_SHARED_WAIT_TIMEOUT = 60000;
+    
+    public static final String CLIENT_ASYNC_THREADS_FIELD_NAME = "fs.sgfs.client.async.threads";
+    public static final int DEFAULT_CLIENT_ASYNC_THREADS = 8;
+    
+    public static final String SNAPSHOT_DIR_FIELD_NAME = "fs.sgfs.snapshot.dir";
+    public static final String DEFAULT_SNAPSHOT_DIR = "";
+    
+    public static final String SNAPSHOT_MAX_AGE_FIELD_NAME = "fs.sgfs.snapshot.max.age";
+    public static final long DEFAULT_SNAPSHOT_MAX_AGE = 86400000;
+    
+    public static final String SNAPSHOT_LISTINGS_MAX_FIELD_NAME = "fs.sgfs.snapshot.listings.max";
+    public static final int DEFAULT_SNAPSHOT_LISTINGS_MAX = 1000;
+    
+    public static final String SERVICE_ENDPOINTS_FIELD_NAME = "fs.sgfs.service.endpoints";
+    public static final String DEFAULT_SERVICE_ENDPOINTS = "";
+    
+    public static final String SERVICE_ENDPOINTS_DISCOVERY_ENABLED_FIELD_NAME = "fs.sgfs.service.endpoints.discovery.enabled";
+    public static final boolean DEFAULT_SERVICE_ENDPOINTS_DISCOVERY_ENABLED = false;
+    
+    public static final String SERVICE_ENDPOINT_FAILURE_THRESHOLD_FIELD_NAME = "fs.sgfs.service.endpoint.failure.threshold";
+    public static final int DEFAULT_SERVICE_ENDPOINT_FAILURE_THRESHOLD = 3;
+    
+    public static final String SERVICE_ENDPOINT_RETRY_INTERVAL_FIELD_NAME = "fs.sgfs.service.endpoint.retry.interval";
+    public static final long DEFAULT_SERVICE_ENDPOINT_RETRY_INTERVAL = 30000;
+    
+    public static final String METADATA_ROUTING_LOCAL_FIELD_NAME = "fs.sgfs.metadata.routing.local";
+    public static final boolean DEFAULT_METADATA_ROUTING_LOCAL = false;
+    
+    public static final String GLOB_PUSHDOWN_ENABLED_FIELD_NAME = "fs.sgfs.glob.pushdown.enabled";
+    public static final boolean DEFAULT_GLOB_PUSHDOWN_ENABLED = false;
+    
+    public static final String TAIL_CACHE_ENABLED_FIELD_NAME = "fs.sgfs.tail.cache.enabled";
+    public static final boolean DEFAULT_TAIL_CACHE_ENABLED = false;
+    
+    public static final String TAIL_CACHE_SIZE_FIELD_NAME = "fs.sgfs.tail.cache.size";
+    public static final int DEFAULT_TAIL_CACHE_SIZE = 65536;
+    
+    public static final String TAIL_CACHE_MAX_BYTES_FIELD_NAME = "fs.sgfs.tail.cache.max.bytes";
+    public static final long DEFAULT_TAIL_CACHE_MAX_BYTES = 67108864;
+    
+    public static final String VERIFY_CHUNK_HASH_FIELD_NAME = "fs.sgfs.verify.chunk.hash";
+    public static final boolean DEFAULT_VERIFY_CHUNK_HASH = false;
+    
+    public static final String RECIPE_SEGMENT_ENABLED_FIELD_NAME = "fs.sgfs.recipe.segment.enabled";
+    public static final boolean DEFAULT_RECIPE_SEGMENT_ENABLED = false;
+    
+    public static final String RECIPE_SEGMENT_SIZE_FIELD_NAME = "fs.sgfs.recipe.segment.size";
+    public static final long DEFAULT_RECIPE_SEGMENT_SIZE = 1073741824;
+    
+    public static final String RECIPE_SEGMENT_CACHE_MAX_FIELD_NAME = "fs.sgfs.recipe.segment.cache.max";
+    public static final int DEFAULT_RECIPE_SEGMENT_CACHE_MAX = 16;
+    
+    public static final String ACCESS_TRACE_DIR_FIELD_NAME = "fs.sgfs.access.trace.dir";
+    public static final String DEFAULT_ACCESS_TRACE_DIR = "";
+    
+    public static final String ACCESS_HISTORY_DIR_FIELD_NAME = "fs.sgfs.access.history.dir";
+    public static final String DEFAULT_ACCESS_HISTORY_DIR = "";
+    
+    public static final String ACCESS_HISTORY_MAX_FILES_FIELD_NAME = "fs.sgfs.access.history.max.files";
+    public static final int DEFAULT_ACCESS_HISTORY_MAX_FILES = 1000;
+    
+    public static final String ACCESS_HISTORY_PREFETCH_MAX_CHUNKS_FIELD_NAME = "fs.sgfs.access.history.prefetch.max.chunks";
+    public static final int DEFAULT_ACCESS_HISTORY_PREFETCH_MAX_CHUNKS = 64;
+    
+    public static final String BLOCK_LOCATION_CACHED_HOSTS_FIELD_NAME = "fs.sgfs.blocklocation.cached.hosts";
+    public static final boolean DEFAULT_BLOCK_LOCATION_CACHED_HOSTS = false;
+    
+    public static final String BANDWIDTH_CLUSTER_LIMITS_FIELD_NAME = "fs.sgfs.bandwidth.cluster.limits";
+    public static final String DEFAULT_BANDWIDTH_CLUSTER_LIMITS = "";
+    
+    public static final String BANDWIDTH_CLASS_LIMITS_FIELD_NAME = "fs.sgfs.bandwidth.class.limits";
+    public static final String DEFAULT_BANDWIDTH_CLASS_LIMITS = "";
+    
+    public static final String BANDWIDTH_CLASS_WEIGHTS_FIELD_NAME = "fs.sgfs.bandwidth.class.weights";
+    public static final String DEFAULT_BANDWIDTH_CLASS_WEIGHTS = "";
+    
+    public static final String BANDWIDTH_BURST_MILLIS_FIELD_NAME = "fs.sgfs.bandwidth.burst.millis";
+    public static final int DEFAULT_BANDWIDTH_BURST_MILLIS = 1000;
+    
+    public static final String BANDWIDTH_STREAM_CLASS_FIELD_NAME = "fs.sgfs.bandwidth.stream.class";
+    public static final String DEFAULT_BANDWIDTH_STREAM_CLASS = "default";
+    
     private int stargateServicePort = DEFAULT_STARGATE_SERVICE_PORT;
     private String stargateServiceHostname = DEFAULT_STARGET_HOSTNAME;
     private String dfsHostnamePattern = DEFAULT_DFS_HOSTNAME_PATTERN;
     private String dfsIPPattern = DEFAULT_DFS_IP_PATTERN;
     private String dfsIPAntiPattern = DEFAULT_DFS_IP_ANTIPATTERN;
+    private boolean traceEnabled = DEFAULT_TRACE_ENABLED;
+    private int traceSampleInterval = DEFAULT_TRACE_SAMPLE_INTERVAL;
+    private String traceSampleIntervals = DEFAULT_TRACE_SAMPLE_INTERVALS;
+    private int traceBufferSize = DEFAULT_TRACE_BUFFER_SIZE;
+    private long blockLocationCoalesceSize = DEFAULT_BLOCK_LOCATION_COALESCE_SIZE;
+    private String topologyRackMap = DEFAULT_TOPOLOGY_RACK_MAP;
+    private boolean topologyMappingEnabled = DEFAULT_TOPOLOGY_MAPPING_ENABLED;
+    private String transferCompressionCodecLocal = DEFAULT_TRANSFER_COMPRESSION_CODEC_LOCAL;
+    private String transferCompressionCodecRemote = DEFAULT_TRANSFER_COMPRESSION_CODEC_REMOTE;
+    private String transferCompressionCodecClusters = DEFAULT_TRANSFER_COMPRESSION_CODEC_CLUSTERS;
+    private long transferCompressionAdaptiveBandwidth = DEFAULT_TRANSFER_COMPRESSION_ADAPTIVE_BANDWIDTH;
+    private boolean metadataBinaryEnabled = DEFAULT_METADATA_BINARY_ENABLED;
+    private String transportType = DEFAULT_TRANSPORT_TYPE;
+    private int transportSharedConnections = DEFAULT_TRANSPORT_SHARED_CONNECTIONS;
+    private int transportSharedRequestConnections = DEFAULT_TRANSPORT_SHARED_REQUEST_CONNECTIONS;
+    private long transportSharedWaitTimeout = DEFAULT_TRANSPORT_SHARED_WAIT_TIMEOUT;
+    private int clientAsyncThreads = DEFAULT_CLIENT_ASYNC_THREADS;
+    private String snapshotDir = DEFAULT_SNAPSHOT_DIR;
+    private long snapshotMaxAge = DEFAULT_SNAPSHOT_MAX_AGE;
+    private int snapshotListingsMax = DEFAULT_SNAPSHOT_LISTINGS_MAX;
+    private String serviceEndpoints = DEFAULT_SERVICE_ENDPOINTS;
+    private boolean serviceEndpointsDiscoveryEnabled = DEFAULT_SERVICE_ENDPOINTS_DISCOVERY_ENABLED;
+    private int serviceEndpointFailureThreshold = DEFAULT_SERVICE_ENDPOINT_FAILURE_THRESHOLD;
+    private long serviceEndpointRetryInterval = DEFAULT_SERVICE_ENDPOINT_RETRY_INTERVAL;
+    private boolean metadataRoutingLocal = DEFAULT_METADATA_ROUTING_LOCAL;
+    private boolean globPushdownEnabled = DEFAULT_GLOB_PUSHDOWN_ENABLED;
+    private boolean tailCacheEnabled = DEFAULT_TAIL_CACHE_ENABLED;
+    private int tailCacheSize = DEFAULT_TAIL_CACHE_SIZE;
+    private long tailCacheMaxBytes = DEFAULT_TAIL_CACHE_MAX_BYTES;
+    private boolean verifyChunkHash = DEFAULT_VERIFY_CHUNK_HASH;
+    private boolean recipeSegmentEnabled = DEFAULT_RECIPE_SEGMENT_ENABLED;
+    private long recipeSegmentSize = DEFAULT_RECIPE_SEGMENT_SIZE;
+    private int recipeSegmentCacheMax = DEFAULT_RECIPE_SEGMENT_CACHE_MAX;
+    private String accessTraceDir = DEFAULT_ACCESS_TRACE_DIR;
+    private String accessHistoryDir = DEFAULT_ACCESS_HISTORY_DIR;
+    private int accessHistoryMaxFiles = DEFAULT_ACCESS_HISTORY_MAX_FILES;
+    private int accessHistoryPrefetchMaxChunks = DEFAULT_ACCESS_HISTORY_PREFETCH_MAX_CHUNKS;
+    private boolean blockLocationCachedHosts = DEFAULT_BLOCK_LOCATION_CACHED_HOSTS;
+    private String bandwidthClusterLimits = DEFAULT_BANDWIDTH_CLUSTER_LIMITS;
+    private String bandwidthClassLimits = DEFAULT_BANDWIDTH_CLASS_LIMITS;
+    private String bandwidthClassWeights = DEFAULT_BANDWIDTH_CLASS_WEIGHTS;
+    private int bandwidthBurstMillis = DEFAULT_BANDWIDTH_BURST_MILLIS;
+    private String bandwidthStreamClass = DEFAULT_BANDWIDTH_STREAM_CLASS;
     
     public static StargateFileSystemConfig createInstance(String json) throws IOException {
         if(json == null || json.isEmpty()) {
@@ -75,6 +244,135 @@ public class StargateFileSystemConfig extends AbstractImmutableConfig {
         String ip_antipattern = conf.get(DFS_IP_ANTIPATTERN_FIELD_NAME, DEFAULT_DFS_IP_ANTIPATTERN);
         fsConfig.setDFSIPAntiPattern(ip_antipattern);
         
+        boolean trace_enabled = conf.getBoolean(TRACE_ENABLED_FIELD_NAME, DEFAULT_TRACE_ENABLED);
+        fsConfig.setTraceEnabled(trace_enabled);
+        
+        int trace_sample_interval = conf.getInt(TRACE_SAMPLE_INTERVAL_FIELD_NAME, DEFAULT_TRACE_SAMPLE_INTERVAL);
+        fsConfig.setTraceSampleInterval(trace_sample_interval);
+        
+        String trace_sample_intervals = conf.get(TRACE_SAMPLE_INTERVALS_FIELD_NAME, DEFAULT_TRACE_SAMPLE_INTERVALS);
+        fsConfig.setTraceSampleIntervals(trace_sample_intervals);
+        
+        int trace_buffer_size = conf.getInt(TRACE_BUFFER_SIZE_FIELD_NAME, DEFAULT_TRACE_BUFFER_SIZE);
+        fsConfig.setTraceBufferSize(trace_buffer_size);
+        
+        long block_location_coalesce_size = conf.getLong(BLOCK_LOCATION_COALESCE_SIZE_FIELD_NAME, DEFAULT_BLOCK_LOCATION_COALESCE_SIZE);
+        fsConfig.setBlockLocationCoalesceSize(block_location_coalesce_size);
+        
+        String topology_rack_map = conf.get(TOPOLOGY_RACK_MAP_FIELD_NAME, DEFAULT_TOPOLOGY_RACK_MAP);
+        fsConfig.setTopologyRackMap(topology_rack_map);
+        
+        boolean topology_mapping_enabled = conf.getBoolean(TOPOLOGY_MAPPING_ENABLED_FIELD_NAME, DEFAULT_TOPOLOGY_MAPPING_ENABLED);
+        fsConfig.setTopologyMappingEnabled(topology_mapping_enabled);
+        
+        String transfer_compression_codec_local = conf.get(TRANSFER_COMPRESSION_CODEC_LOCAL_FIELD_NAME, DEFAULT_TRANSFER_COMPRESSION_CODEC_LOCAL);
+        fsConfig.setTransferCompressionCodecLocal(transfer_compression_codec_local);
+        
+        String transfer_compression_codec_remote = conf.get(TRANSFER_COMPRESSION_CODEC_REMOTE_FIELD_NAME, DEFAULT_TRANSFER_COMPRESSION_CODEC_REMOTE);
+        fsConfig.setTransferCompressionCodecRemote(transfer_compression_codec_remote);
+        
+        String transfer_compression_codec_clusters = conf.get(TRANSFER_COMPRESSION_CODEC_CLUSTERS_FIELD_NAME, DEFAULT_TRANSFER_COMPRESSION_CODEC_CLUSTERS);
+        fsConfig.setTransferCompressionCodecClusters(transfer_compression_codec_clusters);
+        
+        long transfer_compression_adaptive_bandwidth = conf.getLong(TRANSFER_COMPRESSION_ADAPTIVE_BANDWIDTH_FIELD_NAME, DEFAULT_TRANSFER_COMPRESSION_ADAPTIVE_BANDWIDTH);
+        fsConfig.setTransferCompressionAdaptiveBandwidth(transfer_compression_adaptive_bandwidth);
+        
+        boolean metadata_binary_enabled = conf.getBoolean(METADATA_BINARY_ENABLED_FIELD_NAME, DEFAULT_METADATA_BINARY_ENABLED);
+        fsConfig.setMetadataBinaryEnabled(metadata_binary_enabled);
+        
+        String transport_type = conf.get(TRANSPORT_TYPE_FIELD_NAME, DEFAULT_TRANSPORT_TYPE);
+        fsConfig.setTransportType(transport_type);
+        
+        int transport_shared_connections = conf.getInt(TRANSPORT_SHARED_CONNECTIONS_FIELD_NAME, DEFAULT_TRANSPORT_SHARED_CONNECTIONS);
+        fsConfig.setTransportSharedConnections(transport_shared_connections);
+        
+        int transport_shared_request_connections = conf.getInt(TRANSPORT_SHARED_REQUEST_CONNECTIONS_FIELD_NAME, DEFAULT_TRANSPORT_SHARED_REQUEST_CONNECTIONS);
+        fsConfig.setTransportSharedRequestConnections(transport_shared_request_connections);
+        
+        long transport_shared_wait_timeout = conf.getLong(TRANSPORT_SHARED_WAIT_TIMEOUT_FIELD_NAME, DEFAULT_TRANSPORT_SHARED_WAIT_TIMEOUT);
+        fsConfig.setTransportSharedWaitTimeout(transport_shared_wait_timeout);
+        
+        int client_async_threads = conf.getInt(CLIENT_ASYNC_THREADS_FIELD_NAME, DEFAULT_CLIENT_ASYNC_THREADS);
+        fsConfig.setClientAsyncThreads(client_async_threads);
+        
+        String snapshot_dir = conf.get(SNAPSHOT_DIR_FIELD_NAME, DEFAULT_SNAPSHOT_DIR);
+        fsConfig.setSnapshotDir(snapshot_dir);
+        
+        long snapshot_max_age = conf.getLong(SNAPSHOT_MAX_AGE_FIELD_NAME, DEFAULT_SNAPSHOT_MAX_AGE);
+        fsConfig.setSnapshotMaxAge(snapshot_max_age);
+        
+        int snapshot_listings_max = conf.getInt(SNAPSHOT_LISTINGS_MAX_FIELD_NAME, DEFAULT_SNAPSHOT_LISTINGS_MAX);
+        fsConfig.setSnapshotListingsMax(snapshot_listings_max);
+        
+        String service_endpoints = conf.get(SERVICE_ENDPOINTS_FIELD_NAME, DEFAULT_SERVICE_ENDPOINTS);
+        fsConfig.setServiceEndpoints(service_endpoints);
+        
+        boolean service_endpoints_discovery_enabled = conf.getBoolean(SERVICE_ENDPOINTS_DISCOVERY_ENABLED_FIELD_NAME, DEFAULT_SERVICE_ENDPOINTS_DISCOVERY_ENABLED);
+        fsConfig.setServiceEndpointsDiscoveryEnabled(service_endpoints_discovery_enabled);
+        
+        int service_endpoint_failure_threshold = conf.getInt(SERVICE_ENDPOINT_FAILURE_THRESHOLD_FIELD_NAME, DEFAULT_SERVICE_ENDPOINT_FAILURE_THRESHOLD);
+        fsConfig.setServiceEndpointFailureThreshold(service_endpoint_failure_threshold);
+        
+        long service_endpoint_retry_interval = conf.getLong(SERVICE_ENDPOINT_RETRY_INTERVAL_FIELD_NAME, DEFAULT_SERVICE_ENDPOINT_RETRY_INTERVAL);
+        fsConfig.setServiceEndpointRetryInterval(service_endpoint_retry_interval);
+        
+        boolean metadata_routing_local = conf.getBoolean(METADATA_ROUTING_LOCAL_FIELD_NAME, DEFAULT_METADATA_ROUTING_LOCAL);
+        fsConfig.setMetadataRoutingLocal(metadata_routing_local);
+        
+        boolean glob_pushdown_enabled = conf.getBoolean(GLOB_PUSHDOWN_ENABLED_FIELD_NAME, DEFAULT_GLOB_PUSHDOWN_ENABLED);
+        fsConfig.setGlobPushdownEnabled(glob_pushdown_enabled);
+        
+        boolean tail_cache_enabled = conf.getBoolean(TAIL_CACHE_ENABLED_FIELD_NAME, DEFAULT_TAIL_CACHE_ENABLED);
+        fsConfig.setTailCacheEnabled(tail_cache_enabled);
+        
+        int tail_cache_size = conf.getInt(TAIL_CACHE_SIZE_FIELD_NAME, DEFAULT_TAIL_CACHE_SIZE);
+        fsConfig.setTailCacheSize(tail_cache_size);
+        
+        long tail_cache_max_bytes = conf.getLong(TAIL_CACHE_MAX_BYTES_FIELD_NAME, DEFAULT_TAIL_CACHE_MAX_BYTES);
+        fsConfig.setTailCacheMaxBytes(tail_cache_max_bytes);
+        
+        boolean verify_chunk_hash = conf.getBoolean(VERIFY_CHUNK_HASH_FIELD_NAME, DEFAULT_VERIFY_CHUNK_HASH);
+        fsConfig.setVerifyChunkHash(verify_chunk_hash);
+        
+        boolean recipe_segment_enabled = conf.getBoolean(RECIPE_SEGMENT_ENABLED_FIELD_NAME, DEFAULT_RECIPE_SEGMENT_ENABLED);
+        fsConfig.setRecipeSegmentEnabled(recipe_segment_enabled);
+        
+        long recipe_segment_size = conf.getLong(RECIPE_SEGMENT_SIZE_FIELD_NAME, DEFAULT_RECIPE_SEGMENT_SIZE);
+        fsConfig.setRecipeSegmentSize(recipe_segment_size);
+        
+        int recipe_segment_cache_max = conf.getInt(RECIPE_SEGMENT_CACHE_MAX_FIELD_NAME, DEFAULT_RECIPE_SEGMENT_CACHE_MAX);
+        fsConfig.setRecipeSegmentCacheMax(recipe_segment_cache_max);
+        
+        String access_trace_dir = conf.get(ACCESS_TRACE_DIR_FIELD_NAME, DEFAULT_ACCESS_TRACE_DIR);
+        fsConfig.setAccessTraceDir(access_trace_dir);
+        
+        String access_history_dir = conf.get(ACCESS_HISTORY_DIR_FIELD_NAME, DEFAULT_ACCESS_HISTORY_DIR);
+        fsConfig.setAccessHistoryDir(access_history_dir);
+        
+        int access_history_max_files = conf.getInt(ACCESS_HISTORY_MAX_FILES_FIELD_NAME, DEFAULT_ACCESS_HISTORY_MAX_FILES);
+        fsConfig.setAccessHistoryMaxFiles(access_history_max_files);
+        
+        int access_history_prefetch_max_chunks = conf.getInt(ACCESS_HISTORY_PREFETCH_MAX_CHUNKS_FIELD_NAME, DEFAULT_ACCESS_HISTORY_PREFETCH_MAX_CHUNKS);
+        fsConfig.setAccessHistoryPrefetchMaxChunks(access_history_prefetch_max_chunks);
+        
+        boolean block_location_cached_hosts = conf.getBoolean(BLOCK_LOCATION_CACHED_HOSTS_FIELD_NAME, DEFAULT_BLOCK_LOCATION_CACHED_HOSTS);
+        fsConfig.setBlockLocationCachedHosts(block_location_cached_hosts);
+        
+        String bandwidth_cluster_limits = conf.get(BANDWIDTH_CLUSTER_LIMITS_FIELD_NAME, DEFAULT_BANDWIDTH_CLUSTER_LIMITS);
+        fsConfig.setBandwidthClusterLimits(bandwidth_cluster_limits);
+        
+        String bandwidth_class_limits = conf.get(BANDWIDTH_CLASS_LIMITS_FIELD_NAME, DEFAULT_BANDWIDTH_CLASS_LIMITS);
+        fsConfig.setBandwidthClassLimits(bandwidth_class_limits);
+        
+        String bandwidth_class_weights = conf.get(BANDWIDTH_CLASS_WEIGHTS_FIELD_NAME, DEFAULT_BANDWIDTH_CLASS_WEIGHTS);
+        fsConfig.setBandwidthClassWeights(bandwidth_class_weights);
+        
+        int bandwidth_burst_millis = conf.getInt(BANDWIDTH_BURST_MILLIS_FIELD_NAME, DEFAULT_BANDWIDTH_BURST_MILLIS);
+        fsConfig.setBandwidthBurstMillis(bandwidth_burst_millis);
+        
+        String bandwidth_stream_class = conf.get(BANDWIDTH_STREAM_CLASS_FIELD_NAME, DEFAULT_BANDWIDTH_STREAM_CLASS);
+        fsConfig.setBandwidthStreamClass(bandwidth_stream_class);
+        
         return fsConfig;
     }
     
@@ -159,4 +457,612 @@ public class StargateFileSystemConfig extends AbstractImmutableConfig {
     public String getDFSIPAntiPattern() {
         return this.dfsIPAntiPattern;
     }
+    
+    @JsonProperty("trace_enabled")
+    public void setTraceEnabled(boolean traceEnabled) {
+        super.checkMutableAndRaiseException();
+        
+        this.traceEnabled = traceEnabled;
+    }
+    
+    @JsonProperty("trace_enabled")
+    public boolean isTraceEnabled() {
+        return this.traceEnabled;
+    }
+    
+    @JsonProperty("trace_sample_interval")
+    public void setTraceSampleInterval(int traceSampleInterval) {
+        if(traceSampleInterval <= 0) {
+            throw new IllegalArgumentException("traceSampleInterval is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.traceSampleInterval = traceSampleInterval;
+    }
+    
+    @JsonProperty("trace_sample_interval")
+    public int getTraceSampleInterval() {
+        return this.traceSampleInterval;
+    }
+    
+    @JsonProperty("trace_sample_intervals")
+    public void setTraceSampleIntervals(String traceSampleIntervals) {
+        super.checkMutableAndRaiseException();
+        
+        this.traceSampleIntervals = traceSampleIntervals;
+    }
+    
+    @JsonProperty("trace_sample_intervals")
+    public String getTraceSampleIntervals() {
+        return this.traceSampleIntervals;
+    }
+    
+    @JsonProperty("trace_buffer_size")
+    public void setTraceBufferSize(int traceBufferSize) {
+        if(traceBufferSize <= 0) {
+            throw new IllegalArgumentException("traceBufferSize is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.traceBufferSize = traceBufferSize;
+    }
+    
+    @JsonProperty("trace_buffer_size")
+    public int getTraceBufferSize() {
+        return this.traceBufferSize;
+    }
+    
+    @JsonProperty("block_location_coalesce_size")
+    public void setBlockLocationCoalesceSize(long blockLocationCoalesceSize) {
+        if(blockLocationCoalesceSize < 0) {
+            throw new IllegalArgumentException("blockLocationCoalesceSize is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.blockLocationCoalesceSize = blockLocationCoalesceSize;
+    }
+    
+    @JsonProperty("block_location_coalesce_size")
+    public long getBlockLocationCoalesceSize() {
+        return this.blockLocationCoalesceSize;
+    }
+    
+    @JsonProperty("topology_rack_map")
+    public void setTopologyRackMap(String topologyRackMap) {
+        super.checkMutableAndRaiseException();
+        
+        this.topologyRackMap = topologyRackMap;
+    }
+    
+    @JsonProperty("topology_rack_map")
+    public String getTopologyRackMap() {
+        return this.topologyRackMap;
+    }
+    
+    @JsonProperty("topology_mapping_enabled")
+    public void setTopologyMappingEnabled(boolean topologyMappingEnabled) {
+        super.checkMutableAndRaiseException();
+        
+        this.topologyMappingEnabled = topologyMappingEnabled;
+    }
+    
+    @JsonProperty("topology_mapping_enabled")
+    public boolean isTopologyMappingEnabled() {
+        return this.topologyMappingEnabled;
+    }
+    
+    @JsonProperty("transfer_compression_codec_local")
+    public void setTransferCompressionCodecLocal(String transferCompressionCodecLocal) {
+        if(transferCompressionCodecLocal == null || transferCompressionCodecLocal.isEmpty()) {
+            throw new IllegalArgumentException("transferCompressionCodecLocal is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.transferCompressionCodecLocal = transferCompressionCodecLocal;
+    }
+    
+    @JsonProperty("transfer_compression_codec_local")
+    public String getTransferCompressionCodecLocal() {
+        return this.transferCompressionCodecLocal;
+    }
+    
+    @JsonProperty("transfer_compression_codec_remote")
+    public void setTransferCompressionCodecRemote(String transferCompressionCodecRemote) {
+        if(transferCompressionCodecRemote == null || transferCompressionCodecRemote.isEmpty()) {
+            throw new IllegalArgumentException("transferCompressionCodecRemote is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.transferCompressionCodecRemote = transferCompressionCodecRemote;
+    }
+    
+    @JsonProperty("transfer_compression_codec_remote")
+    public String getTransferCompressionCodecRemote() {
+        return this.transferCompressionCodecRemote;
+    }
+    
+    @JsonProperty("transfer_compression_codec_clusters")
+    public void setTransferCompressionCodecClusters(String transferCompressionCodecClusters) {
+        super.checkMutableAndRaiseException();
+        
+        this.transferCompressionCodecClusters = transferCompressionCodecClusters;
+    }
+    
+    @JsonProperty("transfer_compression_codec_clusters")
+    public String getTransferCompressionCodecClusters() {
+        return this.transferCompressionCodecClusters;
+    }
+    
+    @JsonProperty("transfer_compression_adaptive_bandwidth")
+    public void setTransferCompressionAdaptiveBandwidth(long transferCompressionAdaptiveBandwidth) {
+        if(transferCompressionAdaptiveBandwidth <= 0) {
+            throw new IllegalArgumentException("transferCompressionAdaptiveBandwidth is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.transferCompressionAdaptiveBandwidth = transferCompressionAdaptiveBandwidth;
+    }
+    
+    @JsonProperty("transfer_compression_adaptive_bandwidth")
+    public long getTransferCompressionAdaptiveBandwidth() {
+        return this.transferCompressionAdaptiveBandwidth;
+    }
+    
+    @JsonProperty("metadata_binary_enabled")
+    public void setMetadataBinaryEnabled(boolean metadataBinaryEnabled) {
+        super.checkMutableAndRaiseException();
+        
+        this.metadataBinaryEnabled = metadataBinaryEnabled;
+    }
+    
+    @JsonProperty("metadata_binary_enabled")
+    public boolean isMetadataBinaryEnabled() {
+        return this.metadataBinaryEnabled;
+    }
+    
+    @JsonProperty("transport_type")
+    public void setTransportType(String transportType) {
+        if(transportType == null || transportType.isEmpty()) {
+            throw new IllegalArgumentException("transportType is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.transportType = transportType;
+    }
+    
+    @JsonProperty("transport_type")
+    public String getTransportType() {
+        return this.transportType;
+    }
+    
+    @JsonProperty("transport_shared_connections")
+    public void setTransportSharedConnections(int transportSharedConnections) {
+        if(transportSharedConnections <= 0) {
+            throw new IllegalArgumentException("transportSharedConnections is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.transportSharedConnections = transportSharedConnections;
+    }
+    
+    @JsonProperty("transport_shared_connections")
+    public int getTransportSharedConnections() {
+        return this.transportSharedConnections;
+    }
+    
+    @JsonProperty("transport_shared_request_connections")
+    public void setTransportSharedRequestConnections(int transportSharedRequestConnections) {
+        if(transportSharedRequestConnections <= 0) {
+            throw new IllegalArgumentException("transportSharedRequestConnections is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.transportSharedRequestConnections = transportSharedRequestConnections;
+    }
+    
+    @JsonProperty("transport_shared_request_connections")
+    public int getTransportSharedRequestConnections() {
+        return this.transportSharedRequestConnections;
+    }
+    
+    @JsonProperty("transport_shared_wait_timeout")
+    public void setTransportSharedWaitTimeout(long transportSharedWaitTimeout) {
+        if(transportSharedWaitTimeout <= 0) {
+            throw new IllegalArgumentException("transportSharedWaitTimeout is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.transportSharedWaitTimeout = transportSharedWaitTimeout;
+    }
+    
+    @JsonProperty("transport_shared_wait_timeout")
+    public long getTransportSharedWaitTimeout() {
+        return this.transportSharedWaitTimeout;
+    }
+    
+    @JsonProperty("client_async_threads")
+    public void setClientAsyncThreads(int clientAsyncThreads) {
+        if(clientAsyncThreads <= 0) {
+            throw new IllegalArgumentException("clientAsyncThreads is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.clientAsyncThreads = clientAsyncThreads;
+    }
+    
+    @JsonProperty("client_async_threads")
+    public int getClientAsyncThreads() {
+        return this.clientAsyncThreads;
+    }
+    
+    @JsonProperty("snapshot_dir")
+    public void setSnapshotDir(String snapshotDir) {
+        super.checkMutableAndRaiseException();
+        
+        this.snapshotDir = snapshotDir;
+    }
+    
+    @JsonProperty("snapshot_dir")
+    public String getSnapshotDir() {
+        return this.snapshotDir;
+    }
+    
+    @JsonProperty("snapshot_max_age")
+    public void setSnapshotMaxAge(long snapshotMaxAge) {
+        if(snapshotMaxAge < 0) {
+            throw new IllegalArgumentException("snapshotMaxAge is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.snapshotMaxAge = snapshotMaxAge;
+    }
+    
+    @JsonProperty("snapshot_max_age")
+    public long getSnapshotMaxAge() {
+        return this.snapshotMaxAge;
+    }
+    
+    @JsonProperty("snapshot_listings_max")
+    public void setSnapshotListingsMax(int snapshotListingsMax) {
+        if(snapshotListingsMax < 0) {
+            throw new IllegalArgumentException("snapshotListingsMax is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.snapshotListingsMax = snapshotListingsMax;
+    }
+    
+    @JsonProperty("snapshot_listings_max")
+    public int getSnapshotListingsMax() {
+        return this.snapshotListingsMax;
+    }
+    
+    @JsonProperty("service_endpoints")
+    public void setServiceEndpoints(String serviceEndpoints) {
+        super.checkMutableAndRaiseException();
+        
+        this.serviceEndpoints = serviceEndpoints;
+    }
+    
+    @JsonProperty("service_endpoints")
+    public String getServiceEndpoints() {
+        return this.serviceEndpoints;
+    }
+    
+    @JsonProperty("service_endpoints_discovery_enabled")
+    public void setServiceEndpointsDiscoveryEnabled(boolean serviceEndpointsDiscoveryEnabled) {
+        super.checkMutableAndRaiseException();
+        
+        this.serviceEndpointsDiscoveryEnabled = serviceEndpointsDiscoveryEnabled;
+    }
+    
+    @JsonProperty("service_endpoints_discovery_enabled")
+    public boolean isServiceEndpointsDiscoveryEnabled() {
+        return this.serviceEndpointsDiscoveryEnabled;
+    }
+    
+    @JsonProperty("service_endpoint_failure_threshold")
+    public void setServiceEndpointFailureThreshold(int serviceEndpointFailureThreshold) {
+        if(serviceEndpointFailureThreshold <= 0) {
+            throw new IllegalArgumentException("serviceEndpointFailureThreshold is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.serviceEndpointFailureThreshold = serviceEndpointFailureThreshold;
+    }
+    
+    @JsonProperty("service_endpoint_failure_threshold")
+    public int getServiceEndpointFailureThreshold() {
+        return this.serviceEndpointFailureThreshold;
+    }
+    
+    @JsonProperty("service_endpoint_retry_interval")
+    public void setServiceEndpointRetryInterval(long serviceEndpointRetryInterval) {
+        if(serviceEndpointRetryInterval < 0) {
+            throw new IllegalArgumentException("serviceEndpointRetryInterval is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.serviceEndpointRetryInterval = serviceEndpointRetryInterval;
+    }
+    
+    @JsonProperty("service_endpoint_retry_interval")
+    public long getServiceEndpointRetryInterval() {
+        return this.serviceEndpointRetryInterval;
+    }
+    
+    @JsonProperty("metadata_routing_local")
+    public void setMetadataRoutingLocal(boolean metadataRoutingLocal) {
+        super.checkMutableAndRaiseException();
+        
+        this.metadataRoutingLocal = metadataRoutingLocal;
+    }
+    
+    @JsonProperty("metadata_routing_local")
+    public boolean isMetadataRoutingLocal() {
+        return this.metadataRoutingLocal;
+    }
+    
+    @JsonProperty("glob_pushdown_enabled")
+    public void setGlobPushdownEnabled(boolean globPushdownEnabled) {
+        super.checkMutableAndRaiseException();
+        
+        this.globPushdownEnabled = globPushdownEnabled;
+    }
+    
+    @JsonProperty("glob_pushdown_enabled")
+    public boolean isGlobPushdownEnabled() {
+        return this.globPushdownEnabled;
+    }
+    
+    @JsonProperty("tail_cache_enabled")
+    public void setTailCacheEnabled(boolean tailCacheEnabled) {
+        super.checkMutableAndRaiseException();
+        
+        this.tailCacheEnabled = tailCacheEnabled;
+    }
+    
+    @JsonProperty("tail_cache_enabled")
+    public boolean isTailCacheEnabled() {
+        return this.tailCacheEnabled;
+    }
+    
+    @JsonProperty("tail_cache_size")
+    public void setTailCacheSize(int tailCacheSize) {
+        if(tailCacheSize <= 0) {
+            throw new IllegalArgumentException("tailCacheSize is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.tailCacheSize = tailCacheSize;
+    }
+    
+    @JsonProperty("tail_cache_size")
+    public int getTailCacheSize() {
+        return this.tailCacheSize;
+    }
+    
+    @JsonProperty("tail_cache_max_bytes")
+    public void setTailCacheMaxBytes(long tailCacheMaxBytes) {
+        if(tailCacheMaxBytes < 0) {
+            throw new IllegalArgumentException("tailCacheMaxBytes is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.tailCacheMaxBytes = tailCacheMaxBytes;
+    }
+    
+    @JsonProperty("tail_cache_max_bytes")
+    public long getTailCacheMaxBytes() {
+        return this.tailCacheMaxBytes;
+    }
+    
+    @JsonProperty("verify_chunk_hash")
+    public void setVerifyChunkHash(boolean verifyChunkHash) {
+        super.checkMutableAndRaiseException();
+        
+        this.verifyChunkHash = verifyChunkHash;
+    }
+    
+    @JsonProperty("verify_chunk_hash")
+    public boolean isVerifyChunkHash() {
+        return this.verifyChunkHash;
+    }
+    
+    @JsonProperty("recipe_segment_enabled")
+    public void setRecipeSegmentEnabled(boolean recipeSegmentEnabled) {
+        super.checkMutableAndRaiseException();
+        
+        this.recipeSegmentEnabled = recipeSegmentEnabled;
+    }
+    
+    @JsonProperty("recipe_segment_enabled")
+    public boolean isRecipeSegmentEnabled() {
+        return this.recipeSegmentEnabled;
+    }
+    
+    @JsonProperty("recipe_segment_size")
+    public void setRecipeSegmentSize(long recipeSegmentSize) {
+        if(recipeSegmentSize <= 0) {
+            throw new IllegalArgumentException("recipeSegmentSize is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.recipeSegmentSize = recipeSegmentSize;
+    }
+    
+    @JsonProperty("recipe_segment_size")
+    public long getRecipeSegmentSize() {
+        return this.recipeSegmentSize;
+    }
+    
+    @JsonProperty("recipe_segment_cache_max")
+    public void setRecipeSegmentCacheMax(int recipeSegmentCacheMax) {
+        if(recipeSegmentCacheMax <= 0) {
+            throw new IllegalArgumentException("recipeSegmentCacheMax is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.recipeSegmentCacheMax = recipeSegmentCacheMax;
+    }
+    
+    @JsonProperty("recipe_segment_cache_max")
+    public int getRecipeSegmentCacheMax() {
+        return this.recipeSegmentCacheMax;
+    }
+    
+    @JsonProperty("access_trace_dir")
+    public void setAccessTraceDir(String accessTraceDir) {
+        super.checkMutableAndRaiseException();
+        
+        this.accessTraceDir = accessTraceDir;
+    }
+    
+    @JsonProperty("access_trace_dir")
+    public String getAccessTraceDir() {
+        return this.accessTraceDir;
+    }
+    
+    @JsonProperty("access_history_dir")
+    public void setAccessHistoryDir(String accessHistoryDir) {
+        super.checkMutableAndRaiseException();
+        
+        this.accessHistoryDir = accessHistoryDir;
+    }
+    
+    @JsonProperty("access_history_dir")
+    public String getAccessHistoryDir() {
+        return this.accessHistoryDir;
+    }
+    
+    @JsonProperty("access_history_max_files")
+    public void setAccessHistoryMaxFiles(int accessHistoryMaxFiles) {
+        if(accessHistoryMaxFiles <= 0) {
+            throw new IllegalArgumentException("accessHistoryMaxFiles is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.accessHistoryMaxFiles = accessHistoryMaxFiles;
+    }
+    
+    @JsonProperty("access_history_max_files")
+    public int getAccessHistoryMaxFiles() {
+        return this.accessHistoryMaxFiles;
+    }
+    
+    @JsonProperty("access_history_prefetch_max_chunks")
+    public void setAccessHistoryPrefetchMaxChunks(int accessHistoryPrefetchMaxChunks) {
+        if(accessHistoryPrefetchMaxChunks < 0) {
+            throw new IllegalArgumentException("accessHistoryPrefetchMaxChunks is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.accessHistoryPrefetchMaxChunks = accessHistoryPrefetchMaxChunks;
+    }
+    
+    @JsonProperty("access_history_prefetch_max_chunks")
+    public int getAccessHistoryPrefetchMaxChunks() {
+        return this.accessHistoryPrefetchMaxChunks;
+    }
+    
+    @JsonProperty("block_location_cached_hosts")
+    public void setBlockLocationCachedHosts(boolean blockLocationCachedHosts) {
+        super.checkMutableAndRaiseException();
+        
+        this.blockLocationCachedHosts = blockLocationCachedHosts;
+    }
+    
+    @JsonProperty("block_location_cached_hosts")
+    public boolean isBlockLocationCachedHosts() {
+        return this.blockLocationCachedHosts;
+    }
+    
+    @JsonProperty("bandwidth_cluster_limits")
+    public void setBandwidthClusterLimits(String bandwidthClusterLimits) {
+        super.checkMutableAndRaiseException();
+        
+        this.bandwidthClusterLimits = bandwidthClusterLimits;
+    }
+    
+    @JsonProperty("bandwidth_cluster_limits")
+    public String getBandwidthClusterLimits() {
+        return this.bandwidthClusterLimits;
+    }
+    
+    @JsonProperty("bandwidth_class_limits")
+    public void setBandwidthClassLimits(String bandwidthClassLimits) {
+        super.checkMutableAndRaiseException();
+        
+        this.bandwidthClassLimits = bandwidthClassLimits;
+    }
+    
+    @JsonProperty("bandwidth_class_limits")
+    public String getBandwidthClassLimits() {
+        return this.bandwidthClassLimits;
+    }
+    
+    @JsonProperty("bandwidth_class_weights")
+    public void setBandwidthClassWeights(String bandwidthClassWeights) {
+        super.checkMutableAndRaiseException();
+        
+        this.bandwidthClassWeights = bandwidthClassWeights;
+    }
+    
+    @JsonProperty("bandwidth_class_weights")
+    public String getBandwidthClassWeights() {
+        return this.bandwidthClassWeights;
+    }
+    
+    @JsonProperty("bandwidth_burst_millis")
+    public void setBandwidthBurstMillis(int bandwidthBurstMillis) {
+        if(bandwidthBurstMillis <= 0) {
+            throw new IllegalArgumentException("bandwidthBurstMillis is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.bandwidthBurstMillis = bandwidthBurstMillis;
+    }
+    
+    @JsonProperty("bandwidth_burst_millis")
+    public int getBandwidthBurstMillis() {
+        return this.bandwidthBurstMillis;
+    }
+    
+    @JsonProperty("bandwidth_stream_class")
+    public void setBandwidthStreamClass(String bandwidthStreamClass) {
+        if(bandwidthStreamClass == null || bandwidthStreamClass.isEmpty()) {
+            throw new IllegalArgumentException("bandwidthStreamClass is invalid");
+        }
+        
+        super.checkMutableAndRaiseException();
+        
+        this.bandwidthStreamClass = bandwidthStreamClass;
+    }
+    
+    @JsonProperty("bandwidth_stream_class")
+    public String getBandwidthStreamClass() {
+        return this.bandwidthStreamClass;
+    }
 }
@@ -0,0 +1,195 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import stargate.commons.utils.JsonSerializer;
+
+/**
+ * Process-wide, reference-counted StargateFileSystems.
+ *
+ * StargateHDFS instances (one per user and per FileSystem.newInstance())
+ * pointing to the same Stargate service with the same configuration, and
+ * the same Hadoop topology settings (used in rack resolution), share a
+ * StargateFileSystem, thus its connections, caches and cluster topology.
+ * A StargateFileSystem is created outside of the registry lock, so a slow
+ * service does not hold up other services. Callers asking for one being
+ * created wait for it.
+ *
+ * @author iychoi
+ */
+public class StargateFileSystemRegistry {
+
+    private static final Log LOG = LogFactory.getLog(StargateFileSystemRegistry.class);
+    
+    private static final Map<String, StargateFileSystemRegistryEntry> FILESYSTEMS = new HashMap<String, StargateFileSystemRegistryEntry>();
+    private static final Map<StargateFileSystem, String> KEYS = new HashMap<StargateFileSystem, String>();
+    
+    // settings of node to rack mappings (e.g., net.topology.script.file.name)
+    private static final String TOPOLOGY_KEY_REGEX = "^net\\.topology\\.";
+    
+    private StargateFileSystemRegistry() {
+    }
+    
+    /**
+     * Returns a shared StargateFileSystem. Every call must be paired with
+     * release().
+     */
+    public static StargateFileSystem acquire(URI uri, StargateFileSystemConfig config, Configuration conf) throws IOException {
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        if(config == null) {
+            throw new IllegalArgumentException("config is null");
+        }
+        
+        if(conf == null) {
+            throw new IllegalArgumentException("conf is null");
+        }
+        
+        String key = makeKey(uri, config, conf);
+        
+        StargateFileSystemRegistryEntry entry;
+        boolean create = false;
+        synchronized(FILESYSTEMS) {
+            entry = FILESYSTEMS.get(key);
+            if(entry == null) {
+                // placeholder, callers of the same key wait for it
+                entry = new StargateFileSystemRegistryEntry();
+                FILESYSTEMS.put(key, entry);
+                create = true;
+            } else {
+                LOG.debug("sharing a filesystem : " + StargateFileSystem.getStargateHost(uri, config));
+            }
+            
+            entry.referenceCount++;
+        }
+        
+        if(!create) {
+            return entry.getFilesystem();
+        }
+        
+        StargateFileSystem filesystem = null;
+        IOException failure = null;
+        try {
+            StargateRackResolver rackResolver = new StargateRackResolver(conf, config);
+            filesystem = new StargateFileSystem(uri, config, rackResolver);
+            return filesystem;
+        } catch (IOException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            synchronized(FILESYSTEMS) {
+                if(filesystem != null) {
+                    KEYS.put(filesystem, key);
+                } else {
+                    // later calls try again
+                    FILESYSTEMS.remove(key);
+                }
+            }
+            entry.setFilesystem(filesystem, failure);
+        }
+    }
+    
+    private static String makeKey(URI uri, StargateFileSystemConfig config, Configuration conf) throws IOException {
+        // sorted for a stable key
+        Map<String, String> topologySettings = new TreeMap<String, String>(conf.getValByRegex(TOPOLOGY_KEY_REGEX));
+        return StargateFileSystem.getStargateHost(uri, config) + "|" + JsonSerializer.toJson(config) + "|" + topologySettings.toString();
+    }
+    
+    public static void release(StargateFileSystem filesystem) {
+        if(filesystem == null) {
+            throw new IllegalArgumentException("filesystem is null");
+        }
+        
+        synchronized(FILESYSTEMS) {
+            String key = KEYS.get(filesystem);
+            if(key == null) {
+                // not registered
+                filesystem.close();
+                return;
+            }
+            
+            StargateFileSystemRegistryEntry entry = FILESYSTEMS.get(key);
+            entry.referenceCount--;
+            if(entry.referenceCount > 0) {
+                return;
+            }
+            
+            FILESYSTEMS.remove(key);
+            KEYS.remove(filesystem);
+        }
+        
+        filesystem.close();
+    }
+    
+    private static class StargateFileSystemRegistryEntry {
+        
+        private StargateFileSystem filesystem;
+        private IOException failure;
+        private boolean created;
+        private int referenceCount;
+        
+        StargateFileSystemRegistryEntry() {
+            this.filesystem = null;
+            this.failure = null;
+            this.created = false;
+            this.referenceCount = 0;
+        }
+        
+        synchronized void setFilesystem(StargateFileSystem filesystem, IOException failure) {
+            this.filesystem = filesystem;
+            this.failure = failure;
+            this.created = true;
+            notifyAll();
+        }
+        
+        /**
+         * Waits until the filesystem is created. Creation is bounded by
+         * connection timeouts, so interrupts are kept for the caller.
+         */
+        synchronized StargateFileSystem getFilesystem() throws IOException {
+            boolean interrupted = false;
+            while(!this.created) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            
+            if(this.filesystem == null) {
+                if(this.failure != null) {
+                    throw new IOException("cannot create a filesystem", this.failure);
+                }
+                throw new IOException("cannot create a filesystem");
+            }
+            return this.filesystem;
+        }
+    }
+}
@@ -18,20 +18,25 @@ package stargate.client.hdfs;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.util.Progressable;
 import stargate.commons.dataobject.DataObjectMetadata;
+import stargate.drivers.userinterface.http.OperationTracer;
 
 /**
  *
@@ -40,6 +45,7 @@ import stargate.commons.dataobject.DataObjectMetadata;
 public class StargateHDFS extends FileSystem {
 
     private static final Log LOG = LogFactory.getLog(StargateHDFS.class);
+    private static final OperationTracer TRACER = OperationTracer.getInstance();
     
     private StargateFileSystem filesystem;
     private URI uri;
@@ -66,7 +72,8 @@ public class StargateHDFS extends FileSystem {
         StargateFileSystemConfig fsConfig = StargateFileSystemConfig.createInstance(conf);
         
         if(this.filesystem == null) {
-            this.filesystem = new StargateFileSystem(uri, fsConfig);
+            // shared with other instances using the same service
+            this.filesystem = StargateFileSystemRegistry.acquire(uri, fsConfig, conf);
         }
         
         setConf(conf);
@@ -98,7 +105,7 @@ public class StargateHDFS extends FileSystem {
         this.workingDirUri = makeAbsoluteURI(path);
     }
     
-    private synchronized URI makeAbsoluteURI(Path path) {
+    synchronized URI makeAbsoluteURI(Path path) {
         String pathString = path.toUri().getPath();
         URI resolved = this.workingDirUri.resolve(pathString);
         return resolved;
@@ -114,10 +121,20 @@ public class StargateHDFS extends FileSystem {
             throw new IllegalArgumentException("bufferSize is negative");
         }
         
-        LOG.info("open: " + path.toString());
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("open: " + path.toString());
+        }
+        
+        boolean sampled = TRACER.isSampled(OperationTracer.Operation.OPEN);
+        long startTime = sampled ? System.nanoTime() : 0;
         
         URI absPath = makeAbsoluteURI(path);
-        return new FSDataInputStream(this.filesystem.open(absPath, bufferSize));
+        FSDataInputStream is = new FSDataInputStream(this.filesystem.open(absPath, bufferSize));
+        
+        if(sampled) {
+            TRACER.trace(OperationTracer.Operation.OPEN, path.toString(), System.nanoTime() - startTime);
+        }
+        return is;
     }
 
     @Override
@@ -126,10 +143,19 @@ public class StargateHDFS extends FileSystem {
             throw new IllegalArgumentException("path is null");
         }
         
-        LOG.info("getFileStatus: " + path.toString());
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("getFileStatus: " + path.toString());
+        }
+        
+        boolean sampled = TRACER.isSampled(OperationTracer.Operation.GET_FILE_STATUS);
+        long startTime = sampled ? System.nanoTime() : 0;
         
         URI absPath = makeAbsoluteURI(path);
         StargateFileStatus status = this.filesystem.getFileStatus(absPath);
+        
+        if(sampled) {
+            TRACER.trace(OperationTracer.Operation.GET_FILE_STATUS, path.toString(), System.nanoTime() - startTime);
+        }
         return makeFileStatus(status);
     }
     
@@ -139,10 +165,20 @@ public class StargateHDFS extends FileSystem {
             throw new IllegalArgumentException("path is null");
         }
         
-        LOG.info("listStatus: " + path.toString());
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("listStatus: " + path.toString());
+        }
+        
+        boolean sampled = TRACER.isSampled(OperationTracer.Operation.LIST_STATUS);
+        long startTime = sampled ? System.nanoTime() : 0;
         
         URI absPath = makeAbsoluteURI(path);
         Collection<StargateFileStatus> status = this.filesystem.listStatus(absPath);
+        
+        if(sampled) {
+            TRACER.trace(OperationTracer.Operation.LIST_STATUS, path.toString(), -1, (status == null) ? 0 : status.size(), System.nanoTime() - startTime);
+        }
+        
         if(status != null) {
             FileStatus[] statusArr = new FileStatus[status.size()];
             int i = 0;
@@ -155,6 +191,81 @@ public class StargateHDFS extends FileSystem {
         return new FileStatus[0];
     }
     
+    @Override
+    public FileStatus[] globStatus(Path pathPattern) throws IOException {
+        return globStatus(pathPattern, null);
+    }
+    
+    @Override
+    public FileStatus[] globStatus(Path pathPattern, PathFilter filter) throws IOException {
+        if(pathPattern == null) {
+            throw new IllegalArgumentException("pathPattern is null");
+        }
+        
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("globStatus: " + pathPattern.toString());
+        }
+        
+        String pattern = pathPattern.toUri().getPath();
+        if(!pathPattern.isAbsolute()) {
+            pattern = new Path(getWorkingDirectory(), pathPattern).toUri().getPath();
+        }
+        
+        if(pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0 && pattern.indexOf('[') < 0 && pattern.indexOf('{') < 0) {
+            // not a glob, keep semantics for missing paths
+            return super.globStatus(pathPattern, filter);
+        }
+        
+        Collection<StargateFileStatus> status = this.filesystem.globStatus(this.uri, pattern);
+        if(status == null) {
+            return super.globStatus(pathPattern, filter);
+        }
+        
+        List<FileStatus> statusList = new ArrayList<FileStatus>(status.size());
+        for(StargateFileStatus s : status) {
+            FileStatus fileStatus = makeFileStatus(s);
+            if(filter == null || filter.accept(fileStatus.getPath())) {
+                statusList.add(fileStatus);
+            }
+        }
+        
+        FileStatus[] statusArr = statusList.toArray(new FileStatus[0]);
+        Arrays.sort(statusArr);
+        return statusArr;
+    }
+    
+    @Override
+    public ContentSummary getContentSummary(Path path) throws IOException {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("getContentSummary: " + path.toString());
+        }
+        
+        URI absPath = makeAbsoluteURI(path);
+        return this.filesystem.getContentSummary(absPath);
+    }
+    
+    @Override
+    public FileChecksum getFileChecksum(Path path) throws IOException {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("getFileChecksum: " + path.toString());
+        }
+        
+        URI absPath = makeAbsoluteURI(path);
+        return this.filesystem.getFileChecksum(absPath);
+    }
+    
+    StargateFileSystem getStargateFileSystem() {
+        return this.filesystem;
+    }
+    
     private FileStatus makeFileStatus(StargateFileStatus status) {
         DataObjectMetadata metadata = status.getMetadata();
         return new FileStatus(metadata.getSize(), metadata.isDirectory(), 1, status.getBlockSize(), metadata.getLastModifiedTime(), new Path(status.getPath()));
@@ -188,39 +299,51 @@ public class StargateHDFS extends FileSystem {
             throw new IllegalArgumentException("len is negative");
         }
         
-        LOG.info(String.format("getFileBlockLocations: %s, start(%d), len(%d)", path.toString(), start, len));
+        boolean debug = LOG.isDebugEnabled();
+        if(debug) {
+            LOG.debug(String.format("getFileBlockLocations: %s, start(%d), len(%d)", path.toString(), start, len));
+        }
+        
+        boolean sampled = TRACER.isSampled(OperationTracer.Operation.GET_FILE_BLOCK_LOCATIONS);
+        long startTime = sampled ? System.nanoTime() : 0;
         
         URI absPath = makeAbsoluteURI(path);
         Collection<StargateFileBlockLocation> fileBlockLocations = this.filesystem.getFileBlockLocations(absPath, start, len);
-        List<BlockLocation> blkLocations = new ArrayList<BlockLocation>();
+        BlockLocation[] blkLocations = new BlockLocation[fileBlockLocations.size()];
         
+        int i = 0;
         for(StargateFileBlockLocation location : fileBlockLocations) {
             BlockLocation blkLocation = makeBlockLocation(location);
             
-            LOG.info(String.format("> block location: %s", location.toString()));
-            blkLocations.add(blkLocation);
+            if(debug) {
+                LOG.debug(String.format("> block location: %s", location.toString()));
+            }
+            blkLocations[i] = blkLocation;
+            i++;
         }
         
-        return blkLocations.toArray(new BlockLocation[0]);
+        if(sampled) {
+            TRACER.trace(OperationTracer.Operation.GET_FILE_BLOCK_LOCATIONS, path.toString(), start, len, System.nanoTime() - startTime);
+        }
+        return blkLocations;
     }
     
     private BlockLocation makeBlockLocation(StargateFileBlockLocation blockLocation) {
-        String[] names = blockLocation.getNames().toArray(new String[0]);
-        String[] hosts = blockLocation.getHosts().toArray(new String[0]);
+        // arrays are memoized in the block location
+        String[] names = blockLocation.getNameArray();
+        String[] hosts = blockLocation.getHostArray();
+        String[] topology = blockLocation.getTopologyPathArray();
+        String[] cachedHosts = blockLocation.getCachedHostArray();
         
-        List<String> topo_list = new ArrayList<String>();
-        for(String name : names) {
-            topo_list.add(String.format("/default-rack/%s", name));
-        }
-        
-        String[] topology = topo_list.toArray(new String[0]);
-        
-        return new BlockLocation(names, hosts, topology, blockLocation.getOffset(), blockLocation.getLength());
+        return new BlockLocation(names, hosts, cachedHosts, topology, blockLocation.getOffset(), blockLocation.getLength(), false);
     }
     
     @Override
-    public void close() throws IOException {
-        this.filesystem.close();
+    public synchronized void close() throws IOException {
+        if(this.filesystem != null) {
+            StargateFileSystemRegistry.release(this.filesystem);
+            this.filesystem = null;
+        }
         
         super.close();
     }
@@ -0,0 +1,123 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import stargate.drivers.userinterface.http.BandwidthShaper;
+import stargate.drivers.userinterface.http.ChunkTransferCompression;
+import stargate.drivers.userinterface.http.FileTailCache;
+import stargate.drivers.userinterface.http.HTTPChunkInputStream;
+import stargate.drivers.userinterface.http.HTTPUserInterfaceClient;
+import stargate.drivers.userinterface.http.OperationTracer;
+import stargate.drivers.userinterface.http.UserInterfaceClientExecutor;
+
+/**
+ * Settings shared by all StargateFileSystems in the JVM, e.g., transports,
+ * the client executor, caches, bandwidth limits and the tracer.
+ *
+ * The configuration of the first StargateFileSystem applies them. Later
+ * filesystems do not reconfigure them, so they do not reset state of
+ * filesystems already in use; differing settings are logged and ignored.
+ *
+ * @author iychoi
+ */
+public class StargateJVMSettings {
+
+    private static final Log LOG = LogFactory.getLog(StargateJVMSettings.class);
+    
+    private static Map<String, String> appliedSettings;
+    
+    private StargateJVMSettings() {
+    }
+    
+    private static Map<String, String> getSettings(StargateFileSystemConfig config) {
+        Map<String, String> settings = new TreeMap<String, String>();
+        settings.put(StargateFileSystemConfig.TRANSPORT_TYPE_FIELD_NAME, config.getTransportType());
+        settings.put(StargateFileSystemConfig.TRANSPORT_SHARED_CONNECTIONS_FIELD_NAME, String.valueOf(config.getTransportSharedConnections()));
+        settings.put(StargateFileSystemConfig.TRANSPORT_SHARED_REQUEST_CONNECTIONS_FIELD_NAME, String.valueOf(config.getTransportSharedRequestConnections()));
+        settings.put(StargateFileSystemConfig.TRANSPORT_SHARED_WAIT_TIMEOUT_FIELD_NAME, String.valueOf(config.getTransportSharedWaitTimeout()));
+        settings.put(StargateFileSystemConfig.TRACE_ENABLED_FIELD_NAME, String.valueOf(config.isTraceEnabled()));
+        settings.put(StargateFileSystemConfig.TRACE_SAMPLE_INTERVAL_FIELD_NAME, String.valueOf(config.getTraceSampleInterval()));
+        settings.put(StargateFileSystemConfig.TRACE_SAMPLE_INTERVALS_FIELD_NAME, String.valueOf(config.getTraceSampleIntervals()));
+        settings.put(StargateFileSystemConfig.TRACE_BUFFER_SIZE_FIELD_NAME, String.valueOf(config.getTraceBufferSize()));
+        settings.put(StargateFileSystemConfig.TRANSFER_COMPRESSION_CODEC_LOCAL_FIELD_NAME, config.getTransferCompressionCodecLocal());
+        settings.put(StargateFileSystemConfig.TRANSFER_COMPRESSION_CODEC_REMOTE_FIELD_NAME, config.getTransferCompressionCodecRemote());
+        settings.put(StargateFileSystemConfig.TRANSFER_COMPRESSION_CODEC_CLUSTERS_FIELD_NAME, String.valueOf(config.getTransferCompressionCodecClusters()));
+        settings.put(StargateFileSystemConfig.TRANSFER_COMPRESSION_ADAPTIVE_BANDWIDTH_FIELD_NAME, String.valueOf(config.getTransferCompressionAdaptiveBandwidth()));
+        settings.put(StargateFileSystemConfig.METADATA_BINARY_ENABLED_FIELD_NAME, String.valueOf(config.isMetadataBinaryEnabled()));
+        settings.put(StargateFileSystemConfig.CLIENT_ASYNC_THREADS_FIELD_NAME, String.valueOf(config.getClientAsyncThreads()));
+        settings.put(StargateFileSystemConfig.VERIFY_CHUNK_HASH_FIELD_NAME, String.valueOf(config.isVerifyChunkHash()));
+        settings.put(StargateFileSystemConfig.TAIL_CACHE_ENABLED_FIELD_NAME, String.valueOf(config.isTailCacheEnabled()));
+        settings.put(StargateFileSystemConfig.TAIL_CACHE_SIZE_FIELD_NAME, String.valueOf(config.getTailCacheSize()));
+        settings.put(StargateFileSystemConfig.TAIL_CACHE_MAX_BYTES_FIELD_NAME, String.valueOf(config.getTailCacheMaxBytes()));
+        settings.put(StargateFileSystemConfig.BANDWIDTH_CLUSTER_LIMITS_FIELD_NAME, String.valueOf(config.getBandwidthClusterLimits()));
+        settings.put(StargateFileSystemConfig.BANDWIDTH_CLASS_LIMITS_FIELD_NAME, String.valueOf(config.getBandwidthClassLimits()));
+        settings.put(StargateFileSystemConfig.BANDWIDTH_CLASS_WEIGHTS_FIELD_NAME, String.valueOf(config.getBandwidthClassWeights()));
+        settings.put(StargateFileSystemConfig.BANDWIDTH_BURST_MILLIS_FIELD_NAME, String.valueOf(config.getBandwidthBurstMillis()));
+        return settings;
+    }
+    
+    /**
+     * Applies the settings of the config if no config has applied them yet.
+     * Returns false if settings of an earlier config stay in effect.
+     */
+    public static synchronized boolean apply(StargateFileSystemConfig config) {
+        if(config == null) {
+            throw new IllegalArgumentException("config is null");
+        }
+        
+        Map<String, String> settings = getSettings(config);
+        if(appliedSettings != null) {
+            List<String> differences = new ArrayList<String>();
+            for(Map.Entry<String, String> entry : settings.entrySet()) {
+                String applied = appliedSettings.get(entry.getKey());
+                if(!entry.getValue().equals(applied)) {
+                    differences.add(String.format("%s=%s (in effect: %s)", entry.getKey(), entry.getValue(), applied));
+                }
+            }
+            
+            if(!differences.isEmpty()) {
+                LOG.warn("JVM-wide settings are already applied by an earlier filesystem, ignoring : " + differences.toString());
+            }
+            return false;
+        }
+        
+        HTTPUserInterfaceClient.setTransport(config.getTransportType(), config.getTransportSharedConnections(), config.getTransportSharedRequestConnections(), config.getTransportSharedWaitTimeout());
+        
+        OperationTracer.getInstance().configure(config.isTraceEnabled(), config.getTraceSampleInterval(), config.getTraceSampleIntervals(), config.getTraceBufferSize());
+        
+        ChunkTransferCompression transferCompression = new ChunkTransferCompression(config.getTransferCompressionCodecLocal(), config.getTransferCompressionCodecRemote(), config.getTransferCompressionCodecClusters(), config.getTransferCompressionAdaptiveBandwidth());
+        if(transferCompression.isEnabled()) {
+            HTTPUserInterfaceClient.setTransferCompression(transferCompression);
+        } else {
+            HTTPUserInterfaceClient.setTransferCompression(null);
+        }
+        
+        HTTPUserInterfaceClient.setBinaryMetadataEnabled(config.isMetadataBinaryEnabled());
+        UserInterfaceClientExecutor.getInstance().setThreads(config.getClientAsyncThreads());
+        HTTPChunkInputStream.setVerifyChunkHash(config.isVerifyChunkHash());
+        FileTailCache.getInstance().configure(config.isTailCacheEnabled(), config.getTailCacheSize(), config.getTailCacheMaxBytes());
+        BandwidthShaper.getInstance().configure(config.getBandwidthClusterLimits(), config.getBandwidthClassLimits(), config.getBandwidthClassWeights(), config.getBandwidthBurstMillis());
+        
+        appliedSettings = settings;
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+import stargate.commons.dataobject.DataObjectMetadata;
+import stargate.commons.userinterface.UserInterfaceInitialDataPack;
+import stargate.commons.utils.JsonSerializer;
+
+/**
+ * On-disk snapshot of the initial data pack and recently used listings of
+ * a Stargate service, used to skip the initial round trips on startup.
+ *
+ * @author iychoi
+ */
+public class StargateMetadataSnapshot {
+
+    private static final String SNAPSHOT_FILE_PREFIX = "sgfs-snapshot-";
+    private static final String SNAPSHOT_FILE_SUFFIX = ".json";
+    private static final String ENCODING = "UTF-8";
+    
+    private String serviceURI;
+    private long timestamp;
+    private UserInterfaceInitialDataPack initialDataPack;
+    // sgfs path (e.g., /cluster/path) to listing
+    private Map<String, DataObjectMetadata[]> listings = new HashMap<String, DataObjectMetadata[]>();
+    
+    public static File getSnapshotFile(String snapshotDir, URI serviceURI) {
+        if(snapshotDir == null || snapshotDir.isEmpty()) {
+            throw new IllegalArgumentException("snapshotDir is null or empty");
+        }
+        
+        if(serviceURI == null) {
+            throw new IllegalArgumentException("serviceURI is null");
+        }
+        
+        String name = String.format("%s%s_%d%s", SNAPSHOT_FILE_PREFIX, serviceURI.getHost(), serviceURI.getPort(), SNAPSHOT_FILE_SUFFIX);
+        return new File(snapshotDir, name);
+    }
+    
+    /**
+     * Returns the snapshot in the file, or null if the file does not exist.
+     */
+    public static StargateMetadataSnapshot load(File file) throws IOException {
+        if(file == null) {
+            throw new IllegalArgumentException("file is null");
+        }
+        
+        if(!file.isFile()) {
+            return null;
+        }
+        
+        Reader reader = new InputStreamReader(new FileInputStream(file), ENCODING);
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read = reader.read(buffer);
+            while(read >= 0) {
+                sb.append(buffer, 0, read);
+                read = reader.read(buffer);
+            }
+            
+            return (StargateMetadataSnapshot) JsonSerializer.fromJson(sb.toString(), StargateMetadataSnapshot.class);
+        } finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Writes the snapshot to a temporary file and renames it, so readers
+     * never see a partially written snapshot.
+     */
+    public void save(File file) throws IOException {
+        if(file == null) {
+            throw new IllegalArgumentException("file is null");
+        }
+        
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("cannot create a snapshot directory : " + dir.getPath());
+        }
+        
+        String json = JsonSerializer.toJson(this);
+        
+        File tempFile = File.createTempFile(SNAPSHOT_FILE_PREFIX, ".tmp", dir);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), ENCODING);
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+        
+        if(!tempFile.renameTo(file)) {
+            // rename does not replace an existing file on some platforms
+            file.delete();
+            if(!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("cannot write a snapshot : " + file.getPath());
+            }
+        }
+    }
+    
+    StargateMetadataSnapshot() {
+    }
+    
+    public StargateMetadataSnapshot(URI serviceURI, UserInterfaceInitialDataPack initialDataPack) {
+        if(serviceURI == null) {
+            throw new IllegalArgumentException("serviceURI is null");
+        }
+        
+        if(initialDataPack == null) {
+            throw new IllegalArgumentException("initialDataPack is null");
+        }
+        
+        this.serviceURI = serviceURI.toString();
+        this.timestamp = System.currentTimeMillis();
+        this.initialDataPack = initialDataPack;
+    }
+    
+    @JsonProperty("service_uri")
+    public String getServiceURI() {
+        return this.serviceURI;
+    }
+    
+    @JsonProperty("service_uri")
+    void setServiceURI(String serviceURI) {
+        this.serviceURI = serviceURI;
+    }
+    
+    @JsonProperty("timestamp")
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+    
+    @JsonProperty("timestamp")
+    void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+    
+    @JsonIgnore
+    public boolean isExpired(long maxAge) {
+        if(maxAge <= 0) {
+            return false;
+        }
+        return System.currentTimeMillis() - this.timestamp > maxAge;
+    }
+    
+    @JsonProperty("initial_data_pack")
+    public UserInterfaceInitialDataPack getInitialDataPack() {
+        return this.initialDataPack;
+    }
+    
+    @JsonProperty("initial_data_pack")
+    void setInitialDataPack(UserInterfaceInitialDataPack initialDataPack) {
+        this.initialDataPack = initialDataPack;
+    }
+    
+    @JsonProperty("listings")
+    public Map<String, DataObjectMetadata[]> getListings() {
+        return this.listings;
+    }
+    
+    @JsonProperty("listings")
+    void setListings(Map<String, DataObjectMetadata[]> listings) {
+        this.listings.clear();
+        if(listings != null) {
+            this.listings.putAll(listings);
+        }
+    }
+    
+    @JsonIgnore
+    public void addListing(String path, DataObjectMetadata[] listing) {
+        if(path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        
+        if(listing == null) {
+            throw new IllegalArgumentException("listing is null");
+        }
+        
+        this.listings.put(path, listing);
+    }
+}
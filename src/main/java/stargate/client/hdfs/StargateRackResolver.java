@@ -0,0 +1,130 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.net.DNSToSwitchMapping;
+import org.apache.hadoop.net.ScriptBasedMapping;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Resolves racks of Stargate nodes.
+ *
+ * A Stargate-provided node-to-rack map (fs.sgfs.topology.rack.map) is
+ * consulted first, then Hadoop's configured DNSToSwitchMapping.
+ *
+ * @author iychoi
+ */
+public class StargateRackResolver {
+
+    private static final Log LOG = LogFactory.getLog(StargateRackResolver.class);
+    
+    private Map<String, String> rackMap = new HashMap<String, String>();
+    private DNSToSwitchMapping mapping;
+    
+    public StargateRackResolver(Configuration conf, StargateFileSystemConfig config) {
+        if(conf == null) {
+            throw new IllegalArgumentException("conf is null");
+        }
+        
+        if(config == null) {
+            throw new IllegalArgumentException("config is null");
+        }
+        
+        parseRackMap(config.getTopologyRackMap());
+        
+        if(config.isTopologyMappingEnabled()) {
+            Class<? extends DNSToSwitchMapping> mappingClass = conf.getClass(CommonConfigurationKeysPublic.NET_TOPOLOGY_NODE_SWITCH_MAPPING_IMPL_KEY, ScriptBasedMapping.class, DNSToSwitchMapping.class);
+            this.mapping = ReflectionUtils.newInstance(mappingClass, conf);
+        }
+    }
+    
+    private void parseRackMap(String rackMapString) {
+        // node1=/rack1,node2=/rack2
+        if(rackMapString == null || rackMapString.trim().isEmpty()) {
+            return;
+        }
+        
+        String[] pairs = rackMapString.split(",");
+        for(String pair : pairs) {
+            String[] kv = pair.split("=");
+            if(kv.length != 2) {
+                throw new IllegalArgumentException("malformed rack mapping : " + pair);
+            }
+            
+            this.rackMap.put(kv[0].trim(), normalizeRack(kv[1].trim()));
+        }
+    }
+    
+    private String normalizeRack(String rack) {
+        if(rack == null || rack.isEmpty()) {
+            return StargateFileBlockLocationEntry.DEFAULT_RACK;
+        }
+        
+        if(!rack.startsWith("/")) {
+            rack = "/" + rack;
+        }
+        
+        if(rack.length() > 1 && rack.endsWith("/")) {
+            rack = rack.substring(0, rack.length() - 1);
+        }
+        return rack;
+    }
+    
+    /**
+     * Returns rack of the node. Any of ip and hostname can be null.
+     */
+    public synchronized String resolve(String nodeName, String ip, String hostname) {
+        String rack = null;
+        if(nodeName != null) {
+            rack = this.rackMap.get(nodeName);
+        }
+        
+        if(rack == null && hostname != null) {
+            rack = this.rackMap.get(hostname);
+        }
+        
+        if(rack == null && ip != null) {
+            rack = this.rackMap.get(ip);
+        }
+        
+        if(rack == null && this.mapping != null) {
+            String address = (ip != null) ? ip : hostname;
+            if(address != null) {
+                List<String> names = new ArrayList<String>();
+                names.add(address);
+                
+                try {
+                    List<String> racks = this.mapping.resolve(names);
+                    if(racks != null && racks.size() == 1) {
+                        rack = racks.get(0);
+                    }
+                } catch (Exception ex) {
+                    LOG.warn("cannot resolve rack of " + address, ex);
+                }
+            }
+        }
+        
+        return normalizeRack(rack);
+    }
+}
@@ -0,0 +1,318 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import stargate.drivers.userinterface.http.HTTPUserInterfaceClient;
+import stargate.drivers.userinterface.http.UserInterfaceClientExecutor;
+
+/**
+ * Stargate user interface services used for metadata and recipe calls.
+ *
+ * Calls are spread over endpoints in a round-robin fashion and fail over
+ * to the next endpoint on I/O errors. An endpoint failing repeatedly is
+ * taken out of rotation (circuit open) and is probed with a liveness check
+ * after the retry interval before receiving calls again. Probes run in the
+ * background, callers do not wait for them.
+ *
+ * If a preferred endpoint is set (e.g., the co-located Stargate service),
+ * calls go to it while it is healthy and fall back to the others.
+ *
+ * @author iychoi
+ */
+public class StargateServiceEndpoints {
+
+    private static final Log LOG = LogFactory.getLog(StargateServiceEndpoints.class);
+    
+    public interface EndpointCall<T> {
+        public T call(HTTPUserInterfaceClient client) throws IOException;
+    }
+    
+    private List<StargateServiceEndpoint> endpoints = new CopyOnWriteArrayList<StargateServiceEndpoint>();
+    private AtomicInteger nextEndpoint = new AtomicInteger(0);
+    private volatile StargateServiceEndpoint preferredEndpoint;
+    private int failureThreshold;
+    private long retryInterval;
+    
+    public StargateServiceEndpoints(HTTPUserInterfaceClient primaryClient, int failureThreshold, long retryInterval) {
+        if(primaryClient == null) {
+            throw new IllegalArgumentException("primaryClient is null");
+        }
+        
+        if(failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold is not positive");
+        }
+        
+        if(retryInterval < 0) {
+            throw new IllegalArgumentException("retryInterval is negative");
+        }
+        
+        this.failureThreshold = failureThreshold;
+        this.retryInterval = retryInterval;
+        this.endpoints.add(new StargateServiceEndpoint(primaryClient));
+    }
+    
+    public HTTPUserInterfaceClient getPrimaryClient() {
+        return this.endpoints.get(0).client;
+    }
+    
+    /**
+     * Adds an endpoint. Returns false if the endpoint is already known.
+     */
+    public synchronized boolean addEndpoint(URI serviceURI) throws IOException {
+        if(serviceURI == null) {
+            throw new IllegalArgumentException("serviceURI is null");
+        }
+        
+        if(findEndpoint(serviceURI) != null) {
+            return false;
+        }
+        
+        HTTPUserInterfaceClient client = new HTTPUserInterfaceClient(serviceURI, null, null);
+        client.connect();
+        this.endpoints.add(new StargateServiceEndpoint(client));
+        
+        LOG.debug("added a service endpoint : " + serviceURI.toString());
+        return true;
+    }
+    
+    /**
+     * Sets the endpoint that receives calls first. Adds it if unknown.
+     */
+    public synchronized void setPreferredEndpoint(URI serviceURI) throws IOException {
+        if(serviceURI == null) {
+            this.preferredEndpoint = null;
+            return;
+        }
+        
+        addEndpoint(serviceURI);
+        this.preferredEndpoint = findEndpoint(serviceURI);
+        
+        LOG.info("preferred service endpoint : " + serviceURI.toString());
+    }
+    
+    public URI getPreferredEndpoint() {
+        StargateServiceEndpoint endpoint = this.preferredEndpoint;
+        if(endpoint == null) {
+            return null;
+        }
+        return endpoint.client.getServiceURI();
+    }
+    
+    private StargateServiceEndpoint findEndpoint(URI serviceURI) {
+        for(StargateServiceEndpoint endpoint : this.endpoints) {
+            if(endpoint.client.getServiceURI().equals(serviceURI)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+    
+    public List<URI> getEndpointURIs() {
+        List<URI> uris = new ArrayList<URI>();
+        for(StargateServiceEndpoint endpoint : this.endpoints) {
+            uris.add(endpoint.client.getServiceURI());
+        }
+        return uris;
+    }
+    
+    public int getEndpointCount() {
+        return this.endpoints.size();
+    }
+    
+    /**
+     * Runs the call on a healthy endpoint, failing over to others on I/O
+     * errors. FileNotFoundException is an answer, not a failure.
+     */
+    public <T> T execute(EndpointCall<T> call) throws IOException {
+        if(call == null) {
+            throw new IllegalArgumentException("call is null");
+        }
+        
+        List<StargateServiceEndpoint> endpointList = this.endpoints;
+        int size = endpointList.size();
+        int start = (this.nextEndpoint.getAndIncrement() & Integer.MAX_VALUE) % size;
+        
+        IOException lastException = null;
+        boolean tried = false;
+        
+        StargateServiceEndpoint preferred = this.preferredEndpoint;
+        if(preferred != null && preferred.isAvailable()) {
+            tried = true;
+            try {
+                return executeOn(preferred, call);
+            } catch (FileNotFoundException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                lastException = ex;
+            }
+        }
+        
+        for(int i = 0; i < size; i++) {
+            StargateServiceEndpoint endpoint = endpointList.get((start + i) % size);
+            if(endpoint == preferred || !endpoint.isAvailable()) {
+                continue;
+            }
+            
+            tried = true;
+            try {
+                return executeOn(endpoint, call);
+            } catch (FileNotFoundException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                lastException = ex;
+            }
+        }
+        
+        if(!tried) {
+            // all circuits are open, try anyway rather than failing immediately
+            for(int i = 0; i < size; i++) {
+                StargateServiceEndpoint endpoint = endpointList.get((start + i) % size);
+                try {
+                    return executeOn(endpoint, call);
+                } catch (FileNotFoundException ex) {
+                    throw ex;
+                } catch (IOException ex) {
+                    lastException = ex;
+                }
+            }
+        }
+        
+        throw lastException;
+    }
+    
+    private <T> T executeOn(StargateServiceEndpoint endpoint, EndpointCall<T> call) throws IOException {
+        try {
+            T result = call.call(endpoint.client);
+            endpoint.recordSuccess();
+            return result;
+        } catch (FileNotFoundException ex) {
+            endpoint.recordSuccess();
+            throw ex;
+        } catch (IOException ex) {
+            if(endpoint.recordFailure()) {
+                LOG.warn("taking endpoint out of rotation : " + endpoint.client.getServiceURI().toString(), ex);
+            } else {
+                LOG.debug("call failed at " + endpoint.client.getServiceURI().toString(), ex);
+            }
+            throw ex;
+        }
+    }
+    
+    public void close() {
+        for(StargateServiceEndpoint endpoint : this.endpoints) {
+            endpoint.client.disconnect();
+        }
+    }
+    
+    private class StargateServiceEndpoint {
+        
+        private HTTPUserInterfaceClient client;
+        private int consecutiveFailures;
+        private long retryTime;
+        private boolean probing;
+        
+        StargateServiceEndpoint(HTTPUserInterfaceClient client) {
+            this.client = client;
+        }
+        
+        /**
+         * Returns true if the circuit is closed. An open circuit past the
+         * retry time starts a background probe, which closes it if the
+         * endpoint is live.
+         */
+        boolean isAvailable() {
+            synchronized(this) {
+                if(this.consecutiveFailures < failureThreshold) {
+                    return true;
+                }
+                
+                if(this.probing || System.currentTimeMillis() < this.retryTime) {
+                    return false;
+                }
+                
+                // half-open, one probe at a time
+                this.probing = true;
+            }
+            
+            try {
+                UserInterfaceClientExecutor.getInstance().submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        probe();
+                        return Boolean.TRUE;
+                    }
+                });
+            } catch (RuntimeException ex) {
+                synchronized(this) {
+                    this.probing = false;
+                    this.retryTime = System.currentTimeMillis() + retryInterval;
+                }
+                LOG.debug("cannot probe endpoint : " + this.client.getServiceURI().toString(), ex);
+            }
+            return false;
+        }
+        
+        private void probe() {
+            boolean live = false;
+            try {
+                live = this.client.isLive();
+            } catch (IOException ex) {
+                LOG.debug("endpoint is not live : " + this.client.getServiceURI().toString(), ex);
+            } catch (RuntimeException ex) {
+                LOG.debug("endpoint is not live : " + this.client.getServiceURI().toString(), ex);
+            }
+            
+            synchronized(this) {
+                this.probing = false;
+                if(!live) {
+                    this.retryTime = System.currentTimeMillis() + retryInterval;
+                }
+            }
+            
+            if(live) {
+                recordSuccess();
+            }
+        }
+        
+        synchronized void recordSuccess() {
+            if(this.consecutiveFailures >= failureThreshold) {
+                LOG.info("endpoint is back : " + this.client.getServiceURI().toString());
+            }
+            this.consecutiveFailures = 0;
+        }
+        
+        /**
+         * Returns true if the failure takes the endpoint out of rotation.
+         */
+        synchronized boolean recordFailure() {
+            this.consecutiveFailures++;
+            if(this.consecutiveFailures >= failureThreshold) {
+                this.retryTime = System.currentTimeMillis() + retryInterval;
+            }
+            return this.consecutiveFailures == failureThreshold;
+        }
+    }
+}
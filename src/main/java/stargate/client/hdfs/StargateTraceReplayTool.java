@@ -0,0 +1,339 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Replays an access trace recorded by AccessTraceRecorder.
+ *
+ * Records are replayed one by one in the recorded order, so replays of a
+ * trace issue the same operations in the same order. Recorded paths are
+ * resolved under the target, e.g., a Stargate service run locally
+ * (sgfs://localhost:port) or a local copy of the data (file:///copy).
+ * Reads repeat until the recorded number of bytes is returned. Throughput,
+ * latency percentiles and bytes read are reported with the recorded
+ * latencies for comparison.
+ *
+ * @author iychoi
+ */
+public class StargateTraceReplayTool extends Configured implements Tool {
+
+    private static final Log LOG = LogFactory.getLog(StargateTraceReplayTool.class);
+    
+    private static final String[] TYPE_NAMES = {"", "open", "close", "seek", "read", "pread", "getFileStatus", "listStatus"};
+    
+    private boolean keepTiming = false;
+    
+    public StargateTraceReplayTool() {
+    }
+    
+    /**
+     * If set, waits between records as long as when they were recorded.
+     */
+    public void setKeepTiming(boolean keepTiming) {
+        this.keepTiming = keepTiming;
+    }
+    
+    public boolean isKeepTiming() {
+        return this.keepTiming;
+    }
+    
+    private static Path resolvePath(String target, String recordedPath) {
+        if(target.endsWith("/")) {
+            return new Path(target.substring(0, target.length() - 1) + recordedPath);
+        }
+        return new Path(target + recordedPath);
+    }
+    
+    public ReplayReport replay(String traceFile, String target) throws IOException {
+        if(traceFile == null || traceFile.isEmpty()) {
+            throw new IllegalArgumentException("traceFile is null or empty");
+        }
+        
+        if(target == null || target.isEmpty()) {
+            throw new IllegalArgumentException("target is null or empty");
+        }
+        
+        FileSystem fs = new Path(target).getFileSystem(getConf());
+        ReplayReport report = new ReplayReport();
+        Map<Integer, FSDataInputStream> streams = new HashMap<Integer, FSDataInputStream>();
+        byte[] buffer = new byte[64 * 1024];
+        
+        AccessTraceReader reader = new AccessTraceReader(new FileInputStream(traceFile));
+        long replayStart = System.nanoTime();
+        long firstRecordMicros = -1;
+        try {
+            AccessTraceReader.Record record;
+            while((record = reader.next()) != null) {
+                if(this.keepTiming) {
+                    if(firstRecordMicros < 0) {
+                        firstRecordMicros = record.getTimeMicros();
+                    }
+                    
+                    long waitMillis = (record.getTimeMicros() - firstRecordMicros) / 1000 - (System.nanoTime() - replayStart) / 1000000;
+                    if(waitMillis > 0) {
+                        try {
+                            Thread.sleep(waitMillis);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("interrupted while replaying", ex);
+                        }
+                    }
+                }
+                
+                int length = Math.max(record.getLength(), 0);
+                if(buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                
+                byte type = record.getType();
+                FSDataInputStream is = null;
+                if(type != AccessTraceRecorder.TYPE_OPEN && type != AccessTraceRecorder.TYPE_GET_FILE_STATUS && type != AccessTraceRecorder.TYPE_LIST_STATUS) {
+                    is = streams.get(record.getStreamID());
+                    if(is == null) {
+                        // opening the stream failed
+                        report.addError(type);
+                        continue;
+                    }
+                }
+                
+                long start = System.nanoTime();
+                try {
+                    switch (type) {
+                        case AccessTraceRecorder.TYPE_OPEN:
+                            streams.put(record.getStreamID(), fs.open(resolvePath(target, record.getPath())));
+                            break;
+                        case AccessTraceRecorder.TYPE_CLOSE:
+                            streams.remove(record.getStreamID());
+                            is.close();
+                            break;
+                        case AccessTraceRecorder.TYPE_SEEK:
+                            is.seek(record.getOffset());
+                            break;
+                        case AccessTraceRecorder.TYPE_READ:
+                            report.addBytes(readStream(is, buffer, length, record.getReturned()));
+                            break;
+                        case AccessTraceRecorder.TYPE_PREAD:
+                            report.addBytes(preadStream(is, record.getOffset(), buffer, length, record.getReturned()));
+                            break;
+                        case AccessTraceRecorder.TYPE_GET_FILE_STATUS:
+                            fs.getFileStatus(resolvePath(target, record.getPath()));
+                            break;
+                        case AccessTraceRecorder.TYPE_LIST_STATUS:
+                            fs.listStatus(resolvePath(target, record.getPath()));
+                            break;
+                        default:
+                            break;
+                    }
+                    report.addLatency(type, (System.nanoTime() - start) / 1000, record.getDurationMicros());
+                } catch (IOException ex) {
+                    LOG.debug("replaying a record failed", ex);
+                    report.addError(type);
+                }
+            }
+        } finally {
+            report.setElapsedNanos(System.nanoTime() - replayStart);
+            
+            for(FSDataInputStream is : streams.values()) {
+                IOUtils.closeStream(is);
+            }
+            reader.close();
+        }
+        return report;
+    }
+    
+    private static long readStream(FSDataInputStream is, byte[] buffer, int length, int recordedReturned) throws IOException {
+        if(recordedReturned <= 0) {
+            int read = is.read(buffer, 0, length);
+            return Math.max(read, 0);
+        }
+        
+        int total = 0;
+        while(total < recordedReturned) {
+            int read = is.read(buffer, total, length - total);
+            if(read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+    
+    private static long preadStream(FSDataInputStream is, long offset, byte[] buffer, int length, int recordedReturned) throws IOException {
+        if(recordedReturned <= 0) {
+            int read = is.read(offset, buffer, 0, length);
+            return Math.max(read, 0);
+        }
+        
+        int total = 0;
+        while(total < recordedReturned) {
+            int read = is.read(offset + total, buffer, total, length - total);
+            if(read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+    
+    @Override
+    public int run(String[] args) throws Exception {
+        String traceFile = null;
+        String target = null;
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-timing")) {
+                setKeepTiming(true);
+            } else if(traceFile == null) {
+                traceFile = args[i];
+            } else if(target == null) {
+                target = args[i];
+            } else {
+                traceFile = null;
+                break;
+            }
+        }
+        
+        if(traceFile == null || target == null) {
+            System.err.println("Usage: StargateTraceReplayTool [-timing] <trace file> <target, e.g., sgfs://localhost:port>");
+            ToolRunner.printGenericCommandUsage(System.err);
+            return 1;
+        }
+        
+        ReplayReport report = replay(traceFile, target);
+        report.print(System.out);
+        return 0;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new Configuration(), new StargateTraceReplayTool(), args);
+        System.exit(exitCode);
+    }
+    
+    public static class ReplayReport {
+        
+        private LatencyList[] latencies = new LatencyList[TYPE_NAMES.length];
+        private LatencyList[] recordedLatencies = new LatencyList[TYPE_NAMES.length];
+        private long[] errors = new long[TYPE_NAMES.length];
+        private long bytesRead = 0;
+        private long elapsedNanos = 0;
+        
+        ReplayReport() {
+            for(int i = 0; i < TYPE_NAMES.length; i++) {
+                this.latencies[i] = new LatencyList();
+                this.recordedLatencies[i] = new LatencyList();
+            }
+        }
+        
+        void addLatency(byte type, long micros, long recordedMicros) {
+            this.latencies[type].add(micros);
+            this.recordedLatencies[type].add(recordedMicros);
+        }
+        
+        void addError(byte type) {
+            this.errors[type]++;
+        }
+        
+        void addBytes(long bytes) {
+            this.bytesRead += bytes;
+        }
+        
+        void setElapsedNanos(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public long getBytesRead() {
+            return this.bytesRead;
+        }
+        
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+        
+        /**
+         * Returns bytes read per second.
+         */
+        public double getThroughput() {
+            if(this.elapsedNanos <= 0) {
+                return 0;
+            }
+            return this.bytesRead * 1000000000.0 / this.elapsedNanos;
+        }
+        
+        public void print(PrintStream out) {
+            out.println(String.format("elapsed : %d ms, bytes read : %d, throughput : %.2f MB/s", this.elapsedNanos / 1000000, this.bytesRead, getThroughput() / (1024 * 1024)));
+            out.println(String.format("%-14s %10s %8s %10s %10s %10s %10s %14s %14s", "op", "count", "errors", "p50(us)", "p90(us)", "p99(us)", "max(us)", "rec.p50(us)", "rec.p99(us)"));
+            for(int i = 1; i < TYPE_NAMES.length; i++) {
+                LatencyList list = this.latencies[i];
+                if(list.size() == 0 && this.errors[i] == 0) {
+                    continue;
+                }
+                
+                LatencyList recorded = this.recordedLatencies[i];
+                out.println(String.format("%-14s %10d %8d %10d %10d %10d %10d %14d %14d", TYPE_NAMES[i], list.size(), this.errors[i], list.percentile(50), list.percentile(90), list.percentile(99), list.percentile(100), recorded.percentile(50), recorded.percentile(99)));
+            }
+        }
+    }
+    
+    private static class LatencyList {
+        
+        private long[] values = new long[1024];
+        private int size = 0;
+        private boolean sorted = true;
+        
+        void add(long value) {
+            if(this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.values.length * 2);
+            }
+            this.values[this.size++] = value;
+            this.sorted = false;
+        }
+        
+        int size() {
+            return this.size;
+        }
+        
+        long percentile(int percent) {
+            if(this.size == 0) {
+                return 0;
+            }
+            
+            if(!this.sorted) {
+                Arrays.sort(this.values, 0, this.size);
+                this.sorted = true;
+            }
+            
+            // nearest rank
+            int rank = (int) Math.ceil(percent / 100.0 * this.size);
+            return this.values[Math.max(rank, 1) - 1];
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.client.hdfs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import stargate.drivers.userinterface.http.ChunkHashVerifier;
+
+/**
+ * Benchmarks the overhead of chunk hash verification on reads.
+ *
+ * Chunks are read in buffer-sized reads, as HTTPChunkInputStream reads
+ * chunk streams, without verification, with hashing inline in the reader
+ * and with ChunkHashVerifier. Chunk data comes from memory, optionally
+ * paced to a bandwidth to emulate a network transfer. Throughput of each
+ * mode is reported with the overhead over no verification.
+ *
+ * @author iychoi
+ */
+public class StargateVerificationBenchmarkTool extends Configured implements Tool {
+
+    private static final String[] MODE_NAMES = {"none", "inline", "pipelined"};
+    private static final int MODE_NONE = 0;
+    private static final int MODE_INLINE = 1;
+    private static final int MODE_PIPELINED = 2;
+    
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int DEFAULT_CHUNK_COUNT = 32;
+    private static final int DEFAULT_READ_SIZE = 64 * 1024;
+    private static final String DEFAULT_HASH_ALGORITHM = "SHA-1";
+    
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int chunkCount = DEFAULT_CHUNK_COUNT;
+    private int readSize = DEFAULT_READ_SIZE;
+    private String hashAlgorithm = DEFAULT_HASH_ALGORITHM;
+    // bytes per second, 0 for unlimited
+    private long bandwidth = 0;
+    
+    public StargateVerificationBenchmarkTool() {
+    }
+    
+    public void setChunkSize(int chunkSize) {
+        if(chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize is not positive");
+        }
+        
+        this.chunkSize = chunkSize;
+    }
+    
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+    
+    public void setChunkCount(int chunkCount) {
+        if(chunkCount <= 0) {
+            throw new IllegalArgumentException("chunkCount is not positive");
+        }
+        
+        this.chunkCount = chunkCount;
+    }
+    
+    public int getChunkCount() {
+        return this.chunkCount;
+    }
+    
+    public void setReadSize(int readSize) {
+        if(readSize <= 0) {
+            throw new IllegalArgumentException("readSize is not positive");
+        }
+        
+        this.readSize = readSize;
+    }
+    
+    public int getReadSize() {
+        return this.readSize;
+    }
+    
+    public void setHashAlgorithm(String hashAlgorithm) {
+        if(!ChunkHashVerifier.isSupported(hashAlgorithm)) {
+            throw new IllegalArgumentException("hashAlgorithm is not supported : " + hashAlgorithm);
+        }
+        
+        this.hashAlgorithm = hashAlgorithm;
+    }
+    
+    public String getHashAlgorithm() {
+        return this.hashAlgorithm;
+    }
+    
+    /**
+     * Paces reads in bytes per second. 0 means unlimited.
+     */
+    public void setBandwidth(long bandwidth) {
+        if(bandwidth < 0) {
+            throw new IllegalArgumentException("bandwidth is negative");
+        }
+        
+        this.bandwidth = bandwidth;
+    }
+    
+    public long getBandwidth() {
+        return this.bandwidth;
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+    
+    public BenchmarkReport benchmark() throws IOException {
+        byte[] chunk = new byte[this.chunkSize];
+        new Random(0).nextBytes(chunk);
+        
+        String hash;
+        try {
+            hash = toHex(MessageDigest.getInstance(this.hashAlgorithm).digest(chunk));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        
+        byte[] buffer = new byte[this.readSize];
+        BenchmarkReport report = new BenchmarkReport((long) this.chunkSize * this.chunkCount, this.bandwidth);
+        for(int mode = 0; mode < MODE_NAMES.length; mode++) {
+            // warm up
+            readChunks(mode, chunk, hash, buffer, 1);
+            
+            long start = System.nanoTime();
+            readChunks(mode, chunk, hash, buffer, this.chunkCount);
+            report.setElapsedNanos(mode, System.nanoTime() - start);
+        }
+        return report;
+    }
+    
+    private void readChunks(int mode, byte[] chunk, String hash, byte[] buffer, int count) throws IOException {
+        long startTime = System.nanoTime();
+        long bytesRead = 0;
+        for(int i = 0; i < count; i++) {
+            MessageDigest md = null;
+            ChunkHashVerifier verifier = null;
+            if(mode == MODE_INLINE) {
+                try {
+                    md = MessageDigest.getInstance(this.hashAlgorithm);
+                } catch (NoSuchAlgorithmException ex) {
+                    throw new IOException(ex);
+                }
+            } else if(mode == MODE_PIPELINED) {
+                verifier = new ChunkHashVerifier(this.hashAlgorithm, hash);
+            }
+            
+            int pos = 0;
+            while(pos < chunk.length) {
+                int read = Math.min(buffer.length, chunk.length - pos);
+                System.arraycopy(chunk, pos, buffer, 0, read);
+                pos += read;
+                
+                bytesRead += read;
+                if(this.bandwidth > 0) {
+                    pace(startTime, bytesRead);
+                }
+                
+                if(md != null) {
+                    md.update(buffer, 0, read);
+                } else if(verifier != null) {
+                    if(pos < chunk.length) {
+                        verifier.update(buffer, 0, read);
+                    } else if(!verifier.verify(buffer, 0, read)) {
+                        throw new IOException("chunk does not match its hash");
+                    }
+                }
+            }
+            
+            if(md != null && !hash.equals(toHex(md.digest()))) {
+                throw new IOException("chunk does not match its hash");
+            }
+        }
+    }
+    
+    private void pace(long startTime, long bytesRead) throws IOException {
+        long dueNanos = bytesRead * 1000000000L / this.bandwidth;
+        long waitMillis = (dueNanos - (System.nanoTime() - startTime)) / 1000000;
+        if(waitMillis > 0) {
+            try {
+                Thread.sleep(waitMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while pacing");
+            }
+        }
+    }
+    
+    @Override
+    public int run(String[] args) throws Exception {
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("-size") && i + 1 < args.length) {
+                    setChunkSize(Integer.parseInt(args[++i]));
+                } else if(args[i].equals("-chunks") && i + 1 < args.length) {
+                    setChunkCount(Integer.parseInt(args[++i]));
+                } else if(args[i].equals("-read") && i + 1 < args.length) {
+                    setReadSize(Integer.parseInt(args[++i]));
+                } else if(args[i].equals("-algorithm") && i + 1 < args.length) {
+                    setHashAlgorithm(args[++i]);
+                } else if(args[i].equals("-bandwidth") && i + 1 < args.length) {
+                    setBandwidth(Long.parseLong(args[++i]));
+                } else {
+                    throw new IllegalArgumentException("unknown argument : " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: StargateVerificationBenchmarkTool [-size <chunk bytes>] [-chunks <n>] [-read <read bytes>] [-algorithm <hash>] [-bandwidth <bytes/sec>]");
+            ToolRunner.printGenericCommandUsage(System.err);
+            return 1;
+        }
+        
+        BenchmarkReport report = benchmark();
+        report.print(System.out);
+        return 0;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new Configuration(), new StargateVerificationBenchmarkTool(), args);
+        System.exit(exitCode);
+    }
+    
+    public static class BenchmarkReport {
+        
+        private long bytes;
+        private long bandwidth;
+        private long[] elapsedNanos = new long[MODE_NAMES.length];
+        
+        BenchmarkReport(long bytes, long bandwidth) {
+            this.bytes = bytes;
+            this.bandwidth = bandwidth;
+        }
+        
+        void setElapsedNanos(int mode, long elapsedNanos) {
+            this.elapsedNanos[mode] = elapsedNanos;
+        }
+        
+        /**
+         * Returns bytes read per second in the mode.
+         */
+        public double getThroughput(int mode) {
+            if(this.elapsedNanos[mode] <= 0) {
+                return 0;
+            }
+            return this.bytes * 1000000000.0 / this.elapsedNanos[mode];
+        }
+        
+        public void print(PrintStream out) {
+            String source = this.bandwidth > 0 ? String.format("%.2f MB/s", this.bandwidth / (1024.0 * 1024)) : "unlimited";
+            out.println(String.format("bytes : %d, source : %s", this.bytes, source));
+            out.println(String.format("%-10s %16s %10s", "mode", "throughput(MB/s)", "overhead"));
+            
+            double baseline = getThroughput(MODE_NONE);
+            for(int mode = 0; mode < MODE_NAMES.length; mode++) {
+                double throughput = getThroughput(mode);
+                String overhead = throughput > 0 ? String.format("%.1f%%", (baseline / throughput - 1) * 100) : "-";
+                out.println(String.format("%-10s %16.2f %10s", MODE_NAMES[mode], throughput / (1024 * 1024), overhead));
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.util.StringUtils.TraditionalBinaryPrefix;
+
+/**
+ * JVM-wide bandwidth limits on chunk data read over REST.
+ *
+ * Limits are token buckets per cluster and per stream class. A read takes
+ * tokens from the bucket of the cluster of the file and from the bucket of
+ * the class of the stream. Streams share a bucket in proportion to the
+ * weights of their classes. Reads of cache files are not limited.
+ *
+ * @author iychoi
+ */
+public class BandwidthShaper {
+
+    public static final String DEFAULT_STREAM_CLASS = "default";
+    // limit for each remote cluster not listed
+    public static final String ANY_REMOTE_CLUSTER = "*";
+    public static final int DEFAULT_BURST_MILLIS = 1000;
+    public static final int DEFAULT_WEIGHT = 1;
+    
+    private static final BandwidthShaper INSTANCE = new BandwidthShaper();
+    
+    private volatile boolean enabled = false;
+    private String configuration = "";
+    private int burstMillis = DEFAULT_BURST_MILLIS;
+    private Map<String, Long> clusterLimits = new HashMap<String, Long>();
+    private Map<String, Long> classLimits = new HashMap<String, Long>();
+    private Map<String, Integer> classWeights = new HashMap<String, Integer>();
+    private Map<String, TokenBucket> clusterBuckets = new HashMap<String, TokenBucket>();
+    private Map<String, TokenBucket> classBuckets = new HashMap<String, TokenBucket>();
+    
+    public static BandwidthShaper getInstance() {
+        return INSTANCE;
+    }
+    
+    BandwidthShaper() {
+    }
+    
+    /**
+     * Limits are comma separated lists of "name=bytes per second", e.g.,
+     * "clusterA=100m,*=50m". Weights are lists of "class=weight", e.g.,
+     * "interactive=4,bulk=1". Classes not listed have weight 1.
+     */
+    public synchronized void configure(String clusterLimits, String classLimits, String classWeights, int burstMillis) {
+        if(burstMillis <= 0) {
+            throw new IllegalArgumentException("burstMillis is not positive");
+        }
+        
+        // every file system instance configures, keep buckets if nothing changed
+        String newConfiguration = String.format("%s|%s|%s|%d", clusterLimits, classLimits, classWeights, burstMillis);
+        if(newConfiguration.equals(this.configuration)) {
+            return;
+        }
+        
+        Map<String, Long> newClusterLimits = parseLimits(clusterLimits);
+        Map<String, Long> newClassLimits = parseLimits(classLimits);
+        Map<String, Integer> newClassWeights = new HashMap<String, Integer>();
+        for(Map.Entry<String, Long> entry : parsePairs(classWeights).entrySet()) {
+            long weight = entry.getValue();
+            if(weight <= 0 || weight > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("weight is out of range : " + entry.getKey());
+            }
+            newClassWeights.put(entry.getKey(), (int) weight);
+        }
+        
+        // buckets are rebuilt, streams pick them up on their next read
+        this.configuration = newConfiguration;
+        this.burstMillis = burstMillis;
+        this.clusterLimits = newClusterLimits;
+        this.classLimits = newClassLimits;
+        this.classWeights = newClassWeights;
+        this.clusterBuckets = new HashMap<String, TokenBucket>();
+        this.classBuckets = new HashMap<String, TokenBucket>();
+        this.enabled = !newClusterLimits.isEmpty() || !newClassLimits.isEmpty();
+    }
+    
+    private static Map<String, Long> parsePairs(String pairs) {
+        Map<String, Long> map = new HashMap<String, Long>();
+        if(pairs == null || pairs.trim().isEmpty()) {
+            return map;
+        }
+        
+        for(String pair : pairs.split(",")) {
+            String[] kv = pair.split("=");
+            if(kv.length != 2 || kv[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("malformed pair : " + pair);
+            }
+            
+            long value;
+            try {
+                value = TraditionalBinaryPrefix.string2long(kv[1].trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("malformed value : " + pair);
+            }
+            map.put(kv[0].trim(), value);
+        }
+        return map;
+    }
+    
+    private static Map<String, Long> parseLimits(String limits) {
+        Map<String, Long> map = parsePairs(limits);
+        for(Map.Entry<String, Long> entry : map.entrySet()) {
+            if(entry.getValue() <= 0) {
+                throw new IllegalArgumentException("limit is not positive : " + entry.getKey());
+            }
+        }
+        return map;
+    }
+    
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+    
+    public synchronized int getWeight(String streamClass) {
+        Integer weight = this.classWeights.get(streamClass);
+        if(weight == null) {
+            return DEFAULT_WEIGHT;
+        }
+        return weight;
+    }
+    
+    private TokenBucket makeBucket(String name, long rate) {
+        long capacity = Math.max(1, rate * this.burstMillis / 1000);
+        return new TokenBucket(name, rate, capacity);
+    }
+    
+    private synchronized TokenBucket getClusterBucket(String clusterName, boolean remote) {
+        TokenBucket bucket = this.clusterBuckets.get(clusterName);
+        if(bucket != null) {
+            return bucket;
+        }
+        
+        Long limit = this.clusterLimits.get(clusterName);
+        if(limit == null && remote) {
+            limit = this.clusterLimits.get(ANY_REMOTE_CLUSTER);
+        }
+        
+        if(limit == null) {
+            return null;
+        }
+        
+        bucket = makeBucket("cluster:" + clusterName, limit);
+        this.clusterBuckets.put(clusterName, bucket);
+        return bucket;
+    }
+    
+    private synchronized TokenBucket getClassBucket(String streamClass) {
+        TokenBucket bucket = this.classBuckets.get(streamClass);
+        if(bucket != null) {
+            return bucket;
+        }
+        
+        Long limit = this.classLimits.get(streamClass);
+        if(limit == null) {
+            return null;
+        }
+        
+        bucket = makeBucket("class:" + streamClass, limit);
+        this.classBuckets.put(streamClass, bucket);
+        return bucket;
+    }
+    
+    public StreamState newStream(String streamClass) {
+        if(streamClass == null || streamClass.isEmpty()) {
+            streamClass = DEFAULT_STREAM_CLASS;
+        }
+        
+        return new StreamState(streamClass, getWeight(streamClass));
+    }
+    
+    /**
+     * Takes bandwidth for bytes read from the cluster. Returns nanoseconds
+     * waited.
+     */
+    public long acquire(StreamState stream, String clusterName, boolean remote, int bytes) throws InterruptedIOException {
+        if(stream == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+        
+        if(!this.enabled || bytes <= 0) {
+            return 0;
+        }
+        
+        long waited = 0;
+        if(clusterName != null) {
+            TokenBucket clusterBucket = getClusterBucket(clusterName, remote);
+            if(clusterBucket != null) {
+                waited += clusterBucket.acquire(stream, bytes);
+            }
+        }
+        
+        TokenBucket classBucket = getClassBucket(stream.getStreamClass());
+        if(classBucket != null) {
+            waited += classBucket.acquire(stream, bytes);
+        }
+        return waited;
+    }
+    
+    /**
+     * Returns buckets in use, for metrics.
+     */
+    public synchronized List<TokenBucket> getBuckets() {
+        List<TokenBucket> buckets = new ArrayList<TokenBucket>();
+        buckets.addAll(this.clusterBuckets.values());
+        buckets.addAll(this.classBuckets.values());
+        return Collections.unmodifiableList(buckets);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(TokenBucket bucket : getBuckets()) {
+            if(sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(bucket.toString());
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Per-stream state of fair queuing. Used by one reader at a time.
+     */
+    public static class StreamState {
+        
+        private String streamClass;
+        private int weight;
+        private Map<TokenBucket, Double> finishTags = new IdentityHashMap<TokenBucket, Double>();
+        
+        StreamState(String streamClass, int weight) {
+            this.streamClass = streamClass;
+            this.weight = weight;
+        }
+        
+        public String getStreamClass() {
+            return this.streamClass;
+        }
+        
+        public int getWeight() {
+            return this.weight;
+        }
+        
+        double getFinishTag(TokenBucket bucket) {
+            Double tag = this.finishTags.get(bucket);
+            if(tag == null) {
+                return 0;
+            }
+            return tag;
+        }
+        
+        void setFinishTag(TokenBucket bucket, double tag) {
+            this.finishTags.put(bucket, tag);
+        }
+    }
+}
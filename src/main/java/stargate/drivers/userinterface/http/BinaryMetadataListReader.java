@@ -0,0 +1,79 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import stargate.commons.dataobject.DataObjectMetadata;
+
+/**
+ * Decodes a binary metadata listing entry by entry, without holding the
+ * whole response in memory.
+ *
+ * @author iychoi
+ */
+public class BinaryMetadataListReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private DataInputStream in;
+    private List<String> stringTable = new ArrayList<String>();
+    private StringBuilder prevPath = new StringBuilder();
+    private boolean headerRead = false;
+    private boolean eof = false;
+    
+    public BinaryMetadataListReader(InputStream is) {
+        if(is == null) {
+            throw new IllegalArgumentException("is is null");
+        }
+        
+        this.in = new DataInputStream(new BufferedInputStream(is, BUFFER_SIZE));
+    }
+    
+    /**
+     * Returns the next entry, or null at the end of the listing.
+     */
+    public DataObjectMetadata next() throws IOException {
+        if(this.eof) {
+            return null;
+        }
+        
+        if(!this.headerRead) {
+            BinaryWireFormat.readHeader(this.in, BinaryWireFormat.METADATA_LIST_MAGIC);
+            this.headerRead = true;
+        }
+        
+        byte tag = this.in.readByte();
+        if(tag == BinaryWireFormat.TAG_END) {
+            this.eof = true;
+            return null;
+        } else if(tag != BinaryWireFormat.TAG_ENTRY) {
+            throw new IOException("unexpected tag : " + tag);
+        }
+        
+        return BinaryWireFormat.readMetadata(this.in, this.stringTable, this.prevPath);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import stargate.commons.dataobject.DataObjectMetadata;
+import stargate.commons.dataobject.DataObjectURI;
+
+/**
+ * Compact binary encoding of metadata listings and recipes.
+ *
+ * Metadata list:
+ *   magic(int) version(byte) { TAG_ENTRY entry }* TAG_END
+ * Entry:
+ *   cluster(string ref) path(prefix length varint, suffix utf)
+ *   size(varlong) directory(byte) lastModifiedTime(varlong)
+ * Recipe:
+ *   magic(int) version(byte) entry hashAlgorithm(utf) chunkSize(varint)
+ *   nodeCount(varint) nodeName(utf)* chunkCount(varint)
+ *   { offsetGap(varlong) length(varint) hash(utf) nodeCount(varint) nodeIndex(varint)* }*
+ *
+ * String refs are 0 followed by a new utf string, or the 1-based index of
+ * a string seen before in the same stream.
+ *
+ * @author iychoi
+ */
+public class BinaryWireFormat {
+
+    public static final String CONTENT_TYPE = "application/x-stargate-binary";
+    
+    public static final int METADATA_LIST_MAGIC = 0x53474d4c; // SGML
+    public static final int RECIPE_MAGIC = 0x53475243; // SGRC
+    public static final byte VERSION = 1;
+    
+    public static final byte TAG_END = 0;
+    public static final byte TAG_ENTRY = 1;
+    
+    private BinaryWireFormat() {
+    }
+    
+    public static void readHeader(DataInput in, int expectedMagic) throws IOException {
+        int magic = in.readInt();
+        if(magic != expectedMagic) {
+            throw new IOException(String.format("unexpected magic number : %x", magic));
+        }
+        
+        byte version = in.readByte();
+        if(version != VERSION) {
+            throw new IOException("unsupported version : " + version);
+        }
+    }
+    
+    public static void writeHeader(DataOutput out, int magic) throws IOException {
+        out.writeInt(magic);
+        out.writeByte(VERSION);
+    }
+    
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while(true) {
+            byte b = in.readByte();
+            value |= ((long) (b & 0x7f)) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+            
+            shift += 7;
+            if(shift > 63) {
+                throw new IOException("malformed varlong");
+            }
+        }
+    }
+    
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        if(value < 0) {
+            throw new IllegalArgumentException("value is negative");
+        }
+        
+        while((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    public static int readVarInt(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if(value > Integer.MAX_VALUE) {
+            throw new IOException("varint overflow");
+        }
+        return (int) value;
+    }
+    
+    public static String readStringRef(DataInput in, List<String> stringTable) throws IOException {
+        int ref = readVarInt(in);
+        if(ref == 0) {
+            String str = in.readUTF();
+            stringTable.add(str);
+            return str;
+        }
+        
+        if(ref > stringTable.size()) {
+            throw new IOException("invalid string reference : " + ref);
+        }
+        return stringTable.get(ref - 1);
+    }
+    
+    public static void writeStringRef(DataOutput out, String str, List<String> stringTable) throws IOException {
+        int idx = stringTable.indexOf(str);
+        if(idx >= 0) {
+            writeVarLong(out, idx + 1);
+        } else {
+            writeVarLong(out, 0);
+            out.writeUTF(str);
+            stringTable.add(str);
+        }
+    }
+    
+    /**
+     * Reads a metadata entry. prevPath holds the path of the previous entry
+     * and is updated.
+     */
+    public static DataObjectMetadata readMetadata(DataInput in, List<String> stringTable, StringBuilder prevPath) throws IOException {
+        String clusterName = readStringRef(in, stringTable);
+        
+        int prefixLength = readVarInt(in);
+        if(prefixLength > prevPath.length()) {
+            throw new IOException("invalid path prefix length : " + prefixLength);
+        }
+        String suffix = in.readUTF();
+        prevPath.setLength(prefixLength);
+        prevPath.append(suffix);
+        String path = prevPath.toString();
+        
+        long size = readVarLong(in);
+        boolean directory = in.readByte() != 0;
+        long lastModifiedTime = readVarLong(in);
+        
+        return new DataObjectMetadata(new DataObjectURI(clusterName, path), size, directory, lastModifiedTime);
+    }
+    
+    public static void writeMetadata(DataOutput out, DataObjectMetadata metadata, List<String> stringTable, StringBuilder prevPath) throws IOException {
+        DataObjectURI uri = metadata.getURI();
+        writeStringRef(out, uri.getClusterName(), stringTable);
+        
+        String path = uri.getPath();
+        int prefixLength = 0;
+        int max = Math.min(path.length(), prevPath.length());
+        while(prefixLength < max && path.charAt(prefixLength) == prevPath.charAt(prefixLength)) {
+            prefixLength++;
+        }
+        writeVarLong(out, prefixLength);
+        out.writeUTF(path.substring(prefixLength));
+        prevPath.setLength(0);
+        prevPath.append(path);
+        
+        writeVarLong(out, metadata.getSize());
+        out.writeByte(metadata.isDirectory() ? 1 : 0);
+        writeVarLong(out, metadata.getLastModifiedTime());
+    }
+    
+    public static CompactRecipe readCompactRecipe(DataInput in) throws IOException {
+        readHeader(in, RECIPE_MAGIC);
+        
+        List<String> stringTable = new ArrayList<String>();
+        DataObjectMetadata metadata = readMetadata(in, stringTable, new StringBuilder());
+        String hashAlgorithm = in.readUTF();
+        int chunkSize = readVarInt(in);
+        
+        int nodeCount = readVarInt(in);
+        String[] nodeNames = new String[nodeCount];
+        for(int i = 0; i < nodeCount; i++) {
+            nodeNames[i] = in.readUTF();
+        }
+        
+        int chunkCount = readVarInt(in);
+        long[] chunkOffsets = new long[chunkCount];
+        int[] chunkLengths = new int[chunkCount];
+        String[] chunkHashes = new String[chunkCount];
+        int[][] chunkNodeIDs = new int[chunkCount][];
+        
+        long offset = 0;
+        for(int i = 0; i < chunkCount; i++) {
+            // offsets are delta-encoded from the end of the previous chunk
+            offset += readVarLong(in);
+            chunkOffsets[i] = offset;
+            chunkLengths[i] = readVarInt(in);
+            chunkHashes[i] = in.readUTF();
+            offset += chunkLengths[i];
+            
+            int chunkNodeCount = readVarInt(in);
+            if(chunkNodeCount > nodeCount) {
+                throw new IOException("invalid node count : " + chunkNodeCount);
+            }
+            
+            int[] nodeIDs = new int[chunkNodeCount];
+            for(int j = 0; j < chunkNodeCount; j++) {
+                nodeIDs[j] = readVarInt(in);
+                if(nodeIDs[j] >= nodeCount) {
+                    throw new IOException("invalid node index : " + nodeIDs[j]);
+                }
+            }
+            chunkNodeIDs[i] = nodeIDs;
+        }
+        
+        return new CompactRecipe(metadata, hashAlgorithm, chunkSize, nodeNames, chunkOffsets, chunkLengths, chunkHashes, chunkNodeIDs);
+    }
+}
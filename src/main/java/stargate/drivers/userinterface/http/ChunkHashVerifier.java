@@ -0,0 +1,296 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies a chunk against its hash while the chunk streams in.
+ *
+ * The reader copies the bytes it reads into fixed-size blocks, and full
+ * blocks are digested on a small shared pool of hashing threads, so the
+ * reader only waits for the digest at the end of the chunk. A chunk has
+ * a few blocks in flight at most, which throttles the reader if hashing
+ * falls behind. Blocks are reused across chunks.
+ *
+ * The last bytes of a chunk can be given to verify() instead of update(),
+ * so they are checked before the reader returns them. The digest of the
+ * bytes before them is then kept (getPrefixDigest()), to tell whether
+ * bytes already returned match a copy of the chunk from another replica.
+ *
+ * @author iychoi
+ */
+public class ChunkHashVerifier {
+
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final int MAX_BLOCKS_PER_CHUNK = 4;
+    private static final int MAX_POOLED_BLOCKS = 64;
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final long THREAD_KEEP_ALIVE_SEC = 60;
+    
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        
+        private AtomicInteger threadNumber = new AtomicInteger(1);
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "sgfs-verify-" + this.threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    
+    private static final BlockingQueue<Block> FREE_BLOCKS = new ArrayBlockingQueue<Block>(MAX_POOLED_BLOCKS);
+    
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+    
+    private MessageDigest md;
+    private String expectedHash;
+    // block being filled by the reader
+    private Block block;
+    private LinkedList<Block> filledBlocks = new LinkedList<Block>();
+    private int blocksInUse = 0;
+    private boolean draining = false;
+    private volatile boolean aborted = false;
+    private boolean finished = false;
+    private byte[] prefixDigest;
+    private Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    
+    /**
+     * Returns true if the hash algorithm is supported by this JVM.
+     */
+    public static boolean isSupported(String hashAlgorithm) {
+        if(hashAlgorithm == null || hashAlgorithm.isEmpty()) {
+            return false;
+        }
+        
+        try {
+            MessageDigest.getInstance(hashAlgorithm);
+            return true;
+        } catch (NoSuchAlgorithmException ex) {
+            return false;
+        }
+    }
+    
+    public ChunkHashVerifier(String hashAlgorithm, String expectedHash) throws IOException {
+        if(hashAlgorithm == null || hashAlgorithm.isEmpty()) {
+            throw new IllegalArgumentException("hashAlgorithm is null or empty");
+        }
+        
+        if(expectedHash == null || expectedHash.isEmpty()) {
+            throw new IllegalArgumentException("expectedHash is null or empty");
+        }
+        
+        try {
+            this.md = MessageDigest.getInstance(hashAlgorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        
+        this.expectedHash = expectedHash;
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+    
+    public void update(byte[] bytes, int off, int len) throws IOException {
+        if(this.finished || len <= 0) {
+            return;
+        }
+        
+        while(len > 0) {
+            if(this.block == null) {
+                this.block = acquireBlock();
+            }
+            
+            int n = Math.min(len, BLOCK_SIZE - this.block.length);
+            System.arraycopy(bytes, off, this.block.data, this.block.length, n);
+            this.block.length += n;
+            off += n;
+            len -= n;
+            
+            if(this.block.length == BLOCK_SIZE) {
+                submitBlock(this.block);
+                this.block = null;
+            }
+        }
+    }
+    
+    private Block acquireBlock() throws IOException {
+        synchronized(this) {
+            try {
+                while(this.blocksInUse >= MAX_BLOCKS_PER_CHUNK) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                abort();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while verifying a chunk");
+            }
+            this.blocksInUse++;
+        }
+        
+        Block block = FREE_BLOCKS.poll();
+        if(block == null) {
+            block = new Block();
+        }
+        block.length = 0;
+        return block;
+    }
+    
+    private void releaseBlock(Block block) {
+        synchronized(this) {
+            this.blocksInUse--;
+            notifyAll();
+        }
+        FREE_BLOCKS.offer(block);
+    }
+    
+    private synchronized void submitBlock(Block block) {
+        this.filledBlocks.add(block);
+        if(!this.draining) {
+            this.draining = true;
+            EXECUTOR.execute(this.drainTask);
+        }
+    }
+    
+    /**
+     * Digests filled blocks in order. Runs on the hashing threads, one
+     * task per chunk at a time, and never waits for the reader.
+     */
+    private void drain() {
+        while(true) {
+            Block block;
+            synchronized(this) {
+                block = this.filledBlocks.poll();
+                if(block == null) {
+                    this.draining = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            
+            if(!this.aborted) {
+                this.md.update(block.data, 0, block.length);
+            }
+            releaseBlock(block);
+        }
+    }
+    
+    private void awaitDrained() throws IOException {
+        synchronized(this) {
+            try {
+                while(this.draining) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                abort();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while verifying a chunk");
+            }
+        }
+    }
+    
+    /**
+     * Waits for the digest of all bytes given and compares it with the
+     * expected hash.
+     */
+    public boolean verify() throws IOException {
+        return verify(null, 0, 0);
+    }
+    
+    /**
+     * Digests the last bytes of the chunk, not given to update(), and
+     * compares the digest of all bytes with the expected hash.
+     */
+    public boolean verify(byte[] lastBytes, int off, int len) throws IOException {
+        if(this.finished) {
+            throw new IllegalStateException("verifier is already finished");
+        }
+        
+        if(this.block != null) {
+            submitBlock(this.block);
+            this.block = null;
+        }
+        
+        awaitDrained();
+        this.finished = true;
+        
+        if(lastBytes != null && len > 0) {
+            try {
+                this.prefixDigest = ((MessageDigest) this.md.clone()).digest();
+            } catch (CloneNotSupportedException ex) {
+                this.prefixDigest = null;
+            }
+            this.md.update(lastBytes, off, len);
+        }
+        
+        return this.expectedHash.equalsIgnoreCase(toHex(this.md.digest()));
+    }
+    
+    /**
+     * Returns the digest of the bytes given before the last bytes passed to
+     * verify(), or null if not known.
+     */
+    public byte[] getPrefixDigest() {
+        return this.prefixDigest;
+    }
+    
+    /**
+     * Stops hashing, e.g., when part of the chunk is skipped.
+     */
+    public void abort() {
+        if(this.finished) {
+            return;
+        }
+        
+        this.finished = true;
+        this.aborted = true;
+        if(this.block != null) {
+            releaseBlock(this.block);
+            this.block = null;
+        }
+    }
+    
+    private static class Block {
+        
+        private byte[] data = new byte[BLOCK_SIZE];
+        private int length;
+    }
+}
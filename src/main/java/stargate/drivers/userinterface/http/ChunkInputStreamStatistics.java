@@ -0,0 +1,157 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * I/O statistics of a chunk input stream.
+ *
+ * Counters are updated by the stream and can be read from any thread.
+ *
+ * @author iychoi
+ */
+public class ChunkInputStreamStatistics {
+
+    public enum Source {
+        DIRECT_CACHE,
+        LOCAL_CLUSTER_REST,
+        REMOTE_CLUSTER_REST
+    }
+    
+    private final AtomicLong bytesReadDirectCache = new AtomicLong(0);
+    private final AtomicLong bytesReadLocalClusterRest = new AtomicLong(0);
+    private final AtomicLong bytesReadRemoteClusterRest = new AtomicLong(0);
+    private final AtomicLong chunkLoads = new AtomicLong(0);
+    private final AtomicLong forwardSeeks = new AtomicLong(0);
+    private final AtomicLong backwardSeeks = new AtomicLong(0);
+    private final AtomicLong bytesSkipped = new AtomicLong(0);
+    private final AtomicLong bytesDiscarded = new AtomicLong(0);
+    private final AtomicLong blockedTimeNanos = new AtomicLong(0);
+    private final AtomicLong throttledTimeNanos = new AtomicLong(0);
+    
+    void addBytesRead(Source source, long bytes) {
+        switch (source) {
+            case DIRECT_CACHE:
+                this.bytesReadDirectCache.addAndGet(bytes);
+                break;
+            case LOCAL_CLUSTER_REST:
+                this.bytesReadLocalClusterRest.addAndGet(bytes);
+                break;
+            case REMOTE_CLUSTER_REST:
+                this.bytesReadRemoteClusterRest.addAndGet(bytes);
+                break;
+        }
+    }
+    
+    void incrementChunkLoads() {
+        this.chunkLoads.incrementAndGet();
+    }
+    
+    void incrementForwardSeeks() {
+        this.forwardSeeks.incrementAndGet();
+    }
+    
+    void incrementBackwardSeeks() {
+        this.backwardSeeks.incrementAndGet();
+    }
+    
+    void addBytesSkipped(long bytes) {
+        this.bytesSkipped.addAndGet(bytes);
+    }
+    
+    void addBytesDiscarded(long bytes) {
+        this.bytesDiscarded.addAndGet(bytes);
+    }
+    
+    void addBlockedTimeNanos(long nanos) {
+        this.blockedTimeNanos.addAndGet(nanos);
+    }
+    
+    void addThrottledTimeNanos(long nanos) {
+        this.throttledTimeNanos.addAndGet(nanos);
+    }
+    
+    public long getBytesRead() {
+        return this.bytesReadDirectCache.get() + this.bytesReadLocalClusterRest.get() + this.bytesReadRemoteClusterRest.get();
+    }
+    
+    public long getBytesRead(Source source) {
+        if(source == null) {
+            throw new IllegalArgumentException("source is null");
+        }
+        
+        switch (source) {
+            case DIRECT_CACHE:
+                return this.bytesReadDirectCache.get();
+            case LOCAL_CLUSTER_REST:
+                return this.bytesReadLocalClusterRest.get();
+            case REMOTE_CLUSTER_REST:
+                return this.bytesReadRemoteClusterRest.get();
+            default:
+                return 0;
+        }
+    }
+    
+    public long getChunkLoads() {
+        return this.chunkLoads.get();
+    }
+    
+    public long getForwardSeeks() {
+        return this.forwardSeeks.get();
+    }
+    
+    public long getBackwardSeeks() {
+        return this.backwardSeeks.get();
+    }
+    
+    /**
+     * Returns bytes downloaded and dropped to move forward in a chunk.
+     */
+    public long getBytesSkipped() {
+        return this.bytesSkipped.get();
+    }
+    
+    /**
+     * Returns bytes buffered or left in chunk streams that were thrown away
+     * unread (e.g., by backward seeks).
+     */
+    public long getBytesDiscarded() {
+        return this.bytesDiscarded.get();
+    }
+    
+    /**
+     * Returns time spent waiting for chunk requests and chunk data.
+     */
+    public long getBlockedTimeMillis() {
+        return this.blockedTimeNanos.get() / 1000000;
+    }
+    
+    /**
+     * Returns time spent waiting for bandwidth limits.
+     */
+    public long getThrottledTimeMillis() {
+        return this.throttledTimeNanos.get() / 1000000;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("bytes read (direct cache=%d, local rest=%d, remote rest=%d), chunk loads=%d, seeks (forward=%d, backward=%d), bytes skipped=%d, bytes discarded=%d, blocked=%dms, throttled=%dms",
+                this.bytesReadDirectCache.get(), this.bytesReadLocalClusterRest.get(), this.bytesReadRemoteClusterRest.get(),
+                this.chunkLoads.get(), this.forwardSeeks.get(), this.backwardSeeks.get(),
+                this.bytesSkipped.get(), this.bytesDiscarded.get(), getBlockedTimeMillis(), getThrottledTimeMillis());
+    }
+}
@@ -0,0 +1,342 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+
+/**
+ * Chooses on-the-wire compression for chunk transfers over REST and
+ * decodes compressed responses.
+ *
+ * Codec settings are comma separated preference lists of Hadoop codec
+ * names (e.g., "lz4,deflate"); the first codec available in this JVM is
+ * requested. "adaptive" picks a fast codec when the measured bandwidth
+ * of the service is high and a strong codec when it is low.
+ *
+ * @author iychoi
+ */
+public class ChunkTransferCompression {
+
+    private static final Log LOG = LogFactory.getLog(ChunkTransferCompression.class);
+    
+    public static final String CODEC_NONE = "none";
+    public static final String CODEC_ADAPTIVE = "adaptive";
+    public static final String ADAPTIVE_FAST_CODECS = "lz4,snappy,deflate";
+    public static final String ADAPTIVE_STRONG_CODECS = "zstd,gzip";
+    
+    private static final int MAX_HEADER_LENGTH = 64;
+    // weight of the latest measurement
+    private static final double BANDWIDTH_EWMA_WEIGHT = 0.3;
+    
+    private String localCodecs;
+    private String remoteCodecs;
+    private Map<String, String> clusterCodecs = new HashMap<String, String>();
+    private long adaptiveBandwidthThreshold;
+    
+    private CompressionCodecFactory codecFactory;
+    private Map<String, CompressionCodec> availableCodecs = new HashMap<String, CompressionCodec>();
+    private Map<String, Boolean> unavailableCodecs = new HashMap<String, Boolean>();
+    // service host to measured wire bandwidth (bytes/sec)
+    private Map<String, Double> measuredBandwidth = new HashMap<String, Double>();
+    
+    public ChunkTransferCompression(String localCodecs, String remoteCodecs, String clusterCodecs, long adaptiveBandwidthThreshold) {
+        if(localCodecs == null || localCodecs.isEmpty()) {
+            throw new IllegalArgumentException("localCodecs is null or empty");
+        }
+        
+        if(remoteCodecs == null || remoteCodecs.isEmpty()) {
+            throw new IllegalArgumentException("remoteCodecs is null or empty");
+        }
+        
+        if(adaptiveBandwidthThreshold <= 0) {
+            throw new IllegalArgumentException("adaptiveBandwidthThreshold is not positive");
+        }
+        
+        this.localCodecs = localCodecs;
+        this.remoteCodecs = remoteCodecs;
+        this.adaptiveBandwidthThreshold = adaptiveBandwidthThreshold;
+        
+        // clusterA=zstd,clusterB=lz4
+        if(clusterCodecs != null && !clusterCodecs.trim().isEmpty()) {
+            String[] pairs = clusterCodecs.split(",");
+            for(String pair : pairs) {
+                String[] kv = pair.split("=");
+                if(kv.length != 2) {
+                    throw new IllegalArgumentException("malformed cluster codec : " + pair);
+                }
+                this.clusterCodecs.put(kv[0].trim(), kv[1].trim());
+            }
+        }
+        
+        this.codecFactory = new CompressionCodecFactory(new Configuration());
+    }
+    
+    public boolean isEnabled() {
+        if(!CODEC_NONE.equalsIgnoreCase(this.localCodecs) || !CODEC_NONE.equalsIgnoreCase(this.remoteCodecs)) {
+            return true;
+        }
+        
+        for(String codecs : this.clusterCodecs.values()) {
+            if(!CODEC_NONE.equalsIgnoreCase(codecs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns a codec name to request, or null if no compression is wanted.
+     */
+    public synchronized String selectCodec(String serviceHost, String clusterName, boolean remoteCluster) {
+        String codecs = null;
+        if(clusterName != null) {
+            codecs = this.clusterCodecs.get(clusterName);
+        }
+        
+        if(codecs == null) {
+            codecs = remoteCluster ? this.remoteCodecs : this.localCodecs;
+        }
+        
+        if(CODEC_ADAPTIVE.equalsIgnoreCase(codecs)) {
+            Double bandwidth = this.measuredBandwidth.get(serviceHost);
+            if(bandwidth == null || bandwidth >= this.adaptiveBandwidthThreshold) {
+                codecs = ADAPTIVE_FAST_CODECS;
+            } else {
+                codecs = ADAPTIVE_STRONG_CODECS;
+            }
+        }
+        
+        String[] names = codecs.split(",");
+        for(String name : names) {
+            String codecName = name.trim().toLowerCase();
+            if(codecName.isEmpty() || codecName.equals(CODEC_NONE)) {
+                return null;
+            }
+            
+            if(getCodec(codecName) != null) {
+                return codecName;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns a Hadoop codec for the codec name, or null if it is not
+     * available in this JVM.
+     */
+    public CompressionCodec getAvailableCodec(String codecName) {
+        if(codecName == null || codecName.isEmpty()) {
+            throw new IllegalArgumentException("codecName is null or empty");
+        }
+        
+        return getCodec(codecName.trim().toLowerCase());
+    }
+    
+    private synchronized CompressionCodec getCodec(String codecName) {
+        CompressionCodec codec = this.availableCodecs.get(codecName);
+        if(codec != null) {
+            return codec;
+        }
+        
+        if(this.unavailableCodecs.containsKey(codecName)) {
+            return null;
+        }
+        
+        String hadoopCodecName = codecName;
+        if(codecName.equals("zstd")) {
+            hadoopCodecName = "zstandard";
+        }
+        
+        codec = this.codecFactory.getCodecByName(hadoopCodecName);
+        if(codec != null) {
+            try {
+                // fails when native libraries are not loaded (e.g., lz4)
+                Decompressor decompressor = CodecPool.getDecompressor(codec);
+                CodecPool.returnDecompressor(decompressor);
+            } catch (Throwable th) {
+                LOG.debug("codec is not available : " + codecName, th);
+                codec = null;
+            }
+        }
+        
+        if(codec == null) {
+            this.unavailableCodecs.put(codecName, Boolean.TRUE);
+            return null;
+        }
+        
+        this.availableCodecs.put(codecName, codec);
+        return codec;
+    }
+    
+    /**
+     * Decodes a compressed chunk response.
+     * The response starts with a codec name actually used by the service,
+     * terminated by a newline, followed by the (compressed) chunk data.
+     */
+    public InputStream decode(String serviceHost, InputStream is) throws IOException {
+        if(is == null) {
+            throw new IllegalArgumentException("is is null");
+        }
+        
+        InputStream meteredIS = new BandwidthMeterInputStream(serviceHost, is);
+        String codecName = readHeader(meteredIS);
+        if(codecName.isEmpty() || codecName.equalsIgnoreCase(CODEC_NONE)) {
+            return meteredIS;
+        }
+        
+        CompressionCodec codec = getCodec(codecName.toLowerCase());
+        if(codec == null) {
+            meteredIS.close();
+            throw new IOException("unsupported codec in response : " + codecName);
+        }
+        
+        Decompressor decompressor = CodecPool.getDecompressor(codec);
+        try {
+            return new PooledDecompressorInputStream(codec.createInputStream(meteredIS, decompressor), decompressor);
+        } catch (IOException ex) {
+            CodecPool.returnDecompressor(decompressor);
+            meteredIS.close();
+            throw ex;
+        }
+    }
+    
+    private String readHeader(InputStream is) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while(true) {
+            int ch = is.read();
+            if(ch < 0) {
+                throw new IOException("unexpected end of stream while reading codec header");
+            }
+            
+            if(ch == '\n') {
+                break;
+            }
+            
+            sb.append((char) ch);
+            if(sb.length() > MAX_HEADER_LENGTH) {
+                throw new IOException("codec header is too long");
+            }
+        }
+        return sb.toString().trim();
+    }
+    
+    private synchronized void updateBandwidth(String serviceHost, long bytes, long elapsedNanos) {
+        if(serviceHost == null || bytes <= 0 || elapsedNanos <= 0) {
+            return;
+        }
+        
+        double bandwidth = ((double) bytes) * 1000000000L / elapsedNanos;
+        Double prev = this.measuredBandwidth.get(serviceHost);
+        if(prev != null) {
+            bandwidth = (BANDWIDTH_EWMA_WEIGHT * bandwidth) + ((1 - BANDWIDTH_EWMA_WEIGHT) * prev);
+        }
+        this.measuredBandwidth.put(serviceHost, bandwidth);
+    }
+    
+    public synchronized double getMeasuredBandwidth(String serviceHost) {
+        Double bandwidth = this.measuredBandwidth.get(serviceHost);
+        if(bandwidth == null) {
+            return 0;
+        }
+        return bandwidth;
+    }
+    
+    /**
+     * Measures the wire bandwidth from the time blocked in reads only, so
+     * decompression and the consumer's processing are not counted.
+     */
+    private class BandwidthMeterInputStream extends FilterInputStream {
+        
+        private String serviceHost;
+        private long bytes;
+        private long readNanos;
+        private boolean closed;
+        
+        BandwidthMeterInputStream(String serviceHost, InputStream is) {
+            super(is);
+            
+            this.serviceHost = serviceHost;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int ch = super.read();
+            this.readNanos += System.nanoTime() - start;
+            if(ch >= 0) {
+                this.bytes++;
+            }
+            return ch;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int read = super.read(b, off, len);
+            this.readNanos += System.nanoTime() - start;
+            if(read > 0) {
+                this.bytes += read;
+            }
+            return read;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if(!this.closed) {
+                this.closed = true;
+                updateBandwidth(this.serviceHost, this.bytes, this.readNanos);
+            }
+            super.close();
+        }
+    }
+    
+    /**
+     * Returns the decompressor to the codec pool when closed.
+     */
+    private static class PooledDecompressorInputStream extends FilterInputStream {
+        
+        private Decompressor decompressor;
+        
+        PooledDecompressorInputStream(InputStream is, Decompressor decompressor) {
+            super(is);
+            
+            this.decompressor = decompressor;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if(this.decompressor != null) {
+                    CodecPool.returnDecompressor(this.decompressor);
+                    this.decompressor = null;
+                }
+            }
+        }
+    }
+}
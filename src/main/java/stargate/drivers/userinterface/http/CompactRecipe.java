@@ -0,0 +1,355 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import stargate.commons.dataobject.DataObjectMetadata;
+import stargate.commons.recipe.Recipe;
+import stargate.commons.recipe.RecipeChunk;
+
+/**
+ * Immutable, primitive-array representation of a Recipe.
+ *
+ * Chunks are kept sorted by offset so that offset lookup is a binary search.
+ * Node membership of each chunk is packed into a bitset over the node names
+ * of the recipe, and chunk hashes are indexed by an open-addressing table.
+ * Instances are safe to share across streams.
+ *
+ * @author iychoi
+ */
+public class CompactRecipe implements RecipeSource {
+
+    private DataObjectMetadata metadata;
+    private String hashAlgorithm;
+    private int chunkSize;
+    private long size;
+    
+    private String[] nodeNames;
+    private int nodeWords;
+    
+    private long[] offsets;
+    private int[] lengths;
+    private String[] hashes;
+    private long[] nodeBits;
+    
+    // chunk index + 1, 0 means empty
+    private int[] hashTable;
+    private int hashTableMask;
+    
+    public CompactRecipe(Recipe recipe) {
+        if(recipe == null) {
+            throw new IllegalArgumentException("recipe is null");
+        }
+        
+        List<RecipeChunk> chunks = new ArrayList<RecipeChunk>(recipe.getChunks());
+        if(!isSorted(chunks)) {
+            Collections.sort(chunks, new Comparator<RecipeChunk>() {
+                @Override
+                public int compare(RecipeChunk c1, RecipeChunk c2) {
+                    if(c1.getOffset() < c2.getOffset()) {
+                        return -1;
+                    } else if(c1.getOffset() > c2.getOffset()) {
+                        return 1;
+                    }
+                    return 0;
+                }
+            });
+        }
+        
+        // assign compact node IDs
+        Map<String, Integer> nodeIDMap = new HashMap<String, Integer>();
+        List<String> nodeNameList = new ArrayList<String>();
+        List<Collection<String>> chunkNodeNames = new ArrayList<Collection<String>>(chunks.size());
+        for(RecipeChunk chunk : chunks) {
+            Collection<String> names = recipe.getNodeNames(chunk.getNodeIDs());
+            for(String name : names) {
+                if(!nodeIDMap.containsKey(name)) {
+                    nodeIDMap.put(name, nodeNameList.size());
+                    nodeNameList.add(name);
+                }
+            }
+            chunkNodeNames.add(names);
+        }
+        
+        int chunkCount = chunks.size();
+        long[] chunkOffsets = new long[chunkCount];
+        int[] chunkLengths = new int[chunkCount];
+        String[] chunkHashes = new String[chunkCount];
+        int[][] chunkNodeIDs = new int[chunkCount][];
+        
+        for(int i = 0; i < chunkCount; i++) {
+            RecipeChunk chunk = chunks.get(i);
+            chunkOffsets[i] = chunk.getOffset();
+            chunkLengths[i] = chunk.getLength();
+            chunkHashes[i] = chunk.getHash();
+            
+            Collection<String> names = chunkNodeNames.get(i);
+            int[] nodeIDs = new int[names.size()];
+            int j = 0;
+            for(String name : names) {
+                nodeIDs[j] = nodeIDMap.get(name);
+                j++;
+            }
+            chunkNodeIDs[i] = nodeIDs;
+        }
+        
+        initialize(recipe.getMetadata(), recipe.getHashAlgorithm(), recipe.getChunkSize(), nodeNameList.toArray(new String[0]), chunkOffsets, chunkLengths, chunkHashes, chunkNodeIDs);
+    }
+    
+    /**
+     * Chunks must be sorted by offset. chunkNodeIDs holds indices to nodeNames.
+     */
+    CompactRecipe(DataObjectMetadata metadata, String hashAlgorithm, int chunkSize, String[] nodeNames, long[] chunkOffsets, int[] chunkLengths, String[] chunkHashes, int[][] chunkNodeIDs) {
+        if(metadata == null) {
+            throw new IllegalArgumentException("metadata is null");
+        }
+        
+        initialize(metadata, hashAlgorithm, chunkSize, nodeNames, chunkOffsets, chunkLengths, chunkHashes, chunkNodeIDs);
+    }
+    
+    private void initialize(DataObjectMetadata metadata, String hashAlgorithm, int chunkSize, String[] nodeNames, long[] chunkOffsets, int[] chunkLengths, String[] chunkHashes, int[][] chunkNodeIDs) {
+        int chunkCount = chunkOffsets.length;
+        
+        this.metadata = metadata;
+        this.hashAlgorithm = hashAlgorithm;
+        this.chunkSize = chunkSize;
+        this.size = metadata.getSize();
+        this.nodeNames = nodeNames;
+        this.nodeWords = Math.max(1, (this.nodeNames.length + 63) / 64);
+        this.offsets = chunkOffsets;
+        this.lengths = chunkLengths;
+        this.hashes = chunkHashes;
+        this.nodeBits = new long[chunkCount * this.nodeWords];
+        
+        for(int i = 0; i < chunkCount; i++) {
+            for(int nodeID : chunkNodeIDs[i]) {
+                if(nodeID < 0 || nodeID >= this.nodeNames.length) {
+                    throw new IllegalArgumentException("invalid node id : " + nodeID);
+                }
+                this.nodeBits[(i * this.nodeWords) + (nodeID >>> 6)] |= (1L << (nodeID & 63));
+            }
+        }
+        
+        buildHashTable();
+    }
+    
+    private static boolean isSorted(List<RecipeChunk> chunks) {
+        long prev = -1;
+        for(RecipeChunk chunk : chunks) {
+            if(chunk.getOffset() < prev) {
+                return false;
+            }
+            prev = chunk.getOffset();
+        }
+        return true;
+    }
+    
+    private void buildHashTable() {
+        int capacity = 16;
+        while(capacity < this.hashes.length * 2) {
+            capacity <<= 1;
+        }
+        
+        this.hashTable = new int[capacity];
+        this.hashTableMask = capacity - 1;
+        
+        for(int i = 0; i < this.hashes.length; i++) {
+            String hash = this.hashes[i];
+            if(hash == null) {
+                continue;
+            }
+            
+            int slot = mix(hash.hashCode()) & this.hashTableMask;
+            while(this.hashTable[slot] != 0) {
+                if(hash.equals(this.hashes[this.hashTable[slot] - 1])) {
+                    // same chunk data appears twice, keep the first
+                    break;
+                }
+                slot = (slot + 1) & this.hashTableMask;
+            }
+            
+            if(this.hashTable[slot] == 0) {
+                this.hashTable[slot] = i + 1;
+            }
+        }
+    }
+    
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+    
+    @Override
+    public DataObjectMetadata getMetadata() {
+        return this.metadata;
+    }
+    
+    public String getHashAlgorithm() {
+        return this.hashAlgorithm;
+    }
+    
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+    
+    @Override
+    public long getSize() {
+        return this.size;
+    }
+    
+    @Override
+    public CompactRecipe getRecipe(long offset) {
+        return this;
+    }
+    
+    public int getChunkCount() {
+        return this.offsets.length;
+    }
+    
+    /**
+     * Returns the index of the chunk containing the offset, or -1.
+     */
+    public int getChunkIndex(long offset) {
+        int idx = Arrays.binarySearch(this.offsets, offset);
+        if(idx < 0) {
+            // insertion point - 1 is the chunk starting before the offset
+            idx = -idx - 2;
+        }
+        
+        if(idx < 0 || idx >= this.offsets.length) {
+            return -1;
+        }
+        
+        if(offset >= this.offsets[idx] + this.lengths[idx]) {
+            return -1;
+        }
+        return idx;
+    }
+    
+    public long getChunkOffset(int chunkIndex) {
+        return this.offsets[chunkIndex];
+    }
+    
+    public int getChunkLength(int chunkIndex) {
+        return this.lengths[chunkIndex];
+    }
+    
+    public String getChunkHash(int chunkIndex) {
+        return this.hashes[chunkIndex];
+    }
+    
+    /**
+     * Returns the index of the first chunk having the hash, or -1.
+     */
+    public int findChunkIndex(String hash) {
+        if(hash == null) {
+            return -1;
+        }
+        
+        int slot = mix(hash.hashCode()) & this.hashTableMask;
+        while(this.hashTable[slot] != 0) {
+            int idx = this.hashTable[slot] - 1;
+            if(hash.equals(this.hashes[idx])) {
+                return idx;
+            }
+            slot = (slot + 1) & this.hashTableMask;
+        }
+        return -1;
+    }
+    
+    public Collection<String> getNodeNames() {
+        return Collections.unmodifiableList(Arrays.asList(this.nodeNames));
+    }
+    
+    public int getNodeCount() {
+        return this.nodeNames.length;
+    }
+    
+    public String getNodeName(int nodeID) {
+        return this.nodeNames[nodeID];
+    }
+    
+    /**
+     * Returns the compact ID of the node, or -1.
+     */
+    public int getNodeID(String nodeName) {
+        if(nodeName == null) {
+            return -1;
+        }
+        
+        for(int i = 0; i < this.nodeNames.length; i++) {
+            if(this.nodeNames[i].equals(nodeName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    public boolean hasChunkNode(int chunkIndex, int nodeID) {
+        if(nodeID < 0 || nodeID >= this.nodeNames.length) {
+            return false;
+        }
+        
+        long word = this.nodeBits[(chunkIndex * this.nodeWords) + (nodeID >>> 6)];
+        return (word & (1L << (nodeID & 63))) != 0;
+    }
+    
+    /**
+     * Returns the next node ID holding the chunk starting at fromNodeID
+     * (inclusive), or -1. Iterates without allocation.
+     */
+    public int nextChunkNodeID(int chunkIndex, int fromNodeID) {
+        for(int nodeID = Math.max(0, fromNodeID); nodeID < this.nodeNames.length; nodeID++) {
+            if(hasChunkNode(chunkIndex, nodeID)) {
+                return nodeID;
+            }
+        }
+        return -1;
+    }
+    
+    public List<String> getChunkNodeNames(int chunkIndex) {
+        List<String> names = new ArrayList<String>();
+        int nodeID = nextChunkNodeID(chunkIndex, 0);
+        while(nodeID >= 0) {
+            names.add(this.nodeNames[nodeID]);
+            nodeID = nextChunkNodeID(chunkIndex, nodeID + 1);
+        }
+        return names;
+    }
+    
+    /**
+     * Checks if two chunks are held by the same set of nodes.
+     */
+    public boolean hasSameChunkNodes(int chunkIndex1, int chunkIndex2) {
+        int base1 = chunkIndex1 * this.nodeWords;
+        int base2 = chunkIndex2 * this.nodeWords;
+        for(int i = 0; i < this.nodeWords; i++) {
+            if(this.nodeBits[base1 + i] != this.nodeBits[base2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.IOException;
+import java.net.URI;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Support of an optional endpoint at a service.
+ *
+ * Support is settled once, by the first definite answer of the service: a
+ * successful request, or a response saying that the service does not serve
+ * the endpoint (HTTP 404 or 405). Transient failures leave it undecided.
+ *
+ * @author iychoi
+ */
+class EndpointSupport {
+
+    private static final Log LOG = LogFactory.getLog(EndpointSupport.class);
+    
+    private static final int STATE_UNKNOWN = 0;
+    private static final int STATE_SUPPORTED = 1;
+    private static final int STATE_UNSUPPORTED = 2;
+    
+    private String name;
+    private volatile int state = STATE_UNKNOWN;
+    
+    EndpointSupport(String name) {
+        if(name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name is null or empty");
+        }
+        
+        this.name = name;
+    }
+    
+    /**
+     * Returns false once the service answered that it does not serve the
+     * endpoint.
+     */
+    boolean isAvailable() {
+        return this.state != STATE_UNSUPPORTED;
+    }
+    
+    /**
+     * Returns true once a request to the endpoint succeeded.
+     */
+    boolean isConfirmed() {
+        return this.state == STATE_SUPPORTED;
+    }
+    
+    void setSupported() {
+        if(this.state == STATE_UNKNOWN) {
+            this.state = STATE_SUPPORTED;
+        }
+    }
+    
+    void setUnsupported(URI serviceURI, IOException ex) {
+        if(this.state == STATE_UNKNOWN) {
+            LOG.debug(this.name + " is not available at " + serviceURI.toString(), ex);
+            this.state = STATE_UNSUPPORTED;
+        }
+    }
+    
+    /**
+     * Returns true if the failure is the service answering that it does not
+     * serve the endpoint, i.e., HTTPStatusException of HTTP 404 or 405
+     * from the transport. FileNotFoundException does not count, as services
+     * also use it for missing data objects.
+     */
+    static boolean isUnsupportedResponse(IOException ex) {
+        if(!(ex instanceof HTTPStatusException)) {
+            return false;
+        }
+        
+        int status = ((HTTPStatusException) ex).getStatus();
+        return status == HTTPStatusException.SC_NOT_FOUND || status == HTTPStatusException.SC_METHOD_NOT_ALLOWED;
+    }
+}
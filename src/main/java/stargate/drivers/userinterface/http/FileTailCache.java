@@ -0,0 +1,202 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import stargate.commons.dataobject.DataObjectMetadata;
+import stargate.commons.dataobject.DataObjectURI;
+import stargate.commons.utils.PathUtils;
+
+/**
+ * JVM-wide LRU cache of the tail bytes of recently read files.
+ *
+ * Columnar formats (e.g., Parquet, ORC) read the footer of every file they
+ * open. Serving those reads from here avoids downloading the whole final
+ * chunk of each file.
+ *
+ * @author iychoi
+ */
+public class FileTailCache {
+
+    public static final boolean DEFAULT_ENABLED = true;
+    public static final int DEFAULT_TAIL_SIZE = 64 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    
+    private static final FileTailCache INSTANCE = new FileTailCache();
+    
+    private volatile boolean enabled = DEFAULT_ENABLED;
+    private volatile int tailSize = DEFAULT_TAIL_SIZE;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long cachedBytes = 0;
+    // access-ordered for LRU eviction
+    private final LinkedHashMap<String, FileTail> tails = new LinkedHashMap<String, FileTail>(16, 0.75f, true);
+    
+    public static FileTailCache getInstance() {
+        return INSTANCE;
+    }
+    
+    FileTailCache() {
+    }
+    
+    public synchronized void configure(boolean enabled, int tailSize, long maxBytes) {
+        if(tailSize <= 0) {
+            throw new IllegalArgumentException("tailSize is not positive");
+        }
+        
+        if(maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes is negative");
+        }
+        
+        this.enabled = enabled;
+        this.tailSize = tailSize;
+        this.maxBytes = maxBytes;
+        
+        if(!enabled) {
+            clear();
+        } else {
+            evict();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+    
+    public int getTailSize() {
+        return this.tailSize;
+    }
+    
+    /**
+     * Returns the file offset where the cached tail of the file starts.
+     */
+    public long getTailStartOffset(DataObjectMetadata metadata) {
+        if(metadata == null) {
+            throw new IllegalArgumentException("metadata is null");
+        }
+        
+        return Math.max(0, metadata.getSize() - this.tailSize);
+    }
+    
+    public static String makeKey(DataObjectMetadata metadata) {
+        if(metadata == null) {
+            throw new IllegalArgumentException("metadata is null");
+        }
+        
+        // a modified file gets a new key, its old tail ages out
+        DataObjectURI uri = metadata.getURI();
+        String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+        return String.format("%s@%d:%d", path, metadata.getLastModifiedTime(), metadata.getSize());
+    }
+    
+    public synchronized FileTail get(String key) {
+        if(key == null) {
+            throw new IllegalArgumentException("key is null");
+        }
+        
+        if(!this.enabled) {
+            return null;
+        }
+        
+        return this.tails.get(key);
+    }
+    
+    public synchronized void put(String key, FileTail tail) {
+        if(key == null) {
+            throw new IllegalArgumentException("key is null");
+        }
+        
+        if(tail == null) {
+            throw new IllegalArgumentException("tail is null");
+        }
+        
+        if(!this.enabled || tail.getLength() > this.maxBytes) {
+            return;
+        }
+        
+        FileTail old = this.tails.put(key, tail);
+        if(old != null) {
+            this.cachedBytes -= old.getLength();
+        }
+        this.cachedBytes += tail.getLength();
+        
+        evict();
+    }
+    
+    private void evict() {
+        Iterator<Map.Entry<String, FileTail>> iterator = this.tails.entrySet().iterator();
+        while(this.cachedBytes > this.maxBytes && iterator.hasNext()) {
+            Map.Entry<String, FileTail> eldest = iterator.next();
+            this.cachedBytes -= eldest.getValue().getLength();
+            iterator.remove();
+        }
+    }
+    
+    public synchronized void clear() {
+        this.tails.clear();
+        this.cachedBytes = 0;
+    }
+    
+    public synchronized long getCachedBytes() {
+        return this.cachedBytes;
+    }
+    
+    public static class FileTail {
+        
+        private long startOffset;
+        private byte[] data;
+        
+        public FileTail(long startOffset, byte[] data) {
+            if(startOffset < 0) {
+                throw new IllegalArgumentException("startOffset is negative");
+            }
+            
+            if(data == null) {
+                throw new IllegalArgumentException("data is null");
+            }
+            
+            this.startOffset = startOffset;
+            this.data = data;
+        }
+        
+        public long getStartOffset() {
+            return this.startOffset;
+        }
+        
+        public int getLength() {
+            return this.data.length;
+        }
+        
+        public boolean containsOffset(long offset) {
+            return offset >= this.startOffset && offset < this.startOffset + this.data.length;
+        }
+        
+        /**
+         * Copies cached bytes at the file offset. Returns bytes copied.
+         */
+        public int read(long offset, byte[] bytes, int off, int len) {
+            if(!containsOffset(offset)) {
+                return 0;
+            }
+            
+            int pos = (int) (offset - this.startOffset);
+            int n = Math.min(len, this.data.length - pos);
+            System.arraycopy(this.data, pos, bytes, off, n);
+            return n;
+        }
+    }
+}
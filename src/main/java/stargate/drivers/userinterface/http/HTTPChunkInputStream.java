@@ -19,18 +19,21 @@ import stargate.commons.io.ChunkDataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSInputStream;
 import stargate.commons.dataobject.DataObjectMetadata;
 import stargate.commons.dataobject.DataObjectURI;
+import stargate.commons.datastore.BigKeyValueStoreUtils;
 import stargate.commons.io.UnrewindableChunkDataInputStream;
 import stargate.commons.recipe.Recipe;
-import stargate.commons.recipe.RecipeChunk;
 import stargate.commons.userinterface.DataChunkStatus;
 import stargate.commons.utils.IPUtils;
 
@@ -41,17 +44,75 @@ import stargate.commons.utils.IPUtils;
 public class HTTPChunkInputStream extends FSInputStream {
 
     private static final Log LOG = LogFactory.getLog(HTTPChunkInputStream.class);
-        
-    // node-name to client mapping
+    
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int MAX_ACCESSED_RANGES = 4096;
+    
+    private static volatile boolean verifyChunkHash = false;
+    
+    public interface ClientResolver {
+        /**
+         * Returns a client for the node, or null if the node is unknown.
+         */
+        public HTTPUserInterfaceClient resolve(String nodeName) throws IOException;
+    }
+    
+    public interface ChunkStatusListener {
+        /**
+         * Called when the stream learns the status of a chunk.
+         */
+        public void chunkStatusReceived(String hash, DataChunkStatus status);
+    }
+    
+    // node-name to client mapping, null for nodes the resolver does not know
     private Map<String, HTTPUserInterfaceClient> clients = new HashMap<String, HTTPUserInterfaceClient>();
+    // resolves clients of nodes not given, e.g., nodes of recipe segments
+    private ClientResolver clientResolver;
+    private ChunkStatusListener chunkStatusListener;
     private String localNodeName;
     private HTTPUserInterfaceClient localClient;
     private Map<String, DataChunkStatus> initializedChunkMap = new HashMap<String, DataChunkStatus>();
-    private Recipe recipe;
+    private RecipeSource recipeSource;
+    // offset of the next byte to read from chunk data, the end of the buffer
     private long offset;
     private long size;
     private UnrewindableChunkDataInputStream chunkDataInputStream;
     
+    // read buffer, buffer[bufferPos..bufferLimit) holds data at bufferStart + bufferPos
+    private byte[] buffer;
+    private int bufferPos;
+    private int bufferLimit;
+    private long bufferStart;
+    
+    private ChunkInputStreamStatistics statistics = new ChunkInputStreamStatistics();
+    private ChunkInputStreamStatistics.Source chunkSource;
+    private String streamClass = BandwidthShaper.DEFAULT_STREAM_CLASS;
+    private BandwidthShaper.StreamState shaperState;
+    
+    // verification of the chunk being streamed, null if not verifying
+    private ChunkHashVerifier chunkVerifier;
+    private String chunkNodeName;
+    // hash/node pairs that served corrupted chunks
+    private Set<String> badReplicas = new HashSet<String>();
+    
+    // reads at or beyond this offset can be served from the file tail cache
+    private long tailStartOffset = Long.MAX_VALUE;
+    private boolean tailFetchFailed = false;
+    
+    // start to end offsets of chunks and tails read
+    private TreeMap<Long, Long> accessedRanges = new TreeMap<Long, Long>();
+    
+    /**
+     * Enables verification of chunk data against hashes in recipes.
+     */
+    public static void setVerifyChunkHash(boolean verify) {
+        verifyChunkHash = verify;
+    }
+    
+    public static boolean isVerifyChunkHash() {
+        return verifyChunkHash;
+    }
+    
     public HTTPChunkInputStream(Map<String, HTTPUserInterfaceClient> clients, Recipe recipe) {
         if(clients == null) {
             throw new IllegalArgumentException("clients is null");
@@ -61,24 +122,62 @@ public class HTTPChunkInputStream extends FSInputStream {
             throw new IllegalArgumentException("recipe is null");
         }
         
-        initialize(clients, recipe);
+        initialize(clients, new CompactRecipe(recipe), DEFAULT_BUFFER_SIZE);
     }
-
-    private void initialize(Map<String, HTTPUserInterfaceClient> clients, Recipe recipe) {
+    
+    public HTTPChunkInputStream(Map<String, HTTPUserInterfaceClient> clients, CompactRecipe recipe) {
         if(clients == null) {
-            throw new IllegalArgumentException("client is null");
+            throw new IllegalArgumentException("clients is null");
         }
         
         if(recipe == null) {
             throw new IllegalArgumentException("recipe is null");
         }
         
+        initialize(clients, recipe, DEFAULT_BUFFER_SIZE);
+    }
+    
+    public HTTPChunkInputStream(Map<String, HTTPUserInterfaceClient> clients, RecipeSource recipeSource, int bufferSize) {
+        if(clients == null) {
+            throw new IllegalArgumentException("clients is null");
+        }
+        
+        if(recipeSource == null) {
+            throw new IllegalArgumentException("recipeSource is null");
+        }
+        
+        if(bufferSize < 0) {
+            throw new IllegalArgumentException("bufferSize is negative");
+        }
+        
+        initialize(clients, recipeSource, (bufferSize == 0) ? DEFAULT_BUFFER_SIZE : bufferSize);
+    }
+
+    private void initialize(Map<String, HTTPUserInterfaceClient> clients, RecipeSource recipeSource, int bufferSize) {
+        if(clients == null) {
+            throw new IllegalArgumentException("client is null");
+        }
+        
+        if(recipeSource == null) {
+            throw new IllegalArgumentException("recipeSource is null");
+        }
+        
         this.clients.putAll(clients);
         setLocalClient();
         
-        this.recipe = recipe;
+        this.recipeSource = recipeSource;
         this.offset = 0;
-        this.size = recipe.getMetadata().getSize();
+        this.size = recipeSource.getSize();
+        
+        this.buffer = new byte[bufferSize];
+        this.bufferPos = 0;
+        this.bufferLimit = 0;
+        this.bufferStart = 0;
+        
+        FileTailCache tailCache = FileTailCache.getInstance();
+        if(tailCache.isEnabled() && this.size > 0) {
+            this.tailStartOffset = tailCache.getTailStartOffset(recipeSource.getMetadata());
+        }
     }
     
     private void setLocalClient() {
@@ -86,6 +185,10 @@ public class HTTPChunkInputStream extends FSInputStream {
             Set<Map.Entry<String, HTTPUserInterfaceClient>> entrySet = this.clients.entrySet();
             for(Map.Entry<String, HTTPUserInterfaceClient> entry : entrySet) {
                 HTTPUserInterfaceClient client = entry.getValue();
+                if(client == null) {
+                    continue;
+                }
+                
                 URI serviceURI = client.getServiceURI();
                 try {
                     if(IPUtils.isLocalIPAddress(serviceURI.getHost())) {
@@ -99,13 +202,58 @@ public class HTTPChunkInputStream extends FSInputStream {
         }
     }
     
+    /**
+     * Returns offset ranges (start to end) of chunks and file tails read so
+     * far.
+     */
+    public synchronized Map<Long, Long> getAccessedRanges() {
+        return new TreeMap<Long, Long>(this.accessedRanges);
+    }
+    
+    private void addAccessedRange(long start, long end) {
+        Long oldEnd = this.accessedRanges.get(start);
+        if(oldEnd != null && oldEnd >= end) {
+            return;
+        }
+        
+        if(oldEnd == null && this.accessedRanges.size() >= MAX_ACCESSED_RANGES) {
+            return;
+        }
+        this.accessedRanges.put(start, end);
+    }
+    
+    /**
+     * Sets the class of the stream for bandwidth limits.
+     */
+    public synchronized void setStreamClass(String streamClass) {
+        if(streamClass == null || streamClass.isEmpty()) {
+            throw new IllegalArgumentException("streamClass is null or empty");
+        }
+        
+        this.streamClass = streamClass;
+        this.shaperState = null;
+    }
+    
+    public synchronized String getStreamClass() {
+        return this.streamClass;
+    }
+    
+    public ChunkInputStreamStatistics getStatistics() {
+        return this.statistics;
+    }
+    
     @Override
     public synchronized long getPos() throws IOException {
-        return this.offset;
+        return this.offset - (this.bufferLimit - this.bufferPos);
     }
     
     @Override
     public synchronized int available() throws IOException {
+        int buffered = this.bufferLimit - this.bufferPos;
+        if(buffered > 0) {
+            return buffered;
+        }
+        
         if(this.chunkDataInputStream != null && this.chunkDataInputStream.containsOffset(this.offset)) {
             if((this.chunkDataInputStream.getOffset() + this.chunkDataInputStream.getChunkStartOffset()) > this.offset) {
                 // backward
@@ -121,19 +269,29 @@ public class HTTPChunkInputStream extends FSInputStream {
     
     @Override
     public synchronized void seek(long offset) throws IOException {
-        if(this.offset == offset) {
-            return;
-        }
-        
         if(offset < 0) {
             throw new IOException("cannot seek to negative offset : " + offset);
         }
         
-        if(offset >= this.size) {
-            this.offset = this.size;
-        } else {
-            this.offset = offset;
+        if(offset > this.size) {
+            offset = this.size;
         }
+        
+        long pos = getPos();
+        if(offset > pos) {
+            this.statistics.incrementForwardSeeks();
+        } else if(offset < pos) {
+            this.statistics.incrementBackwardSeeks();
+        }
+        
+        // seek within the buffer, either direction
+        if(this.bufferLimit > 0 && offset >= this.bufferStart && offset <= this.bufferStart + this.bufferLimit) {
+            this.bufferPos = (int) (offset - this.bufferStart);
+            return;
+        }
+        
+        discardBuffer();
+        this.offset = offset;
     }
     
     @Override
@@ -142,46 +300,127 @@ public class HTTPChunkInputStream extends FSInputStream {
             return 0;
         }
         
-        if(this.offset >= this.size) {
+        long pos = getPos();
+        if(pos >= this.size) {
             return 0;
         }
         
-        long lavailable = this.size - this.offset;
-        if(size >= lavailable) {
-            this.offset = this.size;
-            return lavailable;
-        } else {
-            this.offset += size;
-            return size;
-        }
+        long target = Math.min(this.size, pos + size);
+        seek(target);
+        return target - pos;
+    }
+    
+    private void discardBuffer() {
+        this.statistics.addBytesDiscarded(this.bufferLimit - this.bufferPos);
+        this.offset = this.offset - (this.bufferLimit - this.bufferPos);
+        this.bufferPos = 0;
+        this.bufferLimit = 0;
+        this.bufferStart = this.offset;
     }
     
     @Override
-    public boolean seekToNewSource(long targetPos) throws IOException {
+    public synchronized boolean seekToNewSource(long targetPos) throws IOException {
+        if(targetPos < 0 || targetPos >= this.size) {
+            return false;
+        }
+        
+        CompactRecipe recipe = this.recipeSource.getRecipe(targetPos);
+        int chunkIndex = recipe.getChunkIndex(targetPos);
+        if(chunkIndex < 0 || !hasGoodReplica(recipe, chunkIndex)) {
+            return false;
+        }
+        
+        // drop what we have so that the data is read again
+        discardBuffer();
+        if(this.chunkDataInputStream != null) {
+            closeChunkData();
+        }
+        this.offset = targetPos;
+        return true;
+    }
+    
+    private boolean isBadReplica(String hash, String nodeName) {
+        return this.badReplicas.contains(hash + "@" + nodeName);
+    }
+    
+    /**
+     * Clients of nodes not given at construction are resolved as recipes
+     * name them.
+     */
+    public void setClientResolver(ClientResolver clientResolver) {
+        this.clientResolver = clientResolver;
+    }
+    
+    public void setChunkStatusListener(ChunkStatusListener chunkStatusListener) {
+        this.chunkStatusListener = chunkStatusListener;
+    }
+    
+    private DataChunkStatus getChunkStatus(HTTPUserInterfaceClient client, DataObjectURI uri, String hash) throws IOException {
+        DataChunkStatus dataChunkStatus = this.initializedChunkMap.get(hash);
+        if(dataChunkStatus == null) {
+            dataChunkStatus = client.requestDataChunk(uri, hash);
+            this.initializedChunkMap.put(hash, dataChunkStatus);
+            
+            if(this.chunkStatusListener != null && dataChunkStatus != null) {
+                this.chunkStatusListener.chunkStatusReceived(hash, dataChunkStatus);
+            }
+        }
+        return dataChunkStatus;
+    }
+    
+    private HTTPUserInterfaceClient getNodeClient(String nodeName) throws IOException {
+        if(this.clients.containsKey(nodeName) || this.clientResolver == null) {
+            return this.clients.get(nodeName);
+        }
+        
+        HTTPUserInterfaceClient client = this.clientResolver.resolve(nodeName);
+        this.clients.put(nodeName, client);
+        return client;
+    }
+    
+    private boolean hasGoodReplica(CompactRecipe recipe, int chunkIndex) throws IOException {
+        String hash = recipe.getChunkHash(chunkIndex);
+        int nodeID = recipe.nextChunkNodeID(chunkIndex, 0);
+        while(nodeID >= 0) {
+            String nodeName = recipe.getNodeName(nodeID);
+            if(!isBadReplica(hash, nodeName) && getNodeClient(nodeName) != null) {
+                return true;
+            }
+            nodeID = recipe.nextChunkNodeID(chunkIndex, nodeID + 1);
+        }
         return false;
     }
     
-    private HTTPUserInterfaceClient getClient(RecipeChunk chunk) throws IOException {
+    private HTTPUserInterfaceClient getClient(CompactRecipe recipe, int chunkIndex) throws IOException {
         HTTPUserInterfaceClient client = null;
-        
-        Collection<Integer> nodeIDs = chunk.getNodeIDs();
-        Collection<String> nodeNames = this.recipe.getNodeNames(nodeIDs);
+        String hash = recipe.getChunkHash(chunkIndex);
+        // use replicas that served corrupted data only if nothing else is left
+        boolean skipBadReplicas = hasGoodReplica(recipe, chunkIndex);
         
         // Step1. check if local node has the block
         if(this.localNodeName != null && this.localClient != null) {
-            if(nodeNames.contains(this.localNodeName)) {
+            // node IDs are per recipe, a segment has its own
+            int localNodeID = recipe.getNodeID(this.localNodeName);
+            if(recipe.hasChunkNode(chunkIndex, localNodeID) && !(skipBadReplicas && isBadReplica(hash, this.localNodeName))) {
                 client = this.localClient;
+                this.chunkNodeName = this.localNodeName;
             }
         }
 
         // Step2. use any of nodes having the block
         if(client == null) {
-            for(String nodeName : nodeNames) {
-                client = this.clients.get(nodeName);
-                if(client != null) {
-                    // we found
-                    break;
+            int nodeID = recipe.nextChunkNodeID(chunkIndex, 0);
+            while(nodeID >= 0) {
+                String nodeName = recipe.getNodeName(nodeID);
+                if(!(skipBadReplicas && isBadReplica(hash, nodeName))) {
+                    client = getNodeClient(nodeName);
+                    if(client != null) {
+                        // we found
+                        this.chunkNodeName = nodeName;
+                        break;
+                    }
                 }
+                nodeID = recipe.nextChunkNodeID(chunkIndex, nodeID + 1);
             }
         }
 
@@ -209,66 +448,438 @@ public class HTTPChunkInputStream extends FSInputStream {
                 long seek = this.offset - this.chunkDataInputStream.getChunkStartOffset();
                 if(this.chunkDataInputStream.getOffset() <= seek) {
                     // safe to reuse
+                    if(seek > this.chunkDataInputStream.getOffset()) {
+                        // skipped bytes are not seen, cannot verify this chunk
+                        abortChunkVerification();
+                    }
+                    this.statistics.addBytesSkipped(seek - this.chunkDataInputStream.getOffset());
                     this.chunkDataInputStream.seek(seek);
                     return;
                 } else {
                     // backword
-                    this.chunkDataInputStream.close();
-                    this.chunkDataInputStream = null;
+                    closeChunkData();
                 }
             } else {
-                this.chunkDataInputStream.close();
-                this.chunkDataInputStream = null;
+                closeChunkData();
             }
         }
         
         // load chunk
-        RecipeChunk chunk = this.recipe.getChunk(this.offset);
-        DataObjectMetadata metadata = this.recipe.getMetadata();
+        CompactRecipe recipe = this.recipeSource.getRecipe(this.offset);
+        int chunkIndex = recipe.getChunkIndex(this.offset);
+        if(chunkIndex < 0) {
+            throw new IOException("Cannot find a chunk at offset : " + this.offset);
+        }
+        
+        DataObjectMetadata metadata = this.recipeSource.getMetadata();
         DataObjectURI uri = metadata.getURI();
-        String hash = chunk.getHash();
+        String hash = recipe.getChunkHash(chunkIndex);
+        long chunkOffset = recipe.getChunkOffset(chunkIndex);
+        int chunkLength = recipe.getChunkLength(chunkIndex);
         
-        HTTPUserInterfaceClient client = getClient(chunk);
+        HTTPUserInterfaceClient client = getClient(recipe, chunkIndex);
+        addAccessedRange(chunkOffset, chunkOffset + chunkLength);
         
-        if(!this.initializedChunkMap.containsKey(hash)) {
-            DataChunkStatus dataChunkStatus = client.requestDataChunk(uri, hash);
-            this.initializedChunkMap.put(hash, dataChunkStatus);
-        }
+        DataChunkStatus dataChunkStatus = getChunkStatus(client, uri, hash);
         
         if(this.chunkDataInputStream == null) {
-            DataChunkStatus dataChunkStatus = this.initializedChunkMap.get(hash);
             InputStream dataChunkIS = client.getDataChunk(uri, hash, dataChunkStatus);
+            this.chunkSource = getChunkSource(client, dataChunkStatus);
+            this.statistics.incrementChunkLoads();
             
-            this.chunkDataInputStream = new UnrewindableChunkDataInputStream(dataChunkIS, chunk.getOffset(), chunk.getLength());
-            long seek = this.offset - chunk.getOffset();
+            this.chunkDataInputStream = new UnrewindableChunkDataInputStream(dataChunkIS, chunkOffset, chunkLength);
+            long seek = this.offset - chunkOffset;
+            this.statistics.addBytesSkipped(seek);
             this.chunkDataInputStream.seek(seek);
+            
+            // only a chunk read from its start can be verified
+            if(verifyChunkHash && seek == 0 && ChunkHashVerifier.isSupported(recipe.getHashAlgorithm())) {
+                this.chunkVerifier = new ChunkHashVerifier(recipe.getHashAlgorithm(), hash);
+            }
         }
     }
     
-    @Override
-    public synchronized int read() throws IOException {
+    private void abortChunkVerification() {
+        if(this.chunkVerifier != null) {
+            this.chunkVerifier.abort();
+            this.chunkVerifier = null;
+        }
+    }
+    
+    /**
+     * Feeds bytes read to the verifier. The last bytes of the chunk are
+     * checked before they are returned. On a mismatch, the chunk is read
+     * again from another replica; if the bytes returned before match it,
+     * the last bytes are served from that replica, otherwise the read fails.
+     */
+    private void verifyChunkData(byte[] bytes, int off, int len) throws IOException {
+        if(this.chunkDataInputStream.getOffset() < this.chunkDataInputStream.getChunkSize()) {
+            this.chunkVerifier.update(bytes, off, len);
+            return;
+        }
+        
+        ChunkHashVerifier verifier = this.chunkVerifier;
+        this.chunkVerifier = null;
+        if(verifier.verify(bytes, off, len)) {
+            return;
+        }
+        
+        long chunkStartOffset = this.chunkDataInputStream.getChunkStartOffset();
+        CompactRecipe recipe = this.recipeSource.getRecipe(chunkStartOffset);
+        int chunkIndex = recipe.getChunkIndex(chunkStartOffset);
+        String hash = recipe.getChunkHash(chunkIndex);
+        LOG.warn(String.format("chunk %s from %s does not match its hash", hash, this.chunkNodeName));
+        
+        this.badReplicas.add(hash + "@" + this.chunkNodeName);
+        this.initializedChunkMap.remove(hash);
+        closeChunkData();
+        
+        if(verifier.getPrefixDigest() == null || !refetchChunkEnd(recipe, chunkIndex, verifier.getPrefixDigest(), bytes, off, len)) {
+            throw new ChecksumException(String.format("Checksum error: chunk %s from %s", hash, this.chunkNodeName), chunkStartOffset);
+        }
+    }
+    
+    /**
+     * Reads the chunk again from other replicas, filling the last len
+     * bytes of the chunk. Returns true if a replica matches the hash and
+     * the digest of the bytes returned before.
+     */
+    private boolean refetchChunkEnd(CompactRecipe recipe, int chunkIndex, byte[] prefixDigest, byte[] bytes, int off, int len) throws IOException {
+        DataObjectURI uri = this.recipeSource.getMetadata().getURI();
+        String hash = recipe.getChunkHash(chunkIndex);
+        int prefixLength = recipe.getChunkLength(chunkIndex) - len;
+        byte[] prefixBuffer = new byte[DEFAULT_BUFFER_SIZE];
+        BandwidthShaper shaper = BandwidthShaper.getInstance();
+        
+        while(hasGoodReplica(recipe, chunkIndex)) {
+            HTTPUserInterfaceClient client = getClient(recipe, chunkIndex);
+            String nodeName = this.chunkNodeName;
+            
+            DataChunkStatus dataChunkStatus = getChunkStatus(client, uri, hash);
+            
+            ChunkInputStreamStatistics.Source source = getChunkSource(client, dataChunkStatus);
+            ChunkHashVerifier verifier = new ChunkHashVerifier(recipe.getHashAlgorithm(), hash);
+            boolean valid = false;
+            InputStream is = null;
+            try {
+                is = client.getDataChunk(uri, hash, dataChunkStatus);
+                this.statistics.incrementChunkLoads();
+                
+                int pos = 0;
+                while(pos < prefixLength + len) {
+                    int read;
+                    if(pos < prefixLength) {
+                        read = is.read(prefixBuffer, 0, Math.min(prefixBuffer.length, prefixLength - pos));
+                        if(read > 0) {
+                            verifier.update(prefixBuffer, 0, read);
+                        }
+                    } else {
+                        read = is.read(bytes, off + pos - prefixLength, prefixLength + len - pos);
+                    }
+                    
+                    if(read < 0) {
+                        throw new IOException(String.format("Unexpected end of chunk %s from %s", hash, nodeName));
+                    }
+                    
+                    pos += read;
+                    this.statistics.addBytesRead(source, read);
+                    if(shaper.isEnabled() && source != ChunkInputStreamStatistics.Source.DIRECT_CACHE) {
+                        shapeBandwidth(shaper, source, read);
+                    }
+                }
+                
+                valid = verifier.verify(bytes, off, len);
+            } catch (IOException ex) {
+                LOG.debug(String.format("cannot read chunk %s again from %s", hash, nodeName), ex);
+            } finally {
+                verifier.abort();
+                if(is != null) {
+                    is.close();
+                }
+            }
+            
+            if(valid) {
+                if(!Arrays.equals(prefixDigest, verifier.getPrefixDigest())) {
+                    // bytes returned before were corrupted
+                    return false;
+                }
+                
+                LOG.info(String.format("chunk %s is read again from %s", hash, nodeName));
+                return true;
+            }
+            
+            this.badReplicas.add(hash + "@" + nodeName);
+            this.initializedChunkMap.remove(hash);
+        }
+        return false;
+    }
+    
+    private ChunkInputStreamStatistics.Source getChunkSource(HTTPUserInterfaceClient client, DataChunkStatus status) throws IOException {
+        switch (status.getSource()) {
+            case DATA_CHUNK_SOURCE_LOCAL_CLUSTER:
+                return ChunkInputStreamStatistics.Source.LOCAL_CLUSTER_REST;
+            default:
+                if(client.canDirectAccessCacheFile(status)) {
+                    return ChunkInputStreamStatistics.Source.DIRECT_CACHE;
+                }
+                return ChunkInputStreamStatistics.Source.REMOTE_CLUSTER_REST;
+        }
+    }
+    
+    private void closeChunkData() throws IOException {
+        abortChunkVerification();
+        this.statistics.addBytesDiscarded(this.chunkDataInputStream.getChunkSize() - this.chunkDataInputStream.getOffset());
+        this.chunkDataInputStream.close();
+        this.chunkDataInputStream = null;
+    }
+    
+    private boolean canReuseChunkData() {
+        if(this.chunkDataInputStream == null || !this.chunkDataInputStream.containsOffset(this.offset)) {
+            return false;
+        }
+        
+        long seek = this.offset - this.chunkDataInputStream.getChunkStartOffset();
+        return this.chunkDataInputStream.getOffset() <= seek;
+    }
+    
+    private FileTailCache.FileTail getFileTail() {
+        if(this.tailFetchFailed) {
+            return null;
+        }
+        
+        FileTailCache tailCache = FileTailCache.getInstance();
+        String key = FileTailCache.makeKey(this.recipeSource.getMetadata());
+        FileTailCache.FileTail tail = tailCache.get(key);
+        if(tail != null) {
+            return tail;
+        }
+        
+        try {
+            tail = fetchFileTail();
+        } catch (IOException ex) {
+            LOG.debug("cannot fetch a file tail, reading the chunk instead", ex);
+            this.tailFetchFailed = true;
+            return null;
+        }
+        
+        tailCache.put(key, tail);
+        return tail;
+    }
+    
+    /**
+     * Fetches the tail of the file with chunk part requests, instead of
+     * downloading the whole final chunk. The tail does not cross the start
+     * of the final chunk. Tails are verified and shaped like chunk reads,
+     * so with verification only tails holding the whole chunk are fetched.
+     */
+    private FileTailCache.FileTail fetchFileTail() throws IOException {
+        CompactRecipe recipe = this.recipeSource.getRecipe(this.size - 1);
+        int chunkIndex = recipe.getChunkIndex(this.size - 1);
+        if(chunkIndex < 0) {
+            throw new IOException("Cannot find a chunk at offset : " + (this.size - 1));
+        }
+        
+        DataObjectURI uri = this.recipeSource.getMetadata().getURI();
+        String hash = recipe.getChunkHash(chunkIndex);
+        long chunkOffset = recipe.getChunkOffset(chunkIndex);
+        int chunkLength = recipe.getChunkLength(chunkIndex);
+        long tailStart = Math.max(this.tailStartOffset, chunkOffset);
+        
+        ChunkHashVerifier verifier = null;
+        if(verifyChunkHash && ChunkHashVerifier.isSupported(recipe.getHashAlgorithm())) {
+            if(tailStart != chunkOffset) {
+                throw new IOException("Cannot verify a file tail not holding the whole chunk : " + hash);
+            }
+            verifier = new ChunkHashVerifier(recipe.getHashAlgorithm(), hash);
+        }
+        
+        long startTime = System.nanoTime();
+        // keep the node of the open chunk stream
+        String chunkNodeName = this.chunkNodeName;
+        HTTPUserInterfaceClient client = getClient(recipe, chunkIndex);
+        String nodeName = this.chunkNodeName;
+        this.chunkNodeName = chunkNodeName;
+        
+        DataChunkStatus dataChunkStatus = getChunkStatus(client, uri, hash);
+        
+        int partSize = dataChunkStatus.getPartSize();
+        if(partSize <= 0) {
+            throw new IOException("Unknown part size of a chunk : " + hash);
+        }
+        
+        ChunkInputStreamStatistics.Source source = getChunkSource(client, dataChunkStatus);
+        BandwidthShaper shaper = BandwidthShaper.getInstance();
+        byte[] data = new byte[(int) (this.size - tailStart)];
+        int pos = 0;
+        
+        try {
+            int firstPartNo = BigKeyValueStoreUtils.getPartNo(tailStart - chunkOffset, partSize);
+            int lastPartNo = BigKeyValueStoreUtils.getPartNo(chunkLength - 1, partSize);
+            for(int partNo = firstPartNo; partNo <= lastPartNo; partNo++) {
+                long partStart = chunkOffset + BigKeyValueStoreUtils.getPartStartOffset(partSize, partNo);
+                InputStream is = client.getDataChunkPart(uri, hash, partNo, dataChunkStatus);
+                try {
+                    skipFully(is, tailStart + pos - partStart);
+                    
+                    int read = 0;
+                    while(pos < data.length && (read = is.read(data, pos, data.length - pos)) >= 0) {
+                        pos += read;
+                        this.statistics.addBytesRead(source, read);
+                        
+                        if(shaper.isEnabled() && source != ChunkInputStreamStatistics.Source.DIRECT_CACHE) {
+                            shapeBandwidth(shaper, source, read);
+                        }
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+            
+            this.statistics.addBlockedTimeNanos(System.nanoTime() - startTime);
+            
+            if(pos != data.length) {
+                throw new IOException(String.format("Cannot read a file tail, expected %d bytes but read %d bytes", data.length, pos));
+            }
+            
+            if(verifier != null) {
+                verifier.update(data, 0, data.length);
+                ChunkHashVerifier finished = verifier;
+                verifier = null;
+                if(!finished.verify()) {
+                    // reading the chunk then goes to another replica
+                    LOG.warn(String.format("file tail of chunk %s from %s does not match its hash", hash, nodeName));
+                    
+                    this.badReplicas.add(hash + "@" + nodeName);
+                    this.initializedChunkMap.remove(hash);
+                    throw new IOException(String.format("Checksum error: file tail of chunk %s from %s", hash, nodeName));
+                }
+            }
+        } finally {
+            if(verifier != null) {
+                verifier.abort();
+            }
+        }
+        return new FileTailCache.FileTail(tailStart, data);
+    }
+    
+    private void skipFully(InputStream is, long size) throws IOException {
+        long remaining = size;
+        while(remaining > 0) {
+            long skipped = is.skip(remaining);
+            if(skipped <= 0) {
+                if(is.read() < 0) {
+                    throw new IOException("Unexpected end of chunk part");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+            this.statistics.addBytesSkipped(skipped);
+        }
+    }
+    
+    /**
+     * Reads chunk data at the current chunk offset, bypassing the buffer.
+     */
+    private int readChunkData(byte[] bytes, int off, int len) throws IOException {
         if(this.offset >= this.size) {
             return -1;
         }
         
+        long lavailable = this.size - this.offset;
+        int remaining = len;
+        if(remaining > lavailable) {
+            remaining = (int) lavailable;
+        }
+        
+        // footer reads of columnar formats, unless we are already streaming there
+        if(this.offset >= this.tailStartOffset && !canReuseChunkData()) {
+            FileTailCache.FileTail tail = getFileTail();
+            if(tail != null && tail.containsOffset(this.offset)) {
+                addAccessedRange(tail.getStartOffset(), tail.getStartOffset() + tail.getLength());
+                int read = tail.read(this.offset, bytes, off, remaining);
+                this.offset += read;
+                return read;
+            }
+        }
+        
+        long startTime = System.nanoTime();
         loadChunkData();
         if(this.chunkDataInputStream == null) {
             throw new IOException("Cannot read chunk data");
         }
         
-        int ch = this.chunkDataInputStream.read();
-        if(ch >= 0) {
-            this.offset++;
+        int chunkRemaining = (int) Math.min(this.chunkDataInputStream.getChunkSize() - this.chunkDataInputStream.getOffset(), remaining);
+        int read = this.chunkDataInputStream.read(bytes, off, chunkRemaining);
+        this.statistics.addBlockedTimeNanos(System.nanoTime() - startTime);
+        if(read >= 0) {
+            this.statistics.addBytesRead(this.chunkSource, read);
+            
+            BandwidthShaper shaper = BandwidthShaper.getInstance();
+            if(shaper.isEnabled() && this.chunkSource != ChunkInputStreamStatistics.Source.DIRECT_CACHE) {
+                shapeBandwidth(shaper, this.chunkSource, read);
+            }
+            
+            if(this.chunkVerifier != null) {
+                // on a checksum error, the position stays before the bytes read
+                verifyChunkData(bytes, off, read);
+            }
+            this.offset += read;
+        } else if(verifyChunkHash) {
+            // truncated chunk data
+            throw new IOException(String.format("Unexpected end of chunk data at offset %d", this.offset));
         }
-        return ch;
+        return read;
+    }
+    
+    private void shapeBandwidth(BandwidthShaper shaper, ChunkInputStreamStatistics.Source source, int bytes) throws IOException {
+        if(this.shaperState == null) {
+            this.shaperState = shaper.newStream(this.streamClass);
+        }
+        
+        String clusterName = this.recipeSource.getMetadata().getURI().getClusterName();
+        boolean remote = source == ChunkInputStreamStatistics.Source.REMOTE_CLUSTER_REST;
+        this.statistics.addThrottledTimeNanos(shaper.acquire(this.shaperState, clusterName, remote, bytes));
+    }
+    
+    private boolean fillBuffer() throws IOException {
+        // buffer must be drained
+        this.bufferStart = this.offset;
+        this.bufferPos = 0;
+        this.bufferLimit = 0;
+        
+        int read = readChunkData(this.buffer, 0, this.buffer.length);
+        if(read <= 0) {
+            return false;
+        }
+        
+        this.bufferLimit = read;
+        return true;
     }
     
     @Override
-    public synchronized int read(byte[] bytes, int off, int len) throws IOException {
-        if(this.offset >= this.size) {
-            return -1;
+    public int read() throws IOException {
+        // fast path, no monitor
+        int pos = this.bufferPos;
+        if(pos < this.bufferLimit) {
+            this.bufferPos = pos + 1;
+            return this.buffer[pos] & 0xff;
+        }
+        
+        return readSlow();
+    }
+    
+    private synchronized int readSlow() throws IOException {
+        if(this.bufferPos >= this.bufferLimit) {
+            if(!fillBuffer()) {
+                return -1;
+            }
         }
         
+        return this.buffer[this.bufferPos++] & 0xff;
+    }
+    
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
         if(bytes == null) {
             throw new IllegalArgumentException("bytes is null");
         }
@@ -281,27 +892,170 @@ public class HTTPChunkInputStream extends FSInputStream {
             throw new IllegalArgumentException("len is negative");
         }
         
-        long lavailable = this.size - this.offset;
-        int remaining = Math.min(len, bytes.length);
-        if(remaining > lavailable) {
-            remaining = (int) lavailable;
+        // fast path, no monitor
+        int pos = this.bufferPos;
+        int buffered = this.bufferLimit - pos;
+        if(len > 0 && len <= buffered) {
+            System.arraycopy(this.buffer, pos, bytes, off, len);
+            this.bufferPos = pos + len;
+            return len;
         }
         
-        loadChunkData();
-        if(this.chunkDataInputStream == null) {
-            throw new IOException("Cannot read chunk data");
+        return readSlow(bytes, off, len);
+    }
+    
+    private synchronized int readSlow(byte[] bytes, int off, int len) throws IOException {
+        int remaining = Math.min(len, bytes.length - off);
+        if(remaining <= 0) {
+            return 0;
         }
         
-        int chunkRemaining = (int) Math.min(this.chunkDataInputStream.getChunkSize() - this.chunkDataInputStream.getOffset(), remaining);
-        int read = this.chunkDataInputStream.read(bytes, off, chunkRemaining);
-        if(read >= 0) {
-            this.offset += read;
+        int buffered = this.bufferLimit - this.bufferPos;
+        if(buffered > 0) {
+            // serve what we have, the caller comes back for the rest
+            int n = Math.min(buffered, remaining);
+            System.arraycopy(this.buffer, this.bufferPos, bytes, off, n);
+            this.bufferPos += n;
+            return n;
         }
-        return read;
+        
+        if(remaining >= this.buffer.length) {
+            // large read, no need to copy through the buffer
+            int read = readChunkData(bytes, off, remaining);
+            this.bufferStart = this.offset;
+            this.bufferPos = 0;
+            this.bufferLimit = 0;
+            return read;
+        }
+        
+        if(!fillBuffer()) {
+            return -1;
+        }
+        
+        int n = Math.min(this.bufferLimit, remaining);
+        System.arraycopy(this.buffer, 0, bytes, off, n);
+        this.bufferPos = n;
+        return n;
+    }
+    
+    /**
+     * Reads data at the given position without changing the stream
+     * position, the read buffer or the open chunk stream. Data is served
+     * from the read buffer or the file tail if they have it, otherwise
+     * from a temporary chunk stream.
+     */
+    protected synchronized int readAt(long position, byte[] bytes, int off, int len) throws IOException {
+        if(position >= this.size) {
+            return -1;
+        }
+        
+        int remaining = (int) Math.min(len, this.size - position);
+        if(remaining <= 0) {
+            return 0;
+        }
+        
+        if(position >= this.bufferStart && position < this.bufferStart + this.bufferLimit) {
+            int n = (int) Math.min(this.bufferStart + this.bufferLimit - position, remaining);
+            System.arraycopy(this.buffer, (int) (position - this.bufferStart), bytes, off, n);
+            return n;
+        }
+        
+        if(position >= this.tailStartOffset) {
+            FileTailCache.FileTail tail = getFileTail();
+            if(tail != null && tail.containsOffset(position)) {
+                addAccessedRange(tail.getStartOffset(), tail.getStartOffset() + tail.getLength());
+                return tail.read(position, bytes, off, remaining);
+            }
+        }
+        
+        return readChunkDataAt(position, bytes, off, remaining);
+    }
+    
+    /**
+     * Reads data of a chunk at the given position with a temporary chunk
+     * stream. Only reads covering the whole chunk can be verified.
+     */
+    private int readChunkDataAt(long position, byte[] bytes, int off, int len) throws IOException {
+        CompactRecipe recipe = this.recipeSource.getRecipe(position);
+        int chunkIndex = recipe.getChunkIndex(position);
+        if(chunkIndex < 0) {
+            throw new IOException("Cannot find a chunk at offset : " + position);
+        }
+        
+        DataObjectURI uri = this.recipeSource.getMetadata().getURI();
+        String hash = recipe.getChunkHash(chunkIndex);
+        long chunkOffset = recipe.getChunkOffset(chunkIndex);
+        int chunkLength = recipe.getChunkLength(chunkIndex);
+        long seek = position - chunkOffset;
+        int length = (int) Math.min(len, chunkLength - seek);
+        
+        ChunkHashVerifier verifier = null;
+        if(verifyChunkHash && seek == 0 && length == chunkLength && ChunkHashVerifier.isSupported(recipe.getHashAlgorithm())) {
+            verifier = new ChunkHashVerifier(recipe.getHashAlgorithm(), hash);
+        }
+        
+        long startTime = System.nanoTime();
+        // keep the node of the open chunk stream
+        String chunkNodeName = this.chunkNodeName;
+        HTTPUserInterfaceClient client = getClient(recipe, chunkIndex);
+        String nodeName = this.chunkNodeName;
+        this.chunkNodeName = chunkNodeName;
+        addAccessedRange(chunkOffset, chunkOffset + chunkLength);
+        
+        DataChunkStatus dataChunkStatus = getChunkStatus(client, uri, hash);
+        
+        ChunkInputStreamStatistics.Source source = getChunkSource(client, dataChunkStatus);
+        BandwidthShaper shaper = BandwidthShaper.getInstance();
+        int pos = 0;
+        
+        InputStream is = client.getDataChunk(uri, hash, dataChunkStatus);
+        try {
+            this.statistics.incrementChunkLoads();
+            skipFully(is, seek);
+            
+            int read = 0;
+            while(pos < length && (read = is.read(bytes, off + pos, length - pos)) >= 0) {
+                pos += read;
+                this.statistics.addBytesRead(source, read);
+                
+                if(shaper.isEnabled() && source != ChunkInputStreamStatistics.Source.DIRECT_CACHE) {
+                    shapeBandwidth(shaper, source, read);
+                }
+            }
+            
+            this.statistics.addBlockedTimeNanos(System.nanoTime() - startTime);
+            
+            if(pos != length) {
+                throw new IOException(String.format("Unexpected end of chunk data at offset %d", position + pos));
+            }
+            
+            if(verifier != null) {
+                verifier.update(bytes, off, length);
+                ChunkHashVerifier finished = verifier;
+                verifier = null;
+                if(!finished.verify()) {
+                    LOG.warn(String.format("chunk %s from %s does not match its hash", hash, nodeName));
+                    
+                    this.badReplicas.add(hash + "@" + nodeName);
+                    this.initializedChunkMap.remove(hash);
+                    throw new ChecksumException(String.format("Checksum error: chunk %s from %s", hash, nodeName), chunkOffset);
+                }
+            }
+        } finally {
+            if(verifier != null) {
+                verifier.abort();
+            }
+            is.close();
+        }
+        return pos;
     }
     
     @Override
     public synchronized void close() throws IOException {
+        if(this.recipeSource != null && LOG.isDebugEnabled()) {
+            LOG.debug(String.format("closing a stream of %s - %s", this.recipeSource.getMetadata().getURI().toString(), this.statistics.toString()));
+        }
+        
         if(this.clients != null) {
             //Collection<HTTPUserInterfaceClient> clients = this.clients.values();
             // do not disconnect these
@@ -314,16 +1068,25 @@ public class HTTPChunkInputStream extends FSInputStream {
         this.localClient = null;
         this.localNodeName = null;
         
-        this.recipe = null;
+        this.recipeSource = null;
         this.offset = 0;
         this.size = 0;
         
+        this.bufferPos = 0;
+        this.bufferLimit = 0;
+        this.bufferStart = 0;
+        
+        abortChunkVerification();
         if(this.chunkDataInputStream != null) {
             this.chunkDataInputStream.close();
             this.chunkDataInputStream = null;
         }
         
+        this.chunkSource = null;
+        this.chunkNodeName = null;
+        this.badReplicas.clear();
         this.initializedChunkMap.clear();
+        this.accessedRanges.clear();
     }
     
     @Override
@@ -0,0 +1,78 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Failure of a request answered by the service with an HTTP error status.
+ *
+ * Transports throw this in place of errors of the RESTful client that
+ * report a response status, so callers decide on the status rather than
+ * on messages.
+ *
+ * @author iychoi
+ */
+public class HTTPStatusException extends IOException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public static final int SC_NOT_FOUND = 404;
+    public static final int SC_METHOD_NOT_ALLOWED = 405;
+    
+    // e.g., "HTTP response code: 405 for URL", "response status of 404 Not Found"
+    private static final Pattern RESPONSE_STATUS = Pattern.compile("(?i)\\b(?:code|status)\\b\\D{0,16}\\b([1-5]\\d\\d)\\b");
+    
+    private int status;
+    
+    public HTTPStatusException(int status, String message, Throwable cause) {
+        super(message, cause);
+        
+        this.status = status;
+    }
+    
+    public int getStatus() {
+        return this.status;
+    }
+    
+    /**
+     * Converts an error of the RESTful client into HTTPStatusException if it
+     * reports a response status. FileNotFoundException is kept, as callers
+     * handle missing data objects by it.
+     */
+    static IOException fromClientError(IOException ex) {
+        if(ex == null || ex instanceof HTTPStatusException || ex instanceof FileNotFoundException) {
+            return ex;
+        }
+        
+        // the RESTful client reports the status only in the message
+        Throwable t = ex;
+        while(t != null) {
+            String message = t.getMessage();
+            if(message != null) {
+                Matcher matcher = RESPONSE_STATUS.matcher(message);
+                if(matcher.find()) {
+                    return new HTTPStatusException(Integer.parseInt(matcher.group(1)), ex.getMessage(), ex);
+                }
+            }
+            t = t.getCause();
+        }
+        return ex;
+    }
+}
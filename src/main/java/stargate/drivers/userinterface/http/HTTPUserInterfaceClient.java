@@ -16,12 +16,19 @@
 package stargate.drivers.userinterface.http;
 
 import stargate.commons.datastore.DirectCacheFileInputStream;
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.DataInputStream;
 import java.net.URI;
+import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import stargate.commons.cluster.Cluster;
@@ -32,7 +39,6 @@ import stargate.commons.datasource.DataExportEntry;
 import stargate.commons.datastore.BigKeyValueStoreUtils;
 import stargate.commons.io.AbstractSeekableInputStream;
 import stargate.commons.recipe.Recipe;
-import stargate.commons.restful.RestfulClient;
 import stargate.commons.service.FSServiceInfo;
 import stargate.commons.statistics.StatisticsEntry;
 import stargate.commons.statistics.StatisticsType;
@@ -50,22 +56,76 @@ import stargate.commons.utils.PathUtils;
 public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
 
     private static final Log LOG = LogFactory.getLog(HTTPUserInterfaceClient.class);
+    private static final OperationTracer TRACER = OperationTracer.getInstance();
+    
+    public static final String TRANSPORT_DEDICATED = "dedicated";
+    public static final String TRANSPORT_SHARED = "shared";
     
     private static String clientNodeName;
     private static Cluster localCluster;
+    private static ChunkTransferCompression transferCompression;
+    private static boolean binaryMetadataEnabled = false;
+    private static String transportType = TRANSPORT_DEDICATED;
+    private static int sharedTransportConnections = 4;
+    private static int sharedTransportRequestConnections = 2;
+    private static long sharedTransportWaitTimeout = 60000;
     
     private URI serviceUri;
     private String username;
     private String password;
-    private RestfulClient restfulClient;
+    private UserInterfaceTransport transport;
     private long connectionEstablishedTime;
     private long lastActiveTime;
     private boolean connected = false;
+    private EndpointSupport compressedTransfer = new EndpointSupport("compressed transfer");
+    private EndpointSupport binaryMetadata = new EndpointSupport("binary metadata");
+    private EndpointSupport glob = new EndpointSupport("glob expansion");
+    private EndpointSupport recipeSegment = new EndpointSupport("recipe segments");
     
     public static void setClientNodeName(String clientNodeName) {
         HTTPUserInterfaceClient.clientNodeName = clientNodeName;
     }
     
+    public static void setTransferCompression(ChunkTransferCompression transferCompression) {
+        HTTPUserInterfaceClient.transferCompression = transferCompression;
+    }
+    
+    public static void setBinaryMetadataEnabled(boolean binaryMetadataEnabled) {
+        HTTPUserInterfaceClient.binaryMetadataEnabled = binaryMetadataEnabled;
+    }
+    
+    /**
+     * Shared transports hold sharedTransportConnections connections for
+     * chunk data and sharedTransportRequestConnections for other requests,
+     * so chunk streams cannot starve metadata and recipe requests.
+     */
+    public static void setTransport(String transportType, int sharedTransportConnections, int sharedTransportRequestConnections, long sharedTransportWaitTimeout) {
+        if(transportType == null || transportType.isEmpty()) {
+            throw new IllegalArgumentException("transportType is null or empty");
+        }
+        
+        if(!transportType.equalsIgnoreCase(TRANSPORT_DEDICATED) && !transportType.equalsIgnoreCase(TRANSPORT_SHARED)) {
+            throw new IllegalArgumentException("unknown transport type : " + transportType);
+        }
+        
+        if(sharedTransportConnections <= 0) {
+            throw new IllegalArgumentException("sharedTransportConnections is not positive");
+        }
+        
+        if(sharedTransportRequestConnections <= 0) {
+            throw new IllegalArgumentException("sharedTransportRequestConnections is not positive");
+        }
+        
+        if(sharedTransportWaitTimeout <= 0) {
+            throw new IllegalArgumentException("sharedTransportWaitTimeout is not positive");
+        }
+        
+        HTTPUserInterfaceClient.transportType = transportType.toLowerCase();
+        HTTPUserInterfaceClient.sharedTransportConnections = sharedTransportConnections;
+        HTTPUserInterfaceClient.sharedTransportRequestConnections = sharedTransportRequestConnections;
+        HTTPUserInterfaceClient.sharedTransportWaitTimeout = sharedTransportWaitTimeout;
+    }
+    
     public HTTPUserInterfaceClient(URI serviceURI, String username, String password) throws IOException {
         if(serviceURI == null) {
             throw new IllegalArgumentException("serviceURI is null");
@@ -82,7 +142,11 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
     @Override
     public synchronized void connect() throws IOException {
         if(!this.connected) {
-            this.restfulClient = new RestfulClient(this.serviceUri, this.username, this.password);
+            if(TRANSPORT_SHARED.equals(transportType)) {
+                this.transport = SharedRestfulClientTransport.acquire(this.serviceUri, this.username, this.password, sharedTransportConnections, sharedTransportRequestConnections, sharedTransportWaitTimeout);
+            } else {
+                this.transport = new RestfulClientTransport(this.serviceUri, this.username, this.password);
+            }
             this.connectionEstablishedTime = DateTimeUtils.getTimestamp();
             this.lastActiveTime = this.connectionEstablishedTime;
             this.connected = true;
@@ -94,9 +158,9 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
     @Override
     public synchronized void disconnect() {
         if(this.connected) {
-            if(this.restfulClient != null) {
-                this.restfulClient.close();
-                this.restfulClient = null;
+            if(this.transport != null) {
+                this.transport.close();
+                this.transport = null;
             }
             
             this.connected = false;
@@ -182,7 +246,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/live
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_CHECK_LIVE_PATH);
-        Boolean live = (Boolean) this.restfulClient.get(url);
+        Boolean live = (Boolean) this.transport.get(url);
 
         updateLastActivetime();
         return live;
@@ -196,7 +260,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/svcconfig
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_SERVICE_CONFIG_PATH);
-        String config = (String) this.restfulClient.get(url);
+        String config = (String) this.transport.get(url);
 
         updateLastActivetime();
         return config;
@@ -210,7 +274,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/fssvcinfo
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_FS_SERVICE_INFO_PATH);
-        FSServiceInfo info = (FSServiceInfo) this.restfulClient.get(url);
+        FSServiceInfo info = (FSServiceInfo) this.transport.get(url);
 
         updateLastActivetime();
         return info;
@@ -224,7 +288,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/idatapack
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_INITIAL_DATA_PACK_PATH);
-        UserInterfaceInitialDataPack dataPack = (UserInterfaceInitialDataPack) this.restfulClient.get(url);
+        UserInterfaceInitialDataPack dataPack = (UserInterfaceInitialDataPack) this.transport.get(url);
 
         updateLastActivetime();
         
@@ -246,7 +310,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/cluster/clustername
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_CLUSTER_PATH, name);
-        Cluster cluster = (Cluster) this.restfulClient.get(url);
+        Cluster cluster = (Cluster) this.transport.get(url);
 
         updateLastActivetime();
         
@@ -263,7 +327,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/lcluster
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_LOCAL_CLUSTER_PATH);
-        Cluster cluster = (Cluster) this.restfulClient.get(url);
+        Cluster cluster = (Cluster) this.transport.get(url);
 
         updateLastActivetime();
         
@@ -282,7 +346,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/activate
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_ACTIVATE_CLUSTER_PATH);
-        Boolean response = (Boolean) this.restfulClient.post(url, null);
+        Boolean response = (Boolean) this.transport.post(url, null);
 
         updateLastActivetime();
     }
@@ -295,7 +359,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/active
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_CHECK_ACTIVE_CLUSTER_PATH);
-        Boolean active = (Boolean) this.restfulClient.get(url);
+        Boolean active = (Boolean) this.transport.get(url);
 
         updateLastActivetime();
         return active;
@@ -309,7 +373,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/lnode
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_LOCAL_NODE_PATH);
-        Node node = (Node) this.restfulClient.get(url);
+        Node node = (Node) this.transport.get(url);
 
         updateLastActivetime();
         
@@ -326,7 +390,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/leadernode
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_LEADER_NODE_PATH);
-        Node node = (Node) this.restfulClient.get(url);
+        Node node = (Node) this.transport.get(url);
 
         updateLastActivetime();
         
@@ -347,7 +411,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/rcluster/clustername
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_REMOTE_CLUSTER_PATH, name);
-        Cluster cluster = (Cluster) this.restfulClient.get(url);
+        Cluster cluster = (Cluster) this.transport.get(url);
 
         updateLastActivetime();
         return cluster;
@@ -361,7 +425,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/lrcluster
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_LIST_REMOTE_CLUSTERS_PATH);
-        String[] clusters = (String[]) this.restfulClient.get(url);
+        String[] clusters = (String[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(clusters);
@@ -375,7 +439,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/grclusters
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_REMOTE_CLUSTERS_PATH);
-        Cluster[] clusters = (Cluster[]) this.restfulClient.get(url);
+        Cluster[] clusters = (Cluster[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(clusters);
@@ -394,7 +458,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         // URL pattern = http://xxx.xxx.xxx.xxx/api/rcluster
         // form param = object
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_ADD_REMOTE_CLUSTER_PATH);
-        Boolean result = (Boolean) this.restfulClient.put(url, cluster);
+        Boolean result = (Boolean) this.transport.put(url, cluster);
 
         updateLastActivetime();
     }
@@ -411,7 +475,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/rcluster/name
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_REMOVE_REMOTE_CLUSTER_PATH, name);
-        Boolean response = (Boolean) this.restfulClient.delete(url);
+        Boolean response = (Boolean) this.transport.delete(url);
 
         updateLastActivetime();
     }
@@ -424,7 +488,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/srclusters
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_SYNC_REMOTE_CLUSTERS_PATH);
-        Boolean response = (Boolean) this.restfulClient.post(url, null);
+        Boolean response = (Boolean) this.transport.post(url, null);
 
         updateLastActivetime();
     }
@@ -442,7 +506,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         // URL pattern = http://xxx.xxx.xxx.xxx/api/metadata/path/to/resource
         String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_METADATA_PATH, path);
-        DataObjectMetadata metadata = (DataObjectMetadata) this.restfulClient.get(url);
+        DataObjectMetadata metadata = (DataObjectMetadata) this.transport.get(url);
 
         updateLastActivetime();
         return metadata;
@@ -461,12 +525,159 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         // URL pattern = http://xxx.xxx.xxx.xxx/api/lmetadata/path/to/resource
         String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_LIST_METADATA_PATH, path);
-        DataObjectMetadata[] metadataList = (DataObjectMetadata[]) this.restfulClient.get(url);
+        DataObjectMetadata[] metadataList = (DataObjectMetadata[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(metadataList);
     }
     
+    /**
+     * Returns metadata of entries matching the glob pattern in the uri path,
+     * expanded by the service. Returns null if the service does not support
+     * glob expansion.
+     */
+    public Collection<DataObjectMetadata> globDataObjectMetadata(DataObjectURI uri) throws FileNotFoundException, IOException {
+        if(!this.connected) {
+            throw new IOException("Client is not connected");
+        }
+        
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        if(!this.glob.isAvailable()) {
+            return null;
+        }
+        
+        // URL pattern = http://xxx.xxx.xxx.xxx/api/gmetadata/cluster?pattern=/path/*/to
+        String pattern = URLEncoder.encode(uri.getPath(), "UTF-8");
+        String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GLOB_METADATA_PATH, uri.getClusterName()) + "?pattern=" + pattern;
+        
+        DataObjectMetadata[] metadataList;
+        try {
+            metadataList = (DataObjectMetadata[]) this.transport.get(url);
+        } catch (FileNotFoundException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            if(!EndpointSupport.isUnsupportedResponse(ex)) {
+                throw ex;
+            }
+            
+            this.glob.setUnsupported(this.serviceUri, ex);
+            return null;
+        }
+        
+        this.glob.setSupported();
+        updateLastActivetime();
+        if(metadataList == null) {
+            return null;
+        }
+        return Arrays.asList(metadataList);
+    }
+    
+    private boolean useBinaryMetadata() {
+        return binaryMetadataEnabled && this.binaryMetadata.isAvailable();
+    }
+    
+    /**
+     * Downloads a binary metadata response. Returns null if the service
+     * answered that it does not serve binary metadata.
+     */
+    private InputStream downloadBinaryMetadata(String url) throws FileNotFoundException, IOException {
+        InputStream is;
+        try {
+            is = this.transport.download(url);
+        } catch (FileNotFoundException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            if(!EndpointSupport.isUnsupportedResponse(ex)) {
+                throw ex;
+            }
+            
+            this.binaryMetadata.setUnsupported(this.serviceUri, ex);
+            return null;
+        }
+        
+        this.binaryMetadata.setSupported();
+        return is;
+    }
+    
+    /**
+     * Handles FileNotFoundException of a binary metadata request. Until
+     * binary metadata is confirmed, it may come from an older service not
+     * serving the endpoint, so the caller asks the JSON endpoint instead.
+     */
+    private void checkBinaryMetadataNotFound(FileNotFoundException ex) throws FileNotFoundException {
+        if(this.binaryMetadata.isConfirmed()) {
+            throw ex;
+        }
+    }
+    
+    /**
+     * Opens a streaming reader over the binary listing of the directory.
+     * Returns null if the service does not provide binary listings. Older
+     * services may also answer FileNotFoundException for binary listings.
+     */
+    public BinaryMetadataListReader openDataObjectMetadataList(DataObjectURI uri) throws IOException {
+        if(!this.connected) {
+            throw new IOException("Client is not connected");
+        }
+        
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        if(!useBinaryMetadata()) {
+            return null;
+        }
+        
+        // URL pattern = http://xxx.xxx.xxx.xxx/api/blmetadata/path/to/resource
+        String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+        String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_LIST_METADATA_BINARY_PATH, path);
+        
+        InputStream is = downloadBinaryMetadata(url);
+        if(is == null) {
+            return null;
+        }
+        
+        updateLastActivetime();
+        return new BinaryMetadataListReader(is);
+    }
+    
+    /**
+     * Lists the directory using the binary listing if available,
+     * otherwise falls back to JSON.
+     */
+    public Collection<DataObjectMetadata> listDataObjectMetadataStreaming(DataObjectURI uri) throws FileNotFoundException, IOException {
+        BinaryMetadataListReader reader;
+        try {
+            reader = openDataObjectMetadataList(uri);
+        } catch (FileNotFoundException ex) {
+            checkBinaryMetadataNotFound(ex);
+            
+            // the directory exists if the JSON listing succeeds
+            Collection<DataObjectMetadata> metadataList = listDataObjectMetadata(uri);
+            this.binaryMetadata.setUnsupported(this.serviceUri, ex);
+            return metadataList;
+        }
+        
+        if(reader == null) {
+            return listDataObjectMetadata(uri);
+        }
+        
+        try {
+            List<DataObjectMetadata> metadataList = new ArrayList<DataObjectMetadata>();
+            DataObjectMetadata metadata = reader.next();
+            while(metadata != null) {
+                metadataList.add(metadata);
+                metadata = reader.next();
+            }
+            return metadataList;
+        } finally {
+            reader.close();
+        }
+    }
+    
     @Override
     public Recipe getRecipe(DataObjectURI uri) throws IOException {
         if(!this.connected) {
@@ -480,12 +691,163 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         // URL pattern = http://xxx.xxx.xxx.xxx/api/recipe/path/to/resource
         String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_RECIPE_PATH, path);
-        Recipe recipe = (Recipe) this.restfulClient.get(url);
+        Recipe recipe = (Recipe) this.transport.get(url);
 
         updateLastActivetime();
         return recipe;
     }
     
+    private CompactRecipe downloadCompactRecipe(String url) throws FileNotFoundException, IOException {
+        InputStream is = downloadBinaryMetadata(url);
+        if(is == null) {
+            return null;
+        }
+        
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        try {
+            CompactRecipe recipe = BinaryWireFormat.readCompactRecipe(in);
+            updateLastActivetime();
+            return recipe;
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Returns a recipe, decoded directly into CompactRecipe when the service
+     * provides binary recipes.
+     */
+    public CompactRecipe getCompactRecipe(DataObjectURI uri) throws IOException {
+        if(!this.connected) {
+            throw new IOException("Client is not connected");
+        }
+        
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        FileNotFoundException binaryNotFound = null;
+        if(useBinaryMetadata()) {
+            // URL pattern = http://xxx.xxx.xxx.xxx/api/brecipe/path/to/resource
+            String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+            String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_RECIPE_BINARY_PATH, path);
+            try {
+                CompactRecipe recipe = downloadCompactRecipe(url);
+                if(recipe != null) {
+                    return recipe;
+                }
+            } catch (FileNotFoundException ex) {
+                checkBinaryMetadataNotFound(ex);
+                binaryNotFound = ex;
+            }
+        }
+        
+        Recipe recipe = getRecipe(uri);
+        if(binaryNotFound != null) {
+            // the file exists, the service does not serve binary recipes
+            this.binaryMetadata.setUnsupported(this.serviceUri, binaryNotFound);
+        }
+        
+        if(recipe == null) {
+            return null;
+        }
+        return new CompactRecipe(recipe);
+    }
+    
+    /**
+     * Returns null if the request failed, the caller then fetches the whole
+     * recipe, which also tells whether the file is missing.
+     */
+    private CompactRecipe downloadCompactRecipeSegment(String url) throws IOException {
+        InputStream is;
+        try {
+            is = this.transport.download(url);
+        } catch (IOException ex) {
+            // FileNotFoundException may also come from older services without segments
+            if(EndpointSupport.isUnsupportedResponse(ex)) {
+                this.recipeSegment.setUnsupported(this.serviceUri, ex);
+            } else {
+                LOG.debug("cannot fetch a recipe segment from " + this.serviceUri.toString(), ex);
+            }
+            return null;
+        }
+        
+        this.recipeSegment.setSupported();
+        
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        try {
+            CompactRecipe recipe = BinaryWireFormat.readCompactRecipe(in);
+            updateLastActivetime();
+            return recipe;
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Returns a recipe holding only chunks overlapping the range.
+     * Returns null if the service does not provide recipe segments or the
+     * request failed.
+     */
+    public CompactRecipe getCompactRecipeSegment(DataObjectURI uri, long offset, long length) throws FileNotFoundException, IOException {
+        if(!this.connected) {
+            throw new IOException("Client is not connected");
+        }
+        
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        if(offset < 0) {
+            throw new IllegalArgumentException("offset is negative");
+        }
+        
+        if(length <= 0) {
+            throw new IllegalArgumentException("length is not positive");
+        }
+        
+        if(!this.recipeSegment.isAvailable()) {
+            return null;
+        }
+        
+        // URL pattern = http://xxx.xxx.xxx.xxx/api/brecipeseg/path/to/file?offset=0&length=1024
+        String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+        String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_RECIPE_SEGMENT_BINARY_PATH, path) + String.format("?offset=%d&length=%d", offset, length);
+        return downloadCompactRecipeSegment(url);
+    }
+    
+    /**
+     * Returns a recipe holding only chunks overlapping the range, scheduling
+     * transfers of those chunks only. Returns null if the service does not
+     * provide recipe segments or the request failed.
+     */
+    public CompactRecipe getRemoteCompactRecipeSegmentWithTransferSchedule(DataObjectURI uri, long offset, long length) throws FileNotFoundException, IOException {
+        if(!this.connected) {
+            throw new IOException("Client is not connected");
+        }
+        
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        if(offset < 0) {
+            throw new IllegalArgumentException("offset is negative");
+        }
+        
+        if(length <= 0) {
+            throw new IllegalArgumentException("length is not positive");
+        }
+        
+        if(!this.recipeSegment.isAvailable()) {
+            return null;
+        }
+        
+        // URL pattern = http://xxx.xxx.xxx.xxx/api/brrecipesegwts/path/to/file?offset=0&length=1024
+        String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+        String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_REMOTE_RECIPE_SEGMENT_WITH_TRANSFER_SCHEDULE_BINARY_PATH, path) + String.format("?offset=%d&length=%d", offset, length);
+        return downloadCompactRecipeSegment(url);
+    }
+    
     @Override
     public Collection<String> listRecipes() throws IOException {
         if(!this.connected) {
@@ -494,7 +856,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/lrecipe
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_LIST_RECIPES_PATH);
-        String[] recipes = (String[]) this.restfulClient.get(url);
+        String[] recipes = (String[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(recipes);
@@ -512,7 +874,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/recipe/path/to/file
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_REMOVE_RECIPE_PATH, uri.getPath());
-        Boolean result = (Boolean) this.restfulClient.delete(url);
+        Boolean result = (Boolean) this.transport.delete(url);
 
         updateLastActivetime();
     }
@@ -525,12 +887,12 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/srecipes
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_SYNC_RECIPES_PATH);
-        Boolean response = (Boolean) this.restfulClient.post(url, null);
+        Boolean response = (Boolean) this.transport.post(url, null);
 
         updateLastActivetime();
     }
 
-    private boolean canDirectAccessCacheFile(DataChunkStatus status) throws IOException {
+    public boolean canDirectAccessCacheFile(DataChunkStatus status) throws IOException {
         detectClientNode();
         if(status.getCacheNodeName() != null && status.getLocalCachePath() != null && status.getCacheNodeName().equals(clientNodeName)) {
             return true;
@@ -557,7 +919,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         String pathHash = PathUtils.concatPath(path, hash);
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_REQUEST_DATA_CHUNK_PATH, pathHash);
 
-        DataChunkStatus status = (DataChunkStatus) this.restfulClient.get(url);
+        DataChunkStatus status = (DataChunkStatus) this.transport.get(url);
 
         updateLastActivetime();
         return status;
@@ -602,16 +964,26 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         InputStream is = null;
         switch (status.getSource()) {
             case DATA_CHUNK_SOURCE_LOCAL_CLUSTER:
-                is = getDataChunkRest(uri, hash);
+                is = getDataChunkRest(uri, hash, false);
                 break;
             case DATA_CHUNK_SOURCE_REMOTE_CLUSTER:
                 if(canDirectAccessCacheFile(status)) {
                     // file cache
-                    LOG.info(String.format("Reading cache (%s) from local fs directly (%s)", hash, status.getLocalCachePathString()));
+                    if(LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Reading cache (%s) from local fs directly (%s)", hash, status.getLocalCachePathString()));
+                    }
+                    if(TRACER.isSampled(OperationTracer.Operation.READ_CHUNK_DIRECT_CACHE)) {
+                        TRACER.trace(OperationTracer.Operation.READ_CHUNK_DIRECT_CACHE, hash);
+                    }
                     is = getDataChunkDirectCacheAccess(status);
                 } else {
-                    LOG.info(String.format("Reading cache (%s) via REST service", hash));
-                    is = getDataChunkRest(uri, hash);
+                    if(LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Reading cache (%s) via REST service", hash));
+                    }
+                    if(TRACER.isSampled(OperationTracer.Operation.READ_CHUNK_REST)) {
+                        TRACER.trace(OperationTracer.Operation.READ_CHUNK_REST, hash);
+                    }
+                    is = getDataChunkRest(uri, hash, true);
                 }
                 break;
             default:
@@ -628,7 +1000,55 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         String pathHash = PathUtils.concatPath(path, hash);
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_DATA_CHUNK_PATH, pathHash);
 
-        return this.restfulClient.download(url);
+        return this.transport.downloadChunk(url);
+    }
+    
+    private String selectTransferCodec(ChunkTransferCompression compression, DataObjectURI uri, boolean remoteCluster) {
+        if(compression == null || !this.compressedTransfer.isAvailable()) {
+            return null;
+        }
+        
+        return compression.selectCodec(this.serviceUri.getHost(), uri.getClusterName(), remoteCluster);
+    }
+    
+    private InputStream getDataChunkRest(DataObjectURI uri, String hash, boolean remoteCluster) throws IOException {
+        // the same instance selects and decodes even if it is replaced meanwhile
+        ChunkTransferCompression compression = transferCompression;
+        String codec = selectTransferCodec(compression, uri, remoteCluster);
+        if(codec == null) {
+            return getDataChunkRest(uri, hash);
+        }
+        
+        // URL pattern = http://xxx.xxx.xxx.xxx/api/cdata/codec/path/hash
+        String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+        String pathHash = PathUtils.concatPath(path, hash);
+        String codecPathHash = PathUtils.concatPath(codec, pathHash);
+        String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_COMPRESSED_DATA_CHUNK_PATH, codecPathHash);
+        
+        InputStream is;
+        try {
+            is = this.transport.downloadChunk(url);
+        } catch (FileNotFoundException ex) {
+            if(this.compressedTransfer.isConfirmed()) {
+                throw ex;
+            }
+            
+            // services without compressed transfer may answer so, the plain
+            // transfer tells whether the chunk is missing
+            InputStream plainIs = getDataChunkRest(uri, hash);
+            this.compressedTransfer.setUnsupported(this.serviceUri, ex);
+            return plainIs;
+        } catch (IOException ex) {
+            if(!EndpointSupport.isUnsupportedResponse(ex)) {
+                throw ex;
+            }
+            
+            this.compressedTransfer.setUnsupported(this.serviceUri, ex);
+            return getDataChunkRest(uri, hash);
+        }
+        
+        this.compressedTransfer.setSupported();
+        return compression.decode(this.serviceUri.getHost(), is);
     }
     
     private AbstractSeekableInputStream getDataChunkDirectCacheAccess(DataChunkStatus status) throws IOException {
@@ -674,16 +1094,26 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         InputStream is = null;
         switch (status.getSource()) {
             case DATA_CHUNK_SOURCE_LOCAL_CLUSTER:
-                is = getDataChunkPartRest(uri, hash, partNo);
+                is = getDataChunkPartRest(uri, hash, partNo, false);
                 break;
             case DATA_CHUNK_SOURCE_REMOTE_CLUSTER:
                 if(canDirectAccessCacheFile(status)) {
                     // file cache
-                    LOG.info(String.format("Reading cache (%s) from local fs directly (%s)", hash, status.getLocalCachePathString()));
+                    if(LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Reading cache (%s) from local fs directly (%s)", hash, status.getLocalCachePathString()));
+                    }
+                    if(TRACER.isSampled(OperationTracer.Operation.READ_CHUNK_PART_DIRECT_CACHE)) {
+                        TRACER.trace(OperationTracer.Operation.READ_CHUNK_PART_DIRECT_CACHE, hash, partNo, -1, -1);
+                    }
                     is = getDataChunkPartDirectCacheAccess(status, partNo);
                 } else {
-                    LOG.info(String.format("Reading cache (%s) via REST service", hash));
-                    is = getDataChunkPartRest(uri, hash, partNo);
+                    if(LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Reading cache (%s) via REST service", hash));
+                    }
+                    if(TRACER.isSampled(OperationTracer.Operation.READ_CHUNK_PART_REST)) {
+                        TRACER.trace(OperationTracer.Operation.READ_CHUNK_PART_REST, hash, partNo, -1, -1);
+                    }
+                    is = getDataChunkPartRest(uri, hash, partNo, true);
                 }
                 break;
             default:
@@ -701,7 +1131,48 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         String pathHashPart = PathUtils.concatPath(pathHash, Integer.toString(partNo));
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_DATA_CHUNK_PART_PATH, pathHashPart);
 
-        return this.restfulClient.download(url);
+        return this.transport.downloadChunk(url);
+    }
+    
+    private InputStream getDataChunkPartRest(DataObjectURI uri, String hash, int partNo, boolean remoteCluster) throws IOException {
+        // the same instance selects and decodes even if it is replaced meanwhile
+        ChunkTransferCompression compression = transferCompression;
+        String codec = selectTransferCodec(compression, uri, remoteCluster);
+        if(codec == null) {
+            return getDataChunkPartRest(uri, hash, partNo);
+        }
+        
+        // URL pattern = http://xxx.xxx.xxx.xxx/api/cdatapart/codec/path/hash/###
+        String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+        String pathHash = PathUtils.concatPath(path, hash);
+        String pathHashPart = PathUtils.concatPath(pathHash, Integer.toString(partNo));
+        String codecPathHashPart = PathUtils.concatPath(codec, pathHashPart);
+        String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_COMPRESSED_DATA_CHUNK_PART_PATH, codecPathHashPart);
+        
+        InputStream is;
+        try {
+            is = this.transport.downloadChunk(url);
+        } catch (FileNotFoundException ex) {
+            if(this.compressedTransfer.isConfirmed()) {
+                throw ex;
+            }
+            
+            // services without compressed transfer may answer so, the plain
+            // transfer tells whether the chunk is missing
+            InputStream plainIs = getDataChunkPartRest(uri, hash, partNo);
+            this.compressedTransfer.setUnsupported(this.serviceUri, ex);
+            return plainIs;
+        } catch (IOException ex) {
+            if(!EndpointSupport.isUnsupportedResponse(ex)) {
+                throw ex;
+            }
+            
+            this.compressedTransfer.setUnsupported(this.serviceUri, ex);
+            return getDataChunkPartRest(uri, hash, partNo);
+        }
+        
+        this.compressedTransfer.setSupported();
+        return compression.decode(this.serviceUri.getHost(), is);
     }
     
     private AbstractSeekableInputStream getDataChunkPartDirectCacheAccess(DataChunkStatus status, int partNo) throws IOException {
@@ -728,7 +1199,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
         String pathHash = PathUtils.concatPath(path, hash);
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_SCHEDULE_PREFETCH_PATH, pathHash);
-        TransferAssignment assignment = (TransferAssignment) this.restfulClient.post(url, null);
+        TransferAssignment assignment = (TransferAssignment) this.transport.post(url, null);
 
         updateLastActivetime();
         return assignment;
@@ -747,11 +1218,48 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         // URL pattern = http://xxx.xxx.xxx.xxx/api/rrecipewts/path/to/file
         String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_REMOTE_RECIPE_WITH_TRANSFER_SCHEDULE_PATH, path);
-        Recipe recipe = (Recipe) this.restfulClient.post(url, null);
+        Recipe recipe = (Recipe) this.transport.post(url, null);
 
         updateLastActivetime();
         return recipe;
     }
+    
+    public CompactRecipe getRemoteCompactRecipeWithTransferSchedule(DataObjectURI uri) throws IOException {
+        if(!this.connected) {
+            throw new IOException("Client is not connected");
+        }
+        
+        if(uri == null) {
+            throw new IllegalArgumentException("uri is null");
+        }
+        
+        FileNotFoundException binaryNotFound = null;
+        if(useBinaryMetadata()) {
+            // URL pattern = http://xxx.xxx.xxx.xxx/api/brrecipewts/path/to/file
+            String path = PathUtils.concatPath(uri.getClusterName(), uri.getPath());
+            String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_REMOTE_RECIPE_WITH_TRANSFER_SCHEDULE_BINARY_PATH, path);
+            try {
+                CompactRecipe recipe = downloadCompactRecipe(url);
+                if(recipe != null) {
+                    return recipe;
+                }
+            } catch (FileNotFoundException ex) {
+                checkBinaryMetadataNotFound(ex);
+                binaryNotFound = ex;
+            }
+        }
+        
+        Recipe recipe = getRemoteRecipeWithTransferSchedule(uri);
+        if(binaryNotFound != null) {
+            // the file exists, the service does not serve binary recipes
+            this.binaryMetadata.setUnsupported(this.serviceUri, binaryNotFound);
+        }
+        
+        if(recipe == null) {
+            return null;
+        }
+        return new CompactRecipe(recipe);
+    }
 
     @Override
     public DataExportEntry getDataExportEntry(DataObjectURI uri) throws IOException {
@@ -765,7 +1273,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/export/path/to/file
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_DATA_EXPORT_ENTRY_PATH, uri.getPath());
-        DataExportEntry entry = (DataExportEntry) this.restfulClient.get(url);
+        DataExportEntry entry = (DataExportEntry) this.transport.get(url);
 
         updateLastActivetime();
         return entry;
@@ -779,7 +1287,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/lexport
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_LIST_DATA_EXPORT_ENTRIES_PATH);
-        String[] entries = (String[]) this.restfulClient.get(url);
+        String[] entries = (String[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(entries);
@@ -793,7 +1301,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/exports
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_DATA_EXPORT_ENTRIES_PATH);
-        DataExportEntry[] entries = (DataExportEntry[]) this.restfulClient.get(url);
+        DataExportEntry[] entries = (DataExportEntry[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(entries);
@@ -812,7 +1320,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         // URL pattern = http://xxx.xxx.xxx.xxx/api/exports
         // form param = object
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_ADD_DATA_EXPORT_ENTRY_PATH);
-        Boolean result = (Boolean) this.restfulClient.put(url, entry);
+        Boolean result = (Boolean) this.transport.put(url, entry);
 
         updateLastActivetime();
     }
@@ -829,7 +1337,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/export/path/to/file
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_REMOVE_DATA_EXPORT_ENTRY_PATH, uri.getPath());
-        Boolean result = (Boolean) this.restfulClient.delete(url);
+        Boolean result = (Boolean) this.transport.delete(url);
 
         updateLastActivetime();
     }
@@ -842,7 +1350,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/lsources
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_LIST_DATA_SOURCES_PATH);
-        String[] sources = (String[]) this.restfulClient.get(url);
+        String[] sources = (String[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(sources);
@@ -860,7 +1368,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/stat/type
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_GET_STATISTICS_PATH, type.name());
-        StatisticsEntry[] stats = (StatisticsEntry[]) this.restfulClient.get(url);
+        StatisticsEntry[] stats = (StatisticsEntry[]) this.transport.get(url);
 
         updateLastActivetime();
         return Arrays.asList(stats);
@@ -878,7 +1386,7 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/stat/type
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_CLEAR_STATISTICS_PATH, type.name());
-        Boolean result = (Boolean) this.restfulClient.delete(url);
+        Boolean result = (Boolean) this.transport.delete(url);
 
         updateLastActivetime();
     }
@@ -891,8 +1399,86 @@ public class HTTPUserInterfaceClient extends AbstractUserInterfaceClient {
         
         // URL pattern = http://xxx.xxx.xxx.xxx/api/allstat
         String url = makeAPIPath(HTTPUserInterfaceRestfulConstants.API_CLEAR_ALL_STATISTICS_PATH);
-        Boolean result = (Boolean) this.restfulClient.delete(url);
+        Boolean result = (Boolean) this.transport.delete(url);
 
         updateLastActivetime();
     }
+    
+    private UserInterfaceClientExecutor getExecutor() {
+        return UserInterfaceClientExecutor.getInstance();
+    }
+    
+    /*
+     * Asynchronous counterparts of the blocking calls.
+     * Use Future.get(timeout) or UserInterfaceClientExecutor.get() for timeouts
+     * and Future.cancel(true) to abandon a call.
+     */
+    public Future<Recipe> getRecipeAsync(final DataObjectURI uri) {
+        return getExecutor().submit(new Callable<Recipe>() {
+            @Override
+            public Recipe call() throws Exception {
+                return getRecipe(uri);
+            }
+        });
+    }
+    
+    public Future<CompactRecipe> getCompactRecipeAsync(final DataObjectURI uri) {
+        return getExecutor().submit(new Callable<CompactRecipe>() {
+            @Override
+            public CompactRecipe call() throws Exception {
+                return getCompactRecipe(uri);
+            }
+        });
+    }
+    
+    public Future<Collection<DataObjectMetadata>> listDataObjectMetadataAsync(final DataObjectURI uri) {
+        return getExecutor().submit(new Callable<Collection<DataObjectMetadata>>() {
+            @Override
+            public Collection<DataObjectMetadata> call() throws Exception {
+                return listDataObjectMetadataStreaming(uri);
+            }
+        });
+    }
+    
+    public Future<DataChunkStatus> requestDataChunkAsync(final DataObjectURI uri, final String hash) {
+        return getExecutor().submit(new Callable<DataChunkStatus>() {
+            @Override
+            public DataChunkStatus call() throws Exception {
+                return requestDataChunk(uri, hash);
+            }
+        });
+    }
+    
+    public Future<InputStream> getDataChunkAsync(final DataObjectURI uri, final String hash, final DataChunkStatus status) {
+        return getExecutor().submitCloseable(new Callable<InputStream>() {
+            @Override
+            public InputStream call() throws Exception {
+                if(status == null) {
+                    return getDataChunk(uri, hash);
+                }
+                return getDataChunk(uri, hash, status);
+            }
+        });
+    }
+    
+    public Future<InputStream> getDataChunkPartAsync(final DataObjectURI uri, final String hash, final int partNo, final DataChunkStatus status) {
+        return getExecutor().submitCloseable(new Callable<InputStream>() {
+            @Override
+            public InputStream call() throws Exception {
+                if(status == null) {
+                    return getDataChunkPart(uri, hash, partNo);
+                }
+                return getDataChunkPart(uri, hash, partNo, status);
+            }
+        });
+    }
+    
+    public Future<TransferAssignment> schedulePrefetchAsync(final DataObjectURI uri, final String hash) {
+        return getExecutor().submit(new Callable<TransferAssignment>() {
+            @Override
+            public TransferAssignment call() throws Exception {
+                return schedulePrefetch(uri, hash);
+            }
+        });
+    }
 }
@@ -25,10 +25,16 @@ public abstract class HTTPUserInterfaceRestfulConstants {
     
     public static final String API_GET_METADATA_PATH = "metadata";
     public static final String API_LIST_METADATA_PATH = "lmetadata";
+    public static final String API_LIST_METADATA_BINARY_PATH = "blmetadata";
+    public static final String API_GLOB_METADATA_PATH = "gmetadata";
     public static final String API_GET_RECIPE_PATH = "recipe";
+    public static final String API_GET_RECIPE_BINARY_PATH = "brecipe";
+    public static final String API_GET_RECIPE_SEGMENT_BINARY_PATH = "brecipeseg";
     public static final String API_REQUEST_DATA_CHUNK_PATH = "reqdata";
     public static final String API_GET_DATA_CHUNK_PATH = "data";
     public static final String API_GET_DATA_CHUNK_PART_PATH = "datapart";
+    public static final String API_GET_COMPRESSED_DATA_CHUNK_PATH = "cdata";
+    public static final String API_GET_COMPRESSED_DATA_CHUNK_PART_PATH = "cdatapart";
     public static final String API_CHECK_LIVE_PATH = "live";
     public static final String API_GET_SERVICE_CONFIG_PATH = "svcconfig";
     public static final String API_GET_FS_SERVICE_INFO_PATH = "fssvcinfo";
@@ -55,6 +61,8 @@ public abstract class HTTPUserInterfaceRestfulConstants {
     public static final String API_SYNC_RECIPES_PATH = "srecipe";
     public static final String API_SCHEDULE_PREFETCH_PATH = "prefetch";
     public static final String API_GET_REMOTE_RECIPE_WITH_TRANSFER_SCHEDULE_PATH = "rrecipewts";
+    public static final String API_GET_REMOTE_RECIPE_WITH_TRANSFER_SCHEDULE_BINARY_PATH = "brrecipewts";
+    public static final String API_GET_REMOTE_RECIPE_SEGMENT_WITH_TRANSFER_SCHEDULE_BINARY_PATH = "brrecipesegwts";
     public static final String API_LIST_DATA_SOURCES_PATH = "lsources";
     
     public static final String API_GET_STATISTICS_PATH = "stat";
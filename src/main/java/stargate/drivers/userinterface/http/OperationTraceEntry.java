@@ -0,0 +1,78 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+/**
+ *
+ * @author iychoi
+ */
+public class OperationTraceEntry {
+
+    private long timestamp;
+    private String threadName;
+    private OperationTracer.Operation operation;
+    private String target;
+    private long offset;
+    private long length;
+    private long elapsedNanos;
+    
+    public OperationTraceEntry(long timestamp, String threadName, OperationTracer.Operation operation, String target, long offset, long length, long elapsedNanos) {
+        if(operation == null) {
+            throw new IllegalArgumentException("operation is null");
+        }
+        
+        this.timestamp = timestamp;
+        this.threadName = threadName;
+        this.operation = operation;
+        this.target = target;
+        this.offset = offset;
+        this.length = length;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+    
+    public String getThreadName() {
+        return this.threadName;
+    }
+    
+    public OperationTracer.Operation getOperation() {
+        return this.operation;
+    }
+    
+    public String getTarget() {
+        return this.target;
+    }
+    
+    public long getOffset() {
+        return this.offset;
+    }
+    
+    public long getLength() {
+        return this.length;
+    }
+    
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d [%s] %s: %s, off(%d), len(%d), elapsed(%dns)", this.timestamp, this.threadName, this.operation.name(), this.target, this.offset, this.length, this.elapsedNanos);
+    }
+}
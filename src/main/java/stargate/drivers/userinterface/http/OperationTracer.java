@@ -0,0 +1,219 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.util.MBeans;
+
+/**
+ * JVM-wide sampled tracer for client operations.
+ *
+ * Callers must guard with isSampled() so that nothing is formatted or
+ * allocated when tracing is disabled or the call is not sampled.
+ *
+ * Sampled entries are kept in a ring buffer. Once configured, the tracer is
+ * registered as the JMX bean Hadoop:service=StargateClient,name=OperationTracer,
+ * so the buffer can be read (Dump), written to the log (dumpToLog) or
+ * cleared from jconsole or any JMX client while the job runs.
+ *
+ * @author iychoi
+ */
+public class OperationTracer implements OperationTracerMBean {
+
+    private static final Log LOG = LogFactory.getLog(OperationTracer.class);
+    
+    public static final int DEFAULT_SAMPLE_INTERVAL = 1;
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    
+    public enum Operation {
+        OPEN,
+        GET_FILE_STATUS,
+        LIST_STATUS,
+        GET_FILE_BLOCK_LOCATIONS,
+        READ_CHUNK_DIRECT_CACHE,
+        READ_CHUNK_REST,
+        READ_CHUNK_PART_DIRECT_CACHE,
+        READ_CHUNK_PART_REST
+    }
+    
+    private static final OperationTracer INSTANCE = new OperationTracer();
+    
+    private volatile boolean enabled = false;
+    private final int[] sampleIntervals = new int[Operation.values().length];
+    private final AtomicLongArray callCounters = new AtomicLongArray(Operation.values().length);
+    private volatile AtomicReferenceArray<OperationTraceEntry> ring = new AtomicReferenceArray<OperationTraceEntry>(DEFAULT_BUFFER_SIZE);
+    private final AtomicLong ringPosition = new AtomicLong(0);
+    private boolean registered = false;
+    
+    public static OperationTracer getInstance() {
+        return INSTANCE;
+    }
+    
+    OperationTracer() {
+        for(int i = 0; i < this.sampleIntervals.length; i++) {
+            this.sampleIntervals[i] = DEFAULT_SAMPLE_INTERVAL;
+        }
+    }
+    
+    /**
+     * sampleIntervals is a comma separated list of "operation=interval",
+     * e.g., "read_chunk_rest=100,open=1". Operations not listed use defaultInterval.
+     */
+    public synchronized void configure(boolean enabled, int defaultInterval, String sampleIntervals, int bufferSize) {
+        if(defaultInterval <= 0) {
+            throw new IllegalArgumentException("defaultInterval is not positive");
+        }
+        
+        if(bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize is not positive");
+        }
+        
+        for(int i = 0; i < this.sampleIntervals.length; i++) {
+            this.sampleIntervals[i] = defaultInterval;
+        }
+        
+        if(sampleIntervals != null && !sampleIntervals.trim().isEmpty()) {
+            String[] pairs = sampleIntervals.split(",");
+            for(String pair : pairs) {
+                String[] kv = pair.split("=");
+                if(kv.length != 2) {
+                    throw new IllegalArgumentException("malformed sample interval : " + pair);
+                }
+                
+                Operation op = Operation.valueOf(kv[0].trim().toUpperCase());
+                int interval = Integer.parseInt(kv[1].trim());
+                if(interval <= 0) {
+                    throw new IllegalArgumentException("sample interval is not positive : " + pair);
+                }
+                this.sampleIntervals[op.ordinal()] = interval;
+            }
+        }
+        
+        if(this.ring.length() != bufferSize) {
+            this.ring = new AtomicReferenceArray<OperationTraceEntry>(bufferSize);
+            this.ringPosition.set(0);
+        }
+        
+        this.enabled = enabled;
+        
+        if(!this.registered) {
+            MBeans.register("StargateClient", "OperationTracer", this);
+            this.registered = true;
+        }
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+    
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public boolean isSampled(Operation op) {
+        if(!this.enabled) {
+            return false;
+        }
+        
+        int interval = this.sampleIntervals[op.ordinal()];
+        long count = this.callCounters.getAndIncrement(op.ordinal());
+        return (count % interval) == 0;
+    }
+    
+    public void trace(Operation op, String target) {
+        trace(op, target, -1, -1, -1);
+    }
+    
+    public void trace(Operation op, String target, long elapsedNanos) {
+        trace(op, target, -1, -1, elapsedNanos);
+    }
+    
+    public void trace(Operation op, String target, long offset, long length, long elapsedNanos) {
+        OperationTraceEntry entry = new OperationTraceEntry(System.currentTimeMillis(), Thread.currentThread().getName(), op, target, offset, length, elapsedNanos);
+        
+        AtomicReferenceArray<OperationTraceEntry> r = this.ring;
+        long pos = this.ringPosition.getAndIncrement();
+        r.set((int) (pos % r.length()), entry);
+    }
+    
+    public long getCallCount(Operation op) {
+        return this.callCounters.get(op.ordinal());
+    }
+    
+    /**
+     * Returns sampled entries in the ring buffer, oldest first.
+     */
+    public List<OperationTraceEntry> getRecentEntries() {
+        AtomicReferenceArray<OperationTraceEntry> r = this.ring;
+        long end = this.ringPosition.get();
+        long start = Math.max(0, end - r.length());
+        
+        List<OperationTraceEntry> entries = new ArrayList<OperationTraceEntry>();
+        for(long i = start; i < end; i++) {
+            OperationTraceEntry entry = r.get((int) (i % r.length()));
+            if(entry != null) {
+                entries.add(entry);
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+    
+    public List<String> dump() {
+        List<String> lines = new ArrayList<String>();
+        for(Operation op : Operation.values()) {
+            lines.add(String.format("%s: calls(%d), sample interval(%d)", op.name(), getCallCount(op), this.sampleIntervals[op.ordinal()]));
+        }
+        
+        for(OperationTraceEntry entry : getRecentEntries()) {
+            lines.add(entry.toString());
+        }
+        return lines;
+    }
+    
+    @Override
+    public String[] getDump() {
+        List<String> lines = dump();
+        return lines.toArray(new String[lines.size()]);
+    }
+    
+    @Override
+    public void dumpToLog() {
+        for(String line : dump()) {
+            LOG.info(line);
+        }
+    }
+    
+    @Override
+    public synchronized void clear() {
+        for(int i = 0; i < this.callCounters.length(); i++) {
+            this.callCounters.set(i, 0);
+        }
+        
+        for(int i = 0; i < this.ring.length(); i++) {
+            this.ring.set(i, null);
+        }
+        this.ringPosition.set(0);
+    }
+}
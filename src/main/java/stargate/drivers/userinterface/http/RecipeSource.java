@@ -0,0 +1,37 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.IOException;
+import stargate.commons.dataobject.DataObjectMetadata;
+
+/**
+ * Source of recipe chunks of a file, either a whole recipe or segments
+ * of it fetched on demand.
+ *
+ * @author iychoi
+ */
+public interface RecipeSource {
+    public DataObjectMetadata getMetadata();
+    
+    public long getSize();
+    
+    /**
+     * Returns a recipe containing the chunk at the offset. Chunk indexes
+     * are only meaningful within the returned recipe.
+     */
+    public CompactRecipe getRecipe(long offset) throws IOException;
+}
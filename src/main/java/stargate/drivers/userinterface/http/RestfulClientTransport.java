@@ -0,0 +1,100 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import stargate.commons.restful.RestfulClient;
+
+/**
+ * Transport owning a dedicated RestfulClient.
+ *
+ * @author iychoi
+ */
+public class RestfulClientTransport implements UserInterfaceTransport {
+
+    private RestfulClient restfulClient;
+    
+    public RestfulClientTransport(URI serviceURI, String username, String password) throws IOException {
+        if(serviceURI == null) {
+            throw new IllegalArgumentException("serviceURI is null");
+        }
+        
+        // username and password can be null
+        
+        this.restfulClient = new RestfulClient(serviceURI, username, password);
+    }
+    
+    @Override
+    public Object get(String url) throws IOException {
+        try {
+            return this.restfulClient.get(url);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        }
+    }
+    
+    @Override
+    public Object post(String url, Object obj) throws IOException {
+        try {
+            return this.restfulClient.post(url, obj);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        }
+    }
+    
+    @Override
+    public Object put(String url, Object obj) throws IOException {
+        try {
+            return this.restfulClient.put(url, obj);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        }
+    }
+    
+    @Override
+    public Object delete(String url) throws IOException {
+        try {
+            return this.restfulClient.delete(url);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        }
+    }
+    
+    @Override
+    public InputStream download(String url) throws IOException {
+        try {
+            return this.restfulClient.download(url);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        }
+    }
+    
+    @Override
+    public InputStream downloadChunk(String url) throws IOException {
+        try {
+            return this.restfulClient.download(url);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        }
+    }
+    
+    @Override
+    public void close() {
+        this.restfulClient.close();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import stargate.commons.dataobject.DataObjectMetadata;
+
+/**
+ * Recipe of a large file fetched in fixed-size offset ranges (segments)
+ * as readers reach them, so a reader of a small split does not pay for the
+ * recipe of the whole file. Recently used segments are cached.
+ *
+ * @author iychoi
+ */
+public class SegmentedRecipe implements RecipeSource {
+
+    public interface SegmentLoader {
+        /**
+         * Returns a recipe holding at least the chunks overlapping the range.
+         */
+        public CompactRecipe load(long offset, long length) throws IOException;
+    }
+    
+    private DataObjectMetadata metadata;
+    private long segmentSize;
+    private SegmentLoader loader;
+    private Map<Long, CompactRecipe> segments;
+    
+    public SegmentedRecipe(DataObjectMetadata metadata, long segmentSize, final int maxSegments, SegmentLoader loader) {
+        if(metadata == null) {
+            throw new IllegalArgumentException("metadata is null");
+        }
+        
+        if(segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize is not positive");
+        }
+        
+        if(maxSegments <= 0) {
+            throw new IllegalArgumentException("maxSegments is not positive");
+        }
+        
+        if(loader == null) {
+            throw new IllegalArgumentException("loader is null");
+        }
+        
+        this.metadata = metadata;
+        this.segmentSize = segmentSize;
+        this.loader = loader;
+        this.segments = new LinkedHashMap<Long, CompactRecipe>(16, 0.75f, true) {
+            
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompactRecipe> eldest) {
+                return size() > maxSegments;
+            }
+        };
+    }
+    
+    @Override
+    public DataObjectMetadata getMetadata() {
+        return this.metadata;
+    }
+    
+    @Override
+    public long getSize() {
+        return this.metadata.getSize();
+    }
+    
+    public long getSegmentSize() {
+        return this.segmentSize;
+    }
+    
+    @Override
+    public synchronized CompactRecipe getRecipe(long offset) throws IOException {
+        if(offset < 0 || offset >= this.metadata.getSize()) {
+            throw new IllegalArgumentException("offset is out of range : " + offset);
+        }
+        
+        long segmentNo = offset / this.segmentSize;
+        CompactRecipe segment = this.segments.get(segmentNo);
+        if(segment != null && segment.getChunkIndex(offset) >= 0) {
+            return segment;
+        }
+        
+        long segmentStart = segmentNo * this.segmentSize;
+        long segmentLength = Math.min(this.segmentSize, this.metadata.getSize() - segmentStart);
+        segment = this.loader.load(segmentStart, segmentLength);
+        if(segment == null || segment.getChunkIndex(offset) < 0) {
+            throw new IOException(String.format("cannot retrieve a recipe segment at offset %d", offset));
+        }
+        
+        this.segments.put(segmentNo, segment);
+        return segment;
+    }
+}
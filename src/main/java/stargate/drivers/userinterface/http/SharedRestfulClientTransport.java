@@ -0,0 +1,285 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import stargate.commons.restful.RestfulClient;
+
+/**
+ * Transport sharing a bounded pool of RestfulClients per service.
+ *
+ * All HTTPUserInterfaceClients talking to the same service in this JVM
+ * (e.g., per-stream clients created by open()) share one pool, so the number
+ * of connections to a node is bounded by the pool size rather than by the
+ * number of open streams. A connection used by download() or
+ * downloadChunk() is held until the returned stream is closed.
+ *
+ * Chunk data and other requests (e.g., metadata and recipes) take
+ * connections from separate limits, so open chunk streams never hold up
+ * other requests. Waits for a connection are bounded by a timeout.
+ *
+ * @author iychoi
+ */
+public class SharedRestfulClientTransport implements UserInterfaceTransport {
+
+    private static final Log LOG = LogFactory.getLog(SharedRestfulClientTransport.class);
+    
+    private static final Map<String, SharedRestfulClientTransport> TRANSPORTS = new HashMap<String, SharedRestfulClientTransport>();
+    
+    private String key;
+    private URI serviceURI;
+    private String username;
+    private String password;
+    private int referenceCount;
+    private long waitTimeoutMillis;
+    private Semaphore chunkPermits;
+    private Semaphore requestPermits;
+    private ConcurrentLinkedQueue<RestfulClient> idleClients = new ConcurrentLinkedQueue<RestfulClient>();
+    
+    /**
+     * Returns the shared transport of the service, creating it if needed.
+     * Limits are those of the call creating the transport. Every call must
+     * be paired with close().
+     */
+    public static SharedRestfulClientTransport acquire(URI serviceURI, String username, String password, int maxChunkConnections, int maxRequestConnections, long waitTimeoutMillis) {
+        if(serviceURI == null) {
+            throw new IllegalArgumentException("serviceURI is null");
+        }
+        
+        if(maxChunkConnections <= 0) {
+            throw new IllegalArgumentException("maxChunkConnections is not positive");
+        }
+        
+        if(maxRequestConnections <= 0) {
+            throw new IllegalArgumentException("maxRequestConnections is not positive");
+        }
+        
+        if(waitTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("waitTimeoutMillis is not positive");
+        }
+        
+        // username and password can be null
+        
+        String key = makeKey(serviceURI, username);
+        synchronized(TRANSPORTS) {
+            SharedRestfulClientTransport transport = TRANSPORTS.get(key);
+            if(transport == null) {
+                transport = new SharedRestfulClientTransport(key, serviceURI, username, password, maxChunkConnections, maxRequestConnections, waitTimeoutMillis);
+                TRANSPORTS.put(key, transport);
+            }
+            
+            transport.referenceCount++;
+            return transport;
+        }
+    }
+    
+    private static String makeKey(URI serviceURI, String username) {
+        if(username == null) {
+            return serviceURI.toString();
+        }
+        return username + "@" + serviceURI.toString();
+    }
+    
+    private SharedRestfulClientTransport(String key, URI serviceURI, String username, String password, int maxChunkConnections, int maxRequestConnections, long waitTimeoutMillis) {
+        this.key = key;
+        this.serviceURI = serviceURI;
+        this.username = username;
+        this.password = password;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.chunkPermits = new Semaphore(maxChunkConnections, true);
+        this.requestPermits = new Semaphore(maxRequestConnections, true);
+    }
+    
+    private RestfulClient borrowClient(Semaphore permits) throws IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(this.waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a connection to " + this.serviceURI.toString());
+        }
+        
+        if(!acquired) {
+            throw new IOException(String.format("timed out waiting %d ms for a connection to %s", this.waitTimeoutMillis, this.serviceURI.toString()));
+        }
+        
+        RestfulClient client = this.idleClients.poll();
+        if(client != null) {
+            return client;
+        }
+        
+        try {
+            return new RestfulClient(this.serviceURI, this.username, this.password);
+        } catch (IOException ex) {
+            permits.release();
+            throw ex;
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+    
+    private void returnClient(RestfulClient client, Semaphore permits) {
+        boolean closed;
+        synchronized(TRANSPORTS) {
+            closed = (this.referenceCount <= 0);
+            if(!closed) {
+                this.idleClients.offer(client);
+            }
+        }
+        
+        if(closed) {
+            client.close();
+        }
+        permits.release();
+    }
+    
+    @Override
+    public Object get(String url) throws IOException {
+        RestfulClient client = borrowClient(this.requestPermits);
+        try {
+            return client.get(url);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        } finally {
+            returnClient(client, this.requestPermits);
+        }
+    }
+    
+    @Override
+    public Object post(String url, Object obj) throws IOException {
+        RestfulClient client = borrowClient(this.requestPermits);
+        try {
+            return client.post(url, obj);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        } finally {
+            returnClient(client, this.requestPermits);
+        }
+    }
+    
+    @Override
+    public Object put(String url, Object obj) throws IOException {
+        RestfulClient client = borrowClient(this.requestPermits);
+        try {
+            return client.put(url, obj);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        } finally {
+            returnClient(client, this.requestPermits);
+        }
+    }
+    
+    @Override
+    public Object delete(String url) throws IOException {
+        RestfulClient client = borrowClient(this.requestPermits);
+        try {
+            return client.delete(url);
+        } catch (IOException ex) {
+            throw HTTPStatusException.fromClientError(ex);
+        } finally {
+            returnClient(client, this.requestPermits);
+        }
+    }
+    
+    @Override
+    public InputStream download(String url) throws IOException {
+        return download(url, this.requestPermits);
+    }
+    
+    @Override
+    public InputStream downloadChunk(String url) throws IOException {
+        return download(url, this.chunkPermits);
+    }
+    
+    private InputStream download(String url, Semaphore permits) throws IOException {
+        RestfulClient client = borrowClient(permits);
+        InputStream is;
+        try {
+            is = client.download(url);
+        } catch (IOException ex) {
+            returnClient(client, permits);
+            throw HTTPStatusException.fromClientError(ex);
+        } catch (RuntimeException ex) {
+            returnClient(client, permits);
+            throw ex;
+        }
+        
+        return new ConnectionHoldingInputStream(is, client, permits);
+    }
+    
+    @Override
+    public void close() {
+        synchronized(TRANSPORTS) {
+            this.referenceCount--;
+            if(this.referenceCount > 0) {
+                return;
+            }
+            
+            TRANSPORTS.remove(this.key);
+        }
+        
+        LOG.debug("closing shared transport to " + this.serviceURI.toString());
+        
+        // connections in use are closed when they are returned
+        RestfulClient client = this.idleClients.poll();
+        while(client != null) {
+            client.close();
+            client = this.idleClients.poll();
+        }
+    }
+    
+    private class ConnectionHoldingInputStream extends FilterInputStream {
+        
+        private RestfulClient client;
+        private Semaphore permits;
+        
+        ConnectionHoldingInputStream(InputStream is, RestfulClient client, Semaphore permits) {
+            super(is);
+            
+            this.client = client;
+            this.permits = permits;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                RestfulClient client = null;
+                synchronized(this) {
+                    client = this.client;
+                    this.client = null;
+                }
+                
+                if(client != null) {
+                    returnClient(client, this.permits);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.InterruptedIOException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting bytes per second, shared by streams.
+ *
+ * Streams waiting for tokens are served in start-time fair queuing order,
+ * so under contention each stream gets bandwidth in proportion to its
+ * weight. A take larger than the bucket puts the bucket in debt, which
+ * later takes wait out.
+ *
+ * @author iychoi
+ */
+public class TokenBucket {
+
+    // waiters not at the head are notified, this only bounds missed wakeups
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    
+    private String name;
+    private long rate;
+    private long capacity;
+    private double tokens;
+    private long lastRefillNanos;
+    
+    private double virtualTime = 0;
+    private long sequence = 0;
+    private PriorityQueue<Waiter> waiters = new PriorityQueue<Waiter>();
+    
+    private long bytesGranted = 0;
+    private long throttledNanos = 0;
+    private long throttleCount = 0;
+    
+    public TokenBucket(String name, long rate, long capacity) {
+        if(name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name is null or empty");
+        }
+        
+        if(rate <= 0) {
+            throw new IllegalArgumentException("rate is not positive");
+        }
+        
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity is not positive");
+        }
+        
+        this.name = name;
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+    
+    public String getName() {
+        return this.name;
+    }
+    
+    /**
+     * Returns bytes per second.
+     */
+    public long getRate() {
+        return this.rate;
+    }
+    
+    public long getCapacity() {
+        return this.capacity;
+    }
+    
+    private void refill() {
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefillNanos) * (double) this.rate / 1000000000L);
+        this.lastRefillNanos = now;
+    }
+    
+    /**
+     * Takes tokens for bytes of the stream, waiting behind streams with
+     * earlier start tags. Returns nanoseconds waited.
+     */
+    public synchronized long acquire(BandwidthShaper.StreamState stream, int bytes) throws InterruptedIOException {
+        if(stream == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+        
+        if(bytes <= 0) {
+            return 0;
+        }
+        
+        double startTag = Math.max(this.virtualTime, stream.getFinishTag(this));
+        stream.setFinishTag(this, startTag + (double) bytes / stream.getWeight());
+        double needed = Math.min(bytes, this.capacity);
+        
+        refill();
+        if(this.waiters.isEmpty() && this.tokens >= needed) {
+            take(startTag, bytes);
+            return 0;
+        }
+        
+        Waiter waiter = new Waiter(startTag, this.sequence++);
+        this.waiters.add(waiter);
+        long waitStart = System.nanoTime();
+        try {
+            while(true) {
+                refill();
+                boolean head = this.waiters.peek() == waiter;
+                if(head && this.tokens >= needed) {
+                    break;
+                }
+                
+                long waitNanos = MAX_WAIT_NANOS;
+                if(head) {
+                    waitNanos = Math.min(waitNanos, (long) Math.ceil((needed - this.tokens) * 1000000000L / this.rate));
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, 1));
+            }
+        } catch (InterruptedException ex) {
+            this.waiters.remove(waiter);
+            notifyAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for bandwidth of " + this.name);
+        }
+        
+        this.waiters.poll();
+        take(startTag, bytes);
+        
+        long waited = System.nanoTime() - waitStart;
+        this.throttledNanos += waited;
+        this.throttleCount++;
+        // let the next waiter take the head
+        notifyAll();
+        return waited;
+    }
+    
+    private void take(double startTag, int bytes) {
+        this.tokens -= bytes;
+        this.virtualTime = Math.max(this.virtualTime, startTag);
+        this.bytesGranted += bytes;
+    }
+    
+    public synchronized long getBytesGranted() {
+        return this.bytesGranted;
+    }
+    
+    public synchronized long getThrottledTimeMillis() {
+        return this.throttledNanos / 1000000;
+    }
+    
+    public synchronized long getThrottleCount() {
+        return this.throttleCount;
+    }
+    
+    public synchronized int getWaitingStreams() {
+        return this.waiters.size();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("%s (rate=%d B/s, granted=%d, throttled=%d times/%dms, waiting=%d)",
+                this.name, this.rate, this.bytesGranted, this.throttleCount, this.throttledNanos / 1000000, this.waiters.size());
+    }
+    
+    private static class Waiter implements Comparable<Waiter> {
+        
+        private double startTag;
+        private long sequence;
+        
+        Waiter(double startTag, long sequence) {
+            this.startTag = startTag;
+            this.sequence = sequence;
+        }
+        
+        @Override
+        public int compareTo(Waiter other) {
+            if(this.startTag != other.startTag) {
+                return this.startTag < other.startTag ? -1 : 1;
+            }
+            
+            if(this.sequence != other.sequence) {
+                return this.sequence < other.sequence ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Bounded, JVM-wide executor running asynchronous calls of
+ * HTTPUserInterfaceClient.
+ *
+ * @author iychoi
+ */
+public class UserInterfaceClientExecutor {
+
+    private static final Log LOG = LogFactory.getLog(UserInterfaceClientExecutor.class);
+    
+    public static final int DEFAULT_THREADS = 8;
+    private static final long THREAD_KEEP_ALIVE_SEC = 60;
+    
+    private static UserInterfaceClientExecutor instance;
+    
+    private ThreadPoolExecutor executor;
+    
+    public static synchronized UserInterfaceClientExecutor getInstance() {
+        if(instance == null) {
+            instance = new UserInterfaceClientExecutor();
+        }
+        return instance;
+    }
+    
+    UserInterfaceClientExecutor() {
+        this.executor = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+    
+    public synchronized void setThreads(int threads) {
+        if(threads <= 0) {
+            throw new IllegalArgumentException("threads is not positive");
+        }
+        
+        if(threads > this.executor.getMaximumPoolSize()) {
+            this.executor.setMaximumPoolSize(threads);
+            this.executor.setCorePoolSize(threads);
+        } else {
+            this.executor.setCorePoolSize(threads);
+            this.executor.setMaximumPoolSize(threads);
+        }
+    }
+    
+    public int getThreads() {
+        return this.executor.getMaximumPoolSize();
+    }
+    
+    public <T> Future<T> submit(Callable<T> callable) {
+        if(callable == null) {
+            throw new IllegalArgumentException("callable is null");
+        }
+        
+        FutureTask<T> task = new FutureTask<T>(callable);
+        this.executor.execute(task);
+        return task;
+    }
+    
+    /**
+     * Submits a call returning a Closeable (e.g., a chunk stream).
+     * The result is closed if the future is cancelled before it is consumed.
+     */
+    public <T extends Closeable> Future<T> submitCloseable(Callable<T> callable) {
+        if(callable == null) {
+            throw new IllegalArgumentException("callable is null");
+        }
+        
+        FutureTask<T> task = new CloseOnCancelFutureTask<T>(callable);
+        this.executor.execute(task);
+        return task;
+    }
+    
+    /**
+     * Waits for the future, unwrapping failures to IOException.
+     * The future is cancelled on interrupt.
+     */
+    public static <T> T get(Future<T> future) throws IOException {
+        if(future == null) {
+            throw new IllegalArgumentException("future is null");
+        }
+        
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("operation interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        }
+    }
+    
+    /**
+     * Waits for the future, unwrapping failures to IOException.
+     * The future is cancelled on timeout or interrupt.
+     */
+    public static <T> T get(Future<T> future, long timeout, TimeUnit unit) throws IOException {
+        if(future == null) {
+            throw new IllegalArgumentException("future is null");
+        }
+        
+        if(unit == null) {
+            throw new IllegalArgumentException("unit is null");
+        }
+        
+        try {
+            return future.get(timeout, unit);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            throw new IOException("operation timed out", ex);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("operation interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        }
+    }
+    
+    private static IOException unwrap(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if(cause instanceof IOException) {
+            return (IOException) cause;
+        } else if(cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new IOException(cause);
+    }
+    
+    private static class CloseOnCancelFutureTask<T extends Closeable> extends FutureTask<T> {
+        
+        CloseOnCancelFutureTask(Callable<T> callable) {
+            super(callable);
+        }
+        
+        @Override
+        protected void set(T v) {
+            super.set(v);
+            
+            if(isCancelled() && v != null) {
+                try {
+                    v.close();
+                } catch (IOException ex) {
+                    LOG.debug("cannot close a result of a cancelled call", ex);
+                }
+            }
+        }
+    }
+    
+    private static class DaemonThreadFactory implements ThreadFactory {
+        
+        private AtomicInteger threadNumber = new AtomicInteger(1);
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "sgfs-client-" + this.threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+   Copyright 2018 The Trustees of University of Arizona
+
+   Licensed under the Apache License, Version 2.0 (the "License" );
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package stargate.drivers.userinterface.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Transport used by HTTPUserInterfaceClient to talk to a Stargate service.
+ *
+ * @author iychoi
+ */
+public interface UserInterfaceTransport {
+    public Object get(String url) throws IOException;
+    public Object post(String url, Object obj) throws IOException;
+    public Object put(String url, Object obj) throws IOException;
+    public Object delete(String url) throws IOException;
+    public InputStream download(String url) throws IOException;
+    // chunk data, shared transports keep these apart from other requests
+    public InputStream downloadChunk(String url) throws IOException;
+    public void close();
+}